@@ -212,4 +212,36 @@ public final class DistUtils {
       )
     );
   }
+  
+  /**
+   * The single precision counterpart of the 
+   * {@link #pointToSegSqEucDist(double, double, double, double, double, double)},
+   * for geometry held in <code>float</code> buffers.
+   * @return the squared euclidian distance from the given point to the closest
+   * point on the segment.
+   */
+  static final public float pointToSegSqEucDist(
+    float pointX, float pointY,
+    float startX, float startY,
+    float endX,   float endY
+  ) {
+    float segDx=endX-startX, segDy=endY-startY;
+    float dx=pointX-endX, dy=pointY-endY;
+    float dotProd=dx*segDx+dy*segDy;
+    if(dotProd>=0) { // the end point is the closest
+      return dx*dx+dy*dy;
+    }
+    dx=pointX-startX; dy=pointY-startY;
+    dotProd=dx*segDx+dy*segDy;
+    if(dotProd<=0) { // the start point is the closest
+      return dx*dx+dy*dy;
+    }
+    float sqSqLen=segDx*segDx+segDy*segDy; // this is !not! zero
+    float sqProjLen=(dotProd*dotProd)/sqSqLen;
+    float toRet=dx*dx+dy*dy-sqProjLen;
+    if(toRet<0) { // could be so only because of float-point rounding error
+      toRet=0;
+    }
+    return toRet;
+  }
 }
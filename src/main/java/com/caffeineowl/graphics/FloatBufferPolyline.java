@@ -0,0 +1,136 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * A {@link PolylineSink} writing the vertices, <code>x, y</code> as 
+ * <code>float</code>s, into a direct, native ordered <code>FloatBuffer</code>,
+ * ready to be handed over to native code (e.g. uploaded as a vertex 
+ * buffer). When full, the buffer is replaced by one of double capacity,
+ * so the result must be taken with {@link #getBuffer()} after the 
+ * flattening. The polylines are delimited by the index (in vertices)
+ * where each of them starts.
+ */
+public class FloatBufferPolyline
+implements PolylineSink {
+  
+  protected FloatBuffer buffer;
+  /** <code>starts[i]</code> is the index of the first vertex of the i-th polyline */
+  protected int[] starts;
+  /** Number of polylines */
+  protected int numPolylines;
+  
+  public FloatBufferPolyline() {
+    this(1024, 8);
+  }
+  
+  /**
+   * @param pointsCapacity initial capacity, in vertices
+   * @param polylinesCapacity initial capacity, in polylines
+   */
+  public FloatBufferPolyline(int pointsCapacity, int polylinesCapacity) {
+    this.buffer=FloatBufferPolyline.allocate(2*Math.max(pointsCapacity, 4));
+    this.starts=new int[Math.max(polylinesCapacity, 2)];
+  }
+  
+  static private FloatBuffer allocate(int numFloats) {
+    return ByteBuffer.allocateDirect(4*numFloats).order(ByteOrder.nativeOrder()).asFloatBuffer();
+  }
+  
+  /**
+   * Removes all the polylines, keeping the buffer.
+   */
+  public void clear() {
+    this.buffer.clear();
+    this.numPolylines=0;
+  }
+  
+  @Override
+  public final void moveTo(double x, double y) {
+    if(this.numPolylines==this.starts.length) {
+      int[] newStarts=new int[this.starts.length<<1];
+      System.arraycopy(this.starts, 0, newStarts, 0, this.numPolylines);
+      this.starts=newStarts;
+    }
+    this.starts[this.numPolylines++]=this.getNumPoints();
+    this.lineTo(x, y);
+  }
+  
+  /**
+   * Appends a vertex to the current polyline (starting one, if there is
+   * none yet).
+   */
+  @Override
+  public final void lineTo(double x, double y) {
+    if(0==this.numPolylines) {
+      this.moveTo(x, y);
+      return;
+    }
+    if(this.buffer.remaining()<2) {
+      FloatBuffer newBuffer=FloatBufferPolyline.allocate(this.buffer.capacity()<<1);
+      this.buffer.flip();
+      newBuffer.put(this.buffer);
+      this.buffer=newBuffer;
+    }
+    this.buffer.put((float)x);
+    this.buffer.put((float)y);
+  }
+  
+  public final int getNumPolylines() {
+    return this.numPolylines;
+  }
+  
+  /** The index of the first vertex of the i-th polyline */
+  public final int getPolylineStart(int i) {
+    return this.starts[i];
+  }
+  
+  /** The index after the last vertex of the i-th polyline */
+  public final int getPolylineEnd(int i) {
+    return (i+1<this.numPolylines) ? this.starts[i+1] : this.getNumPoints();
+  }
+  
+  public final int getNumPoints() {
+    return this.buffer.position()>>1;
+  }
+  
+  /**
+   * A view of the stored vertices: position <code>0</code>, limit 
+   * <code>2*{@link #getNumPoints()}</code>. The underlying buffer is 
+   * replaced when it grows, so take the view after the flattening.
+   */
+  public FloatBuffer getBuffer() {
+    FloatBuffer toRet=this.buffer.duplicate();
+    toRet.flip();
+    return toRet;
+  }
+}
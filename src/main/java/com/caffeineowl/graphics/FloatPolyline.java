@@ -0,0 +1,156 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics;
+
+import java.awt.geom.Path2D;
+
+/**
+ * A growable storage for a set of polylines with their vertices stored
+ * as <code>float</code>s in a single array, <code>x0, y0, x1, y1, ...</code>,
+ * each polyline being delimited by the index (in vertices) where it 
+ * starts: the single precision output of the flattening in 
+ * {@link com.caffeineowl.graphics.bezier.FloatBezierUtils}.
+ */
+public class FloatPolyline
+implements PolylineSink {
+  
+  /** Vertex coordinates, <code>x0, y0, x1, y1, ...</code> */
+  protected float[] coords;
+  /** Number of vertices stored */
+  protected int numPoints;
+  /** <code>starts[i]</code> is the index of the first vertex of the i-th polyline */
+  protected int[] starts;
+  /** Number of polylines */
+  protected int numPolylines;
+  
+  public FloatPolyline() {
+    this(256, 8);
+  }
+  
+  /**
+   * @param pointsCapacity initial capacity, in vertices
+   * @param polylinesCapacity initial capacity, in polylines
+   */
+  public FloatPolyline(int pointsCapacity, int polylinesCapacity) {
+    this.coords=new float[2*Math.max(pointsCapacity, 4)];
+    this.starts=new int[Math.max(polylinesCapacity, 2)];
+  }
+  
+  /**
+   * Removes all the polylines, keeping the allocated storage.
+   */
+  public void clear() {
+    this.numPoints=0;
+    this.numPolylines=0;
+  }
+  
+  @Override
+  public final void moveTo(double x, double y) {
+    if(this.numPolylines==this.starts.length) {
+      int[] newStarts=new int[this.starts.length<<1];
+      System.arraycopy(this.starts, 0, newStarts, 0, this.numPolylines);
+      this.starts=newStarts;
+    }
+    this.starts[this.numPolylines++]=this.numPoints;
+    this.lineTo(x, y);
+  }
+  
+  /**
+   * Appends a vertex to the current polyline (starting one, if there is
+   * none yet).
+   */
+  @Override
+  public final void lineTo(double x, double y) {
+    if(0==this.numPolylines) {
+      this.moveTo(x, y);
+      return;
+    }
+    int pos=this.numPoints<<1;
+    if(pos+2>this.coords.length) {
+      float[] newCoords=new float[this.coords.length<<1];
+      System.arraycopy(this.coords, 0, newCoords, 0, pos);
+      this.coords=newCoords;
+    }
+    this.coords[pos]=(float)x;
+    this.coords[pos+1]=(float)y;
+    this.numPoints++;
+  }
+  
+  public final int getNumPolylines() {
+    return this.numPolylines;
+  }
+  
+  /** The index of the first vertex of the i-th polyline */
+  public final int getPolylineStart(int i) {
+    return this.starts[i];
+  }
+  
+  /** The index after the last vertex of the i-th polyline */
+  public final int getPolylineEnd(int i) {
+    return (i+1<this.numPolylines) ? this.starts[i+1] : this.numPoints;
+  }
+  
+  public final int getNumPoints() {
+    return this.numPoints;
+  }
+  
+  public final float getX(int pointIndex) {
+    return this.coords[pointIndex<<1];
+  }
+  
+  public final float getY(int pointIndex) {
+    return this.coords[(pointIndex<<1)+1];
+  }
+  
+  /**
+   * The vertex coordinates; only the first <code>2*{@link #getNumPoints()}</code>
+   * values are meaningful. The array is replaced when the storage grows.
+   */
+  public final float[] getCoords() {
+    return this.coords;
+  }
+  
+  /**
+   * Builds an (open) path with the polylines.
+   */
+  public Path2D.Float toPath2D() {
+    Path2D.Float toRet=new Path2D.Float(Path2D.WIND_NON_ZERO, Math.max(this.numPoints, 2));
+    for(int i=0; i<this.numPolylines; i++) {
+      int start=this.starts[i], end=this.getPolylineEnd(i);
+      for(int j=start; j<end; j++) {
+        if(j==start) {
+          toRet.moveTo(this.coords[2*j], this.coords[2*j+1]);
+        }
+        else {
+          toRet.lineTo(this.coords[2*j], this.coords[2*j+1]);
+        }
+      }
+    }
+    return toRet;
+  }
+}
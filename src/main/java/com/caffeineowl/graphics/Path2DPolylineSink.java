@@ -0,0 +1,78 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics;
+
+import java.awt.geom.Path2D;
+
+/**
+ * A {@link PolylineSink} appending to a <code>Path2D.Float</code> (or a 
+ * <code>GeneralPath</code>): a single virtual call per vertex and, when 
+ * the number of vertices is known in advance, no array growth if the
+ * path is created here with that capacity.
+ */
+public class Path2DPolylineSink
+implements PolylineSink {
+  
+  protected Path2D.Float path;
+  
+  /**
+   * Creates a sink on a new path.
+   * @param pointsCapacity the capacity of the path, in vertices
+   */
+  public Path2DPolylineSink(int pointsCapacity) {
+    this(new Path2D.Float(Path2D.WIND_NON_ZERO, Math.max(pointsCapacity, 2)));
+  }
+  
+  /**
+   * Creates a sink appending to an existing path.
+   */
+  public Path2DPolylineSink(Path2D.Float path) {
+    if(null==path) {
+      throw new NullPointerException();
+    }
+    this.path=path;
+  }
+  
+  @Override
+  public void moveTo(double x, double y) {
+    this.path.moveTo(x, y);
+  }
+  
+  @Override
+  public void lineTo(double x, double y) {
+    if(null==this.path.getCurrentPoint()) { // Path2D would throw
+      this.path.moveTo(x, y);
+      return;
+    }
+    this.path.lineTo(x, y);
+  }
+  
+  public Path2D.Float getPath() {
+    return this.path;
+  }
+}
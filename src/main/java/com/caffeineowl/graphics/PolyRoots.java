@@ -0,0 +1,753 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics;
+
+/**
+ * Numerically stable solvers for the real roots of the low degree
+ * polynomials that show up when working with B&eacute;zier curves
+ * (inflexions, extrema, line intersections, cusps, nearest points, etc).
+ * <p>None of the methods allocate: the roots are written into a
+ * caller-provided <code>double[]</code>, starting at a given offset,
+ * and the number of roots written is returned. Whenever more than one
+ * root is returned, the roots are in ascending order.
+ * <p>The <code>...InUnit</code> flavours only return the roots that fall
+ * in the <code>[0, 1]</code> range (range ends included), which is what
+ * the curve processing code needs most of the time.
+ */
+public final class PolyRoots {
+  
+  /**
+   * Relative precision of a <code>double</code> (2<sup>-52</sup>).
+   */
+  static final private double eps=Math.ulp(1.0);
+  
+  /**
+   * The splitter used by the Veltkamp/Dekker exact product
+   * (2<sup>27</sup>+1).
+   */
+  static final private double splitter=134217729.0;
+  
+  /**
+   * Maximum number of bisection/Newton iterations used when polishing a
+   * bracketed root. Bisection alone halves the bracket at each step, so 
+   * <code>100</code> is way more than needed to get to machine precision.
+   */
+  static final private int maxIterations=100;
+  
+  private PolyRoots() {
+  }
+  
+  /**
+   * Computes the rounding error of the <code>a*b</code> product, using 
+   * Dekker's exact product (Veltkamp splitting). The exact value of
+   * the product is <code>(a*b)+twoProductError(a, b, a*b)</code>.
+   */
+  static private double twoProductError(double a, double b, double prod) {
+    double t=PolyRoots.splitter*a;
+    double ah=t-(t-a), al=a-ah;
+    t=PolyRoots.splitter*b;
+    double bh=t-(t-b), bl=b-bh;
+    return ((ah*bh-prod)+ah*bl+al*bh)+al*bl;
+  }
+  
+  /**
+   * Computes the <code>b<sup>2</sup>-4ac</code> discriminant of a quadratic.
+   * When the naive computation suffers from catastrophic cancellation 
+   * (<code>b<sup>2</sup></code> close to <code>4ac</code>), the 
+   * discriminant is recomputed using exact products, as suggested by 
+   * W. Kahan in <i>"On the Cost of Floating-Point Computation Without
+   * Extra-Precise Arithmetic"</i>.
+   */
+  static private double discriminant(double a, double b, double c) {
+    double bb=b*b;
+    double ac4=4.0*a*c;
+    double toRet=bb-ac4;
+    if(3.0*Math.abs(toRet)<bb+Math.abs(ac4)) {
+      // cancellation: redo it with the rounding errors of the products
+      double ac=a*c;
+      double e=PolyRoots.twoProductError(b, b, bb)-4.0*PolyRoots.twoProductError(a, c, ac);
+      toRet=(bb-4.0*ac)+e;
+    }
+    return toRet;
+  }
+  
+  /**
+   * Evaluates a polynomial given by its coefficients in 
+   * ascending order of powers (<code>coeffs[i]</code> is the coefficient 
+   * of <code>t<sup>i</sup></code>) using the Horner scheme.
+   * @param coeffs the coefficients
+   * @param degree the degree of the polynomial (<code>coeffs</code> must
+   * hold at least <code>degree+1</code> values).
+   * @param t the value where the polynomial is to be evaluated
+   */
+  static public double evaluate(double[] coeffs, int degree, double t) {
+    double toRet=coeffs[degree];
+    for(int i=degree-1; i>=0; i--) {
+      toRet=toRet*t+coeffs[i];
+    }
+    return toRet;
+  }
+  
+  /**
+   * Computes the real roots of the linear equation <code>a*t+b=0</code>.
+   * @return the number of roots (<code>0</code> or <code>1</code>);
+   * if both <code>a</code> and <code>b</code> are zero (any <code>t</code>
+   * is a solution), <code>0</code> is returned.
+   */
+  static public int solveLinear(double a, double b, double[] roots, int offset) {
+    if(0.0==a) {
+      return 0;
+    }
+    double root=-b/a;
+    if(Double.isNaN(root) || Double.isInfinite(root)) {
+      return 0;
+    }
+    roots[offset]=root;
+    return 1;
+  }
+  
+  /**
+   * Computes the real roots of the quadratic equation 
+   * <code>a*t<sup>2</sup>+b*t+c=0</code>.
+   * <p>The method avoids the cancellation the textbook formula suffers
+   * from by computing <code>q=-(b+sign(b)*sqrt(b<sup>2</sup>-4ac))/2</code>
+   * and then the roots as <code>q/a</code> and <code>c/q</code>; the
+   * discriminant is computed with extra precision when needed. A zero
+   * <code>a</code> falls back to the {@link #solveLinear(double, double, double[], int) linear}
+   * case; a very small <code>a</code> is handled naturally (one of the 
+   * roots goes towards infinity and is dropped if not representable). 
+   * @param roots where to store the roots
+   * @param offset the position in <code>roots</code> where the first root 
+   * is to be stored
+   * @return the number of distinct real roots found (<code>0..2</code>).
+   * A double root is reported only once.
+   */
+  static public int solveQuadratic(
+    double a, double b, double c,
+    double[] roots, int offset
+  ) {
+    if(0.0==a) {
+      return PolyRoots.solveLinear(b, c, roots, offset);
+    }
+    double discr=PolyRoots.discriminant(a, b, c);
+    if(discr<0) {
+      return 0;
+    }
+    if(0.0==discr) {
+      roots[offset]=-b/(2.0*a);
+      return 1;
+    }
+    double q=-0.5*(b+Math.copySign(Math.sqrt(discr), b));
+    double r0=q/a;
+    double r1=c/q; // q is not zero: |q|>=sqrt(discr)/2>0
+    int toRet=0;
+    if(false==Double.isInfinite(r0) && false==Double.isNaN(r0)) {
+      roots[offset+toRet++]=r0;
+    }
+    if(false==Double.isInfinite(r1) && false==Double.isNaN(r1)) {
+      roots[offset+toRet++]=r1;
+    }
+    if(2==toRet) {
+      if(roots[offset]>roots[offset+1]) {
+        double aux=roots[offset];
+        roots[offset]=roots[offset+1];
+        roots[offset+1]=aux;
+      }
+      else if(roots[offset]==roots[offset+1]) {
+        toRet=1;
+      }
+    }
+    return toRet;
+  }
+  
+  /**
+   * Computes the real roots of the quadratic equation 
+   * <code>a*t<sup>2</sup>+b*t+c=0</code> that fall in the <code>[0, 1]</code>
+   * range. See {@link #solveQuadratic(double, double, double, double[], int)}.
+   * <p>Roots within a few ulps outside the range (i.e. rounding noise
+   * on a root that is actually at <code>0</code> or <code>1</code>) 
+   * are clamped to the range ends.
+   * @return the number of roots stored in <code>roots</code>.
+   */
+  static public int solveQuadraticInUnit(
+    double a, double b, double c,
+    double[] roots, int offset
+  ) {
+    int n=PolyRoots.solveQuadratic(a, b, c, roots, offset);
+    return PolyRoots.keepInUnit(roots, offset, n);
+  }
+  
+  /**
+   * Computes the real roots of the cubic equation 
+   * <code>a*t<sup>3</sup>+b*t<sup>2</sup>+c*t+d=0</code>.
+   * <p>The cubic is reduced to its depressed form; three real roots are
+   * computed using the trigonometric (Vi&egrave;te) method, a single real root
+   * using Cardano's formula. Each root is then polished by Newton steps
+   * on the original polynomial. A zero <code>a</code> falls back to the 
+   * {@link #solveQuadratic(double, double, double, double[], int) quadratic} case,
+   * a very small one (relative to the other coefficients) makes the normalised
+   * coefficients blow up: in this case, the roots of the quadratic part are used
+   * as starting points and the (far-away) dominating cubic root is recovered
+   * from the Vieta relation <code>sum(roots)=-b/a</code>.
+   * @param roots where to store the roots, must have room for 3 values 
+   * starting at <code>offset</code>
+   * @return the number of distinct real roots found (<code>0..3</code>).
+   */
+  static public int solveCubic(
+    double a, double b, double c, double d,
+    double[] roots, int offset
+  ) {
+    if(0.0==a) {
+      return PolyRoots.solveQuadratic(b, c, d, roots, offset);
+    }
+    double maxCoeff=Math.max(Math.abs(b), Math.max(Math.abs(c), Math.abs(d)));
+    int toRet;
+    if(Math.abs(a)<=PolyRoots.eps*maxCoeff) {
+      // Almost a quadratic: its roots are close to the roots of the cubic
+      // (refined by Newton below), the third one is huge.
+      toRet=PolyRoots.solveQuadratic(b, c, d, roots, offset);
+      double sum=-b/a;
+      for(int i=0; i<toRet; i++) {
+        sum-=roots[offset+i];
+      }
+      if(false==Double.isInfinite(sum) && false==Double.isNaN(sum)) {
+        roots[offset+toRet++]=sum;
+      }
+    }
+    else {
+      double A=b/a, B=c/a, C=d/a;
+      // depressed cubic x^3+p*x+q=0 for t=x-A/3
+      double shift=A/3.0;
+      double p=B-A*shift;
+      double q=(2.0*shift*shift-B)*shift+C;
+      double halfQ=q/2.0, thirdP=p/3.0;
+      double disc=halfQ*halfQ+thirdP*thirdP*thirdP;
+      if(disc>0) { // one real root, Cardano
+        double sq=Math.sqrt(disc);
+        // stable: avoid cancellation in -halfQ+sq by using u*v=-p/3
+        double u=Math.cbrt(-halfQ-Math.copySign(sq, halfQ));
+        double v=(0.0==u) ? 0.0 : -thirdP/u;
+        double t0=PolyRoots.polishCubicRoot(a, b, c, d, u+v-shift);
+        roots[offset]=t0;
+        toRet=1;
+        // The rounding errors may have turned a (near) double root into 
+        // a negative discriminant: deflate and look at the remaining quadratic.
+        double qb=b+a*t0, qc=c+qb*t0;
+        double qDisc=qb*qb-4*a*qc;
+        double qNoise=64*PolyRoots.eps*(qb*qb+Math.abs(4*a*qc));
+        if(qDisc>=-qNoise) {
+          if(qDisc<=qNoise) {
+            roots[offset+toRet++]=-qb/(2*a);
+          }
+          else {
+            toRet+=PolyRoots.solveQuadratic(a, qb, qc, roots, offset+toRet);
+          }
+        }
+      }
+      else if(0==p && 0==q) { // triple root
+        roots[offset]=-shift;
+        toRet=1;
+      }
+      else { // three real roots (maybe two coincident), trigonometric
+        double m=2.0*Math.sqrt(-thirdP);
+        double cosArg=3.0*q/(p*m);
+        // guard against rounding pushing it out of the acos domain
+        if(cosArg>1.0) {
+          cosArg=1.0;
+        }
+        else if(cosArg<-1.0) {
+          cosArg=-1.0;
+        }
+        double theta=Math.acos(cosArg)/3.0;
+        roots[offset]=m*Math.cos(theta)-shift;
+        roots[offset+1]=m*Math.cos(theta-2.0*Math.PI/3.0)-shift;
+        roots[offset+2]=m*Math.cos(theta-4.0*Math.PI/3.0)-shift;
+        toRet=3;
+      }
+    }
+    for(int i=0; i<toRet; i++) {
+      roots[offset+i]=PolyRoots.polishCubicRoot(a, b, c, d, roots[offset+i]);
+    }
+    return PolyRoots.sortAndDedup(roots, offset, toRet);
+  }
+  
+  /**
+   * Computes the real roots of the cubic equation 
+   * <code>a*t<sup>3</sup>+b*t<sup>2</sup>+c*t+d=0</code> that fall in the
+   * <code>[0, 1]</code> range.
+   * <p>Unlike {@link #solveCubic(double, double, double, double, double[], int)},
+   * this method does not rely on closed formulae (which may lose precision
+   * on nearly degenerate cubics): the roots of the derivative (a quadratic,
+   * solved with {@link #solveQuadratic(double, double, double, double[], int)})
+   * split the <code>[0, 1]</code> range in (at most 3) monotonic intervals,
+   * each of them containing at most one root, which is then found by 
+   * {@linkplain #bracketedRoot(double, double, double, double, double, double, double, double) safeguarded Newton}
+   * iterations. A critical point where the cubic is null (within the
+   * evaluation rounding errors) is reported as a (double) root.
+   * @param roots where to store the roots; room for 3 values starting at 
+   * <code>offset</code> is needed, as the slots are used as scratch area too.
+   * @return the number of roots stored in <code>roots</code>.
+   */
+  static public int solveCubicInUnit(
+    double a, double b, double c, double d,
+    double[] roots, int offset
+  ) {
+    if(0.0==a) {
+      return PolyRoots.solveQuadraticInUnit(b, c, d, roots, offset);
+    }
+    // the critical points are temporarily stored in the roots array itself,
+    // at the end of the 3 slots the caller must provide
+    int nCrit=PolyRoots.solveQuadratic(3.0*a, 2.0*b, c, roots, offset+1);
+    double c0=(nCrit>0) ? roots[offset+1] : 2.0;
+    double c1=(nCrit>1) ? roots[offset+2] : 2.0;
+    // the magnitude of the rounding errors when evaluating the cubic in [0, 1]
+    double noise=8*PolyRoots.eps*(Math.abs(a)+Math.abs(b)+Math.abs(c)+Math.abs(d));
+    int toRet=0;
+    double lo=0.0, fLo=d;
+    for(int i=0; i<=nCrit; i++) {
+      double hi=(0==i) ? c0 : ((1==i) ? c1 : 2.0);
+      if(hi<=lo) {
+        continue;
+      }
+      if(hi>1.0) {
+        hi=1.0;
+      }
+      double fHi=((a*hi+b)*hi+c)*hi+d;
+      if(hi<1.0 && Math.abs(fHi)<=noise) {
+        // the curve is tangent to the axis at the critical point: 
+        // a double root there, which no sign change would reveal
+        fHi=0.0;
+      }
+      double root=PolyRoots.bracketedRoot(a, b, c, d, lo, hi, fLo, fHi);
+      if(false==Double.isNaN(root)) {
+        if(0==toRet || roots[offset+toRet-1]!=root) {
+          roots[offset+toRet++]=root;
+        }
+      }
+      lo=hi;
+      fLo=fHi;
+      if(lo>=1.0) {
+        break;
+      }
+    }
+    return toRet;
+  }
+  
+  /**
+   * Finds the root of the cubic inside the <code>[lo, hi]</code> interval,
+   * on which the cubic is known to be monotonic. Combines Newton steps with 
+   * bisection: whenever a Newton step would leave the current bracket, a
+   * bisection step is taken instead.
+   * @return the root or <code>NaN</code> if the cubic doesn't change its sign
+   * on the interval.
+   */
+  static private double bracketedRoot(
+    double a, double b, double c, double d,
+    double lo, double hi, double fLo, double fHi
+  ) {
+    if(0.0==fLo) {
+      return lo;
+    }
+    if(0.0==fHi) {
+      return hi;
+    }
+    if((fLo<0) == (fHi<0)) {
+      return Double.NaN;
+    }
+    if(fLo>0) { // make it increasing on [lo, hi]
+      a=-a; b=-b; c=-c; d=-d;
+    }
+    double t=0.5*(lo+hi);
+    for(int i=0; i<PolyRoots.maxIterations; i++) {
+      double f=((a*t+b)*t+c)*t+d;
+      if(0.0==f) {
+        break;
+      }
+      if(f<0) {
+        lo=t;
+      }
+      else {
+        hi=t;
+      }
+      double df=(3.0*a*t+2.0*b)*t+c;
+      double next=t-f/df;
+      if(!(next>lo && next<hi)) { // also catches NaN from a zero derivative
+        next=0.5*(lo+hi);
+      }
+      if(next==t || hi-lo<=PolyRoots.eps*Math.abs(t)) {
+        t=next;
+        break;
+      }
+      t=next;
+    }
+    return t;
+  }
+  
+  /**
+   * Applies a couple of Newton iterations to improve a root 
+   * computed by closed formulae, keeping the new value only if the
+   * residual is not increased.
+   */
+  static private double polishCubicRoot(double a, double b, double c, double d, double t) {
+    double f=((a*t+b)*t+c)*t+d;
+    for(int i=0; i<3 && 0.0!=f; i++) {
+      double df=(3.0*a*t+2.0*b)*t+c;
+      if(0.0==df) {
+        break;
+      }
+      double next=t-f/df;
+      double fNext=((a*next+b)*next+c)*next+d;
+      if(!(Math.abs(fNext)<Math.abs(f))) {
+        break;
+      }
+      t=next;
+      f=fNext;
+    }
+    return t;
+  }
+  
+  /**
+   * Returns the number of <code>double</code> values the <code>scratch</code>
+   * array passed to {@link #solveInUnit(double[], int, double[], int, double[])}
+   * must be able to accommodate for a polynomial of the given degree.
+   */
+  static public int scratchLength(int degree) {
+    return (degree+1)*(degree+2);
+  }
+  
+  /**
+   * Computes the distinct real roots in the <code>[0, 1]</code> range of a 
+   * polynomial of arbitrary degree, given by its coefficients in ascending
+   * order of powers (<code>coeffs[i]</code> is the coefficient of 
+   * <code>t<sup>i</sup></code>).
+   * <p>The roots are isolated using a 
+   * <a href="http://mathworld.wolfram.com/SturmFunction.html">Sturm sequence</a>
+   * (interval bisection until each interval contains a single root), then
+   * each root is refined by safeguarded Newton iterations (bisection being
+   * used whenever Newton would step out of the isolating interval).
+   * <p>Roots closer to each other than (roughly) the square root of the
+   * <code>double</code> precision can not be reliably told apart by the
+   * Sturm sequence: they may be reported as a single root or, when the 
+   * polynomial does not change its sign around them, not at all. 
+   * For degrees up to <code>3</code>, prefer the specialised methods.
+   * @param coeffs the polynomial's coefficients, ascending order of powers.
+   * @param degree the polynomial's degree.
+   * @param roots where to store the roots found (room for <code>degree</code>
+   * values is needed in the worst case).
+   * @param offset the position in <code>roots</code> where to start storing them
+   * @param scratch working area, must be at least {@link #scratchLength(int)}
+   * long (the method does not allocate it, so that it can be reused
+   * over multiple calls).
+   * @return the number of roots stored in <code>roots</code>.
+   */
+  static public int solveInUnit(
+    double[] coeffs, int degree,
+    double[] roots, int offset,
+    double[] scratch
+  ) {
+    // strip the null leading coefficients
+    while(degree>0 && 0.0==coeffs[degree]) {
+      degree--;
+    }
+    if(degree<=0) {
+      return 0;
+    }
+    int stride=degree+2;
+    int seqLen=PolyRoots.buildSturmSequence(coeffs, degree, scratch, stride);
+    int toRet=0;
+    if(0.0==coeffs[0]) {
+      roots[offset+toRet++]=0.0;
+    }
+    int atLo=PolyRoots.signChanges(scratch, seqLen, stride, 0.0);
+    int atHi=PolyRoots.signChanges(scratch, seqLen, stride, 1.0);
+    toRet+=PolyRoots.isolateRoots(
+      scratch, seqLen, stride,
+      0.0, 1.0, atLo, atHi,
+      roots, offset+toRet, 0
+    );
+    return toRet;
+  }
+  
+  /**
+   * Builds the Sturm sequence of a polynomial into the scratch area.
+   * Each polynomial of the sequence occupies <code>stride</code> slots:
+   * the first holds the degree, the next ones the coefficients in
+   * ascending order of powers.
+   * @return the number of polynomials in the sequence.
+   */
+  static private int buildSturmSequence(
+    double[] coeffs, int degree, double[] seq, int stride
+  ) {
+    // p0 = p, normalised to avoid overflows for large coefficients
+    double scale=0;
+    for(int i=0; i<=degree; i++) {
+      scale=Math.max(scale, Math.abs(coeffs[i]));
+    }
+    seq[0]=degree;
+    for(int i=0; i<=degree; i++) {
+      seq[1+i]=coeffs[i]/scale;
+    }
+    // p1 = p'
+    seq[stride]=degree-1;
+    for(int i=1; i<=degree; i++) {
+      seq[stride+i]=i*seq[1+i];
+    }
+    int count=2;
+    while(true) {
+      int prev=(count-2)*stride, cur=(count-1)*stride, next=count*stride;
+      int dPrev=(int)seq[prev], dCur=(int)seq[cur];
+      if(0==dCur) {
+        break;
+      }
+      // remainder of seq[prev]/seq[cur], computed in place in the 'next' slot
+      for(int i=0; i<=dPrev; i++) {
+        seq[next+1+i]=seq[prev+1+i];
+      }
+      double lead=seq[cur+1+dCur];
+      for(int k=dPrev-dCur; k>=0; k--) {
+        double qk=seq[next+1+dCur+k]/lead;
+        for(int j=0; j<=dCur; j++) {
+          seq[next+1+j+k]-=qk*seq[cur+1+j];
+        }
+      }
+      // negate, strip the (numerically) null leading terms
+      double magnitude=0;
+      for(int i=0; i<=dPrev; i++) {
+        magnitude=Math.max(magnitude, Math.abs(seq[prev+1+i]));
+      }
+      double zeroTol=16*PolyRoots.eps*magnitude;
+      int dNext=dCur-1;
+      while(dNext>=0 && Math.abs(seq[next+1+dNext])<=zeroTol) {
+        dNext--;
+      }
+      if(dNext<0) { // exact division: multiple roots, sequence ends here
+        break;
+      }
+      double norm=0;
+      for(int i=0; i<=dNext; i++) {
+        norm=Math.max(norm, Math.abs(seq[next+1+i]));
+      }
+      for(int i=0; i<=dNext; i++) {
+        seq[next+1+i]=-seq[next+1+i]/norm;
+      }
+      seq[next]=dNext;
+      count++;
+      if(0==dNext) {
+        break;
+      }
+    }
+    return count;
+  }
+  
+  /**
+   * Counts the sign changes in the Sturm sequence evaluated at <code>t</code>
+   * (zeros are skipped).
+   */
+  static private int signChanges(double[] seq, int seqLen, int stride, double t) {
+    int toRet=0;
+    double prevSign=0;
+    for(int k=0; k<seqLen; k++) {
+      int base=k*stride;
+      int deg=(int)seq[base];
+      double v=seq[base+1+deg];
+      for(int i=deg-1; i>=0; i--) {
+        v=v*t+seq[base+1+i];
+      }
+      if(0.0!=v) {
+        double sign=(v>0) ? 1 : -1;
+        if(0!=prevSign && sign!=prevSign) {
+          toRet++;
+        }
+        prevSign=sign;
+      }
+    }
+    return toRet;
+  }
+  
+  /**
+   * Recursively bisects the <code>(lo, hi]</code> interval until each
+   * sub-interval contains a single root, then refines it.
+   * The recursion depth is bounded (after <code>60</code> bisections the 
+   * interval is below the precision of a <code>double</code> in 
+   * <code>[0, 1]</code>).
+   */
+  static private int isolateRoots(
+    double[] seq, int seqLen, int stride,
+    double lo, double hi, int atLo, int atHi,
+    double[] roots, int offset, int depth
+  ) {
+    int numRoots=atLo-atHi;
+    if(numRoots<=0) {
+      return 0;
+    }
+    if(1==numRoots) {
+      roots[offset]=PolyRoots.refineRoot(seq, seqLen, stride, lo, hi);
+      return 1;
+    }
+    if(depth>60) { // a cluster we can't separate, report it once
+      roots[offset]=0.5*(lo+hi);
+      return 1;
+    }
+    double mid=0.5*(lo+hi);
+    int atMid=PolyRoots.signChanges(seq, seqLen, stride, mid);
+    int toRet=PolyRoots.isolateRoots(
+      seq, seqLen, stride, lo, mid, atLo, atMid, roots, offset, depth+1
+    );
+    toRet+=PolyRoots.isolateRoots(
+      seq, seqLen, stride, mid, hi, atMid, atHi, roots, offset+toRet, depth+1
+    );
+    return toRet;
+  }
+  
+  /**
+   * Refines the single root inside the <code>(lo, hi]</code> interval of 
+   * the polynomial stored at the start of the Sturm sequence.
+   */
+  static private double refineRoot(
+    double[] seq, int seqLen, int stride, 
+    double lo, double hi
+  ) {
+    int deg=(int)seq[0];
+    double fLo=PolyRoots.evalSeq(seq, deg, lo);
+    double fHi=PolyRoots.evalSeq(seq, deg, hi);
+    if(0.0==fHi) {
+      return hi;
+    }
+    if((fLo<0) == (fHi<0)) { // even multiplicity root: no sign change
+      return PolyRoots.bisectSturm(seq, seqLen, stride, lo, hi);
+    }
+    boolean increasing=fLo<0;
+    double t=0.5*(lo+hi);
+    for(int i=0; i<PolyRoots.maxIterations; i++) {
+      double f=seq[1+deg], df=0;
+      for(int j=deg-1; j>=0; j--) {
+        df=df*t+f;
+        f=f*t+seq[1+j];
+      }
+      if(0.0==f) {
+        break;
+      }
+      if((f<0)==increasing) {
+        lo=t;
+      }
+      else {
+        hi=t;
+      }
+      double next=t-f/df;
+      if(!(next>lo && next<hi)) {
+        next=0.5*(lo+hi);
+      }
+      if(next==t || hi-lo<=PolyRoots.eps) {
+        t=next;
+        break;
+      }
+      t=next;
+    }
+    return t;
+  }
+  
+  /**
+   * Locates the single root inside <code>(lo, hi]</code> when the polynomial
+   * doesn't change its sign over the interval (even multiplicity root, or
+   * roots so close that they can't be told apart in <code>double</code> precision)
+   * by bisecting on the Sturm count.
+   */
+  static private double bisectSturm(
+    double[] seq, int seqLen, int stride,
+    double lo, double hi
+  ) {
+    int atHi=PolyRoots.signChanges(seq, seqLen, stride, hi);
+    for(int i=0; i<PolyRoots.maxIterations && hi-lo>PolyRoots.eps; i++) {
+      double mid=0.5*(lo+hi);
+      int atMid=PolyRoots.signChanges(seq, seqLen, stride, mid);
+      if(atMid>atHi) { // the root is in (mid, hi]
+        lo=mid;
+      }
+      else {
+        hi=mid;
+        atHi=atMid;
+      }
+    }
+    return 0.5*(lo+hi);
+  }
+  
+  static private double evalSeq(double[] seq, int deg, double t) {
+    double v=seq[1+deg];
+    for(int i=deg-1; i>=0; i--) {
+      v=v*t+seq[1+i];
+    }
+    return v;
+  }
+
+  /**
+   * Drops the roots outside the <code>[0, 1]</code> range (compacting
+   * the array), clamping those that are just a rounding error away
+   * from it.
+   * @return the number of roots kept.
+   */
+  static private int keepInUnit(double[] roots, int offset, int n) {
+    int toRet=0;
+    for(int i=0; i<n; i++) {
+      double r=roots[offset+i];
+      if(r<0 && r>-4*PolyRoots.eps) {
+        r=0.0;
+      }
+      else if(r>1 && r<1+4*PolyRoots.eps) {
+        r=1.0;
+      }
+      if(r>=0 && r<=1 && (0==toRet || roots[offset+toRet-1]!=r)) {
+        roots[offset+toRet++]=r;
+      }
+    }
+    return toRet;
+  }
+  
+  /**
+   * Insertion sort of (the very few) roots, followed by the removal
+   * of the duplicated ones.
+   * @return the number of distinct roots.
+   */
+  static private int sortAndDedup(double[] roots, int offset, int n) {
+    for(int i=1; i<n; i++) {
+      double v=roots[offset+i];
+      int j=i-1;
+      while(j>=0 && roots[offset+j]>v) {
+        roots[offset+j+1]=roots[offset+j];
+        j--;
+      }
+      roots[offset+j+1]=v;
+    }
+    int toRet=(n>0) ? 1 : 0;
+    for(int i=1; i<n; i++) {
+      if(roots[offset+i]!=roots[offset+toRet-1]) {
+        roots[offset+toRet++]=roots[offset+i];
+      }
+    }
+    return toRet;
+  }
+}
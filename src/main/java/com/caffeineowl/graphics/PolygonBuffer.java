@@ -0,0 +1,179 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics;
+
+import java.awt.geom.Path2D;
+
+/**
+ * A growable, primitive storage for a set of polygons: the coordinates
+ * of all the vertices are kept, <code>x</code> then <code>y</code>, in a 
+ * single <code>double[]</code> and the polygons are delimited by the index
+ * (in vertices) where each of them ends. No per-vertex or per-polygon
+ * objects are ever created; the arrays only grow (doubling their capacity)
+ * and are reused after a {@link #clear()}.
+ * <p>The polygons are implicitly closed (the last vertex connects to the first).
+ */
+public class PolygonBuffer {
+  
+  /** Vertex coordinates, <code>x0, y0, x1, y1, ...</code> */
+  protected double[] coords;
+  /** Number of vertices stored */
+  protected int numPoints;
+  /** <code>polyEnds[i]</code> is the (exclusive) index of the last vertex of the i-th polygon */
+  protected int[] polyEnds;
+  /** Number of completed polygons */
+  protected int numPolys;
+  
+  public PolygonBuffer() {
+    this(256, 8);
+  }
+  
+  /**
+   * @param pointsCapacity initial capacity, in vertices
+   * @param polysCapacity initial capacity, in polygons
+   */
+  public PolygonBuffer(int pointsCapacity, int polysCapacity) {
+    this.coords=new double[2*Math.max(pointsCapacity, 4)];
+    this.polyEnds=new int[Math.max(polysCapacity, 2)];
+  }
+  
+  /**
+   * Removes all the polygons, keeping the allocated storage.
+   */
+  public void clear() {
+    this.numPoints=0;
+    this.numPolys=0;
+  }
+  
+  /**
+   * Appends a vertex to the polygon being currently built.
+   */
+  public final void addPoint(double x, double y) {
+    int pos=this.numPoints<<1;
+    if(pos+2>this.coords.length) {
+      double[] newCoords=new double[this.coords.length<<1];
+      System.arraycopy(this.coords, 0, newCoords, 0, pos);
+      this.coords=newCoords;
+    }
+    this.coords[pos]=x;
+    this.coords[pos+1]=y;
+    this.numPoints++;
+  }
+  
+  /**
+   * Completes the polygon being currently built (the vertices added since the 
+   * previous call). Polygons with less than <code>3</code> vertices are discarded.
+   */
+  public final void closePolygon() {
+    int start=(this.numPolys>0) ? this.polyEnds[this.numPolys-1] : 0;
+    if(this.numPoints-start<3) {
+      this.numPoints=start;
+      return;
+    }
+    if(this.numPolys==this.polyEnds.length) {
+      int[] newEnds=new int[this.polyEnds.length<<1];
+      System.arraycopy(this.polyEnds, 0, newEnds, 0, this.numPolys);
+      this.polyEnds=newEnds;
+    }
+    this.polyEnds[this.numPolys++]=this.numPoints;
+  }
+  
+  /**
+   * Appends all the (completed) polygons of another buffer to this one.
+   */
+  public void append(PolygonBuffer other) {
+    int base=this.numPoints;
+    for(int i=0; i<other.numPoints; i++) {
+      this.addPoint(other.coords[2*i], other.coords[2*i+1]);
+    }
+    for(int i=0; i<other.numPolys; i++) {
+      if(this.numPolys==this.polyEnds.length) {
+        int[] newEnds=new int[this.polyEnds.length<<1];
+        System.arraycopy(this.polyEnds, 0, newEnds, 0, this.numPolys);
+        this.polyEnds=newEnds;
+      }
+      this.polyEnds[this.numPolys++]=base+other.polyEnds[i];
+    }
+  }
+  
+  /** The number of completed polygons */
+  public final int getNumPolygons() {
+    return this.numPolys;
+  }
+  
+  /** The index of the first vertex of the i-th polygon */
+  public final int getPolygonStart(int i) {
+    return (0==i) ? 0 : this.polyEnds[i-1];
+  }
+  
+  /** The index after the last vertex of the i-th polygon */
+  public final int getPolygonEnd(int i) {
+    return this.polyEnds[i];
+  }
+  
+  /** The total number of vertices (including the ones of an incomplete polygon) */
+  public final int getNumPoints() {
+    return this.numPoints;
+  }
+  
+  public final double getX(int pointIndex) {
+    return this.coords[pointIndex<<1];
+  }
+  
+  public final double getY(int pointIndex) {
+    return this.coords[(pointIndex<<1)+1];
+  }
+  
+  /**
+   * Direct access to the coordinates array (<code>x</code>, <code>y</code>
+   * pairs). Only the first <code>2*{@link #getNumPoints()}</code> values are
+   * meaningful; the array is replaced when the buffer grows, so don't hold
+   * on to it while adding vertices.
+   */
+  public final double[] getCoords() {
+    return this.coords;
+  }
+  
+  /**
+   * Builds a <code>Path2D</code> (non-zero winding rule) with the completed polygons.
+   */
+  public Path2D.Double toPath2D() {
+    Path2D.Double toRet=new Path2D.Double(Path2D.WIND_NON_ZERO, this.numPoints);
+    int start=0;
+    for(int i=0; i<this.numPolys; i++) {
+      int end=this.polyEnds[i];
+      toRet.moveTo(this.coords[2*start], this.coords[2*start+1]);
+      for(int j=start+1; j<end; j++) {
+        toRet.lineTo(this.coords[2*j], this.coords[2*j+1]);
+      }
+      toRet.closePath();
+      start=end;
+    }
+    return toRet;
+  }
+}
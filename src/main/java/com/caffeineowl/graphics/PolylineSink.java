@@ -0,0 +1,54 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics;
+
+/**
+ * Primitive receiver of flattened geometry: a sequence of polylines, 
+ * each started by a {@link #moveTo(double, double)} and continued by
+ * {@link #lineTo(double, double)}s. The flattening paths feed it either
+ * directly (e.g. {@link com.caffeineowl.graphics.bezier.FloatBezierUtils})
+ * or through a {@link com.caffeineowl.graphics.bezier.PolylineSinkConsumer}.
+ * @see DoublePolyline
+ * @see FloatPolyline
+ * @see FloatBufferPolyline
+ * @see Path2DPolylineSink
+ */
+public interface PolylineSink {
+  /**
+   * Starts a new polyline at the given point.
+   */
+  public void moveTo(double x, double y);
+  
+  /**
+   * Continues the current polyline to the given point. Without a current
+   * polyline (nothing received yet), starts one at the given point, as 
+   * {@link #moveTo(double, double)} does: the flattening paths feeding
+   * the sinks directly only send <code>lineTo</code>s.
+   */
+  public void lineTo(double x, double y);
+}
@@ -27,14 +27,21 @@
 
 package com.caffeineowl.graphics.bezier;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.CubicCurve2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import com.caffeineowl.graphics.DistUtils;
+import com.caffeineowl.graphics.PolyRoots;
 import com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullSubdivCriterion;
+import com.caffeineowl.graphics.bezier.instrumentation.FlatteningEvents;
+import com.caffeineowl.graphics.bezier.instrumentation.FlatteningInstrumentation;
+import com.caffeineowl.graphics.bezier.instrumentation.SubdivisionCounters;
 
 /**
  * Utility functions for processing B&eacute;zier curves.
@@ -47,7 +54,7 @@ public class BezierUtils {
   static private ConvexHullSubdivCriterion defaultSubdivCriterion=
     new ConvexHullSubdivCriterion();
 
-  static private final CubicSubdivisionCriterion defaultCubicSubdivCriterion=
+  static final CubicSubdivisionCriterion defaultCubicSubdivCriterion=
     BezierUtils.defaultSubdivCriterion;
   
   static private final QuadSubdivisionCriterion defaultQuadSubdivCriterion=
@@ -316,6 +323,8 @@ public class BezierUtils {
    * contain all the resulted points (or is <code>null</code>), 
    * the array is re-allocated (old content is copied into the newly allocated
    * one), filled in and returned.
+   * @see #splitCurve(CubicCurve2D, double[], int, double[], int) the allocation
+   * free alternative, writing the pieces into a <code>double[]</code>
    */
   static public CubicCurve2D[] splitCurve(
     CubicCurve2D curve,
@@ -387,6 +396,8 @@ public class BezierUtils {
    * contain all the resulted points (or is <code>null</code>), 
    * the array is re-allocated (old content is copied into the newly allocated
    * one), filled in and returned.
+   * @see #splitCurve(QuadCurve2D, double[], int, double[], int) the allocation
+   * free alternative, writing the pieces into a <code>double[]</code>
    */
   static public QuadCurve2D[] splitCurve(
     QuadCurve2D curve,
@@ -435,6 +446,86 @@ public class BezierUtils {
     return resultsHere;
   }
 
+  /**
+   * Subdivides a cubic B&eacute;zier in more than one subdivision points,
+   * storing the control points of the resulted pieces into a <code>double[]</code>.
+   * Unlike the {@link #splitCurve(CubicCurve2D, double[], CubicCurve2D[])},
+   * this method does not allocate anything, does not sort (or otherwise touch) 
+   * the parameters and computes each piece directly on the original curve
+   * (as opposed to repeatedly splitting the remainder, which requires 
+   * rescaling the parameters and accumulates rounding errors).<br>
+   * The resulted pieces make a "daisy-chain": the end of a piece is 
+   * bitwise identical to the start of the next.
+   * @param curve the curve to subdivide
+   * @param params the values of the curve parameter where to split the curve;
+   * they must be in the <code>[0..1]</code> range and already sorted
+   * in ascending order (the method does not check it). 
+   * @param numParams how many values to use from <code>params</code> 
+   * (starting with the first); the curve will be split in 
+   * <code>numParams+1</code> pieces.
+   * @param resultsHere where to store the pieces, <code>8</code> values per
+   * piece in the <code>x0, y0, cx0, cy0, cx1, cy1, x1, y1</code> order (the one
+   * that <code>CubicCurve2D.setCurve(double[], int)</code> expects). Must be able
+   * to accommodate <code>8*(numParams+1)</code> values, starting from <code>offset</code>.
+   * @param offset the position in <code>resultsHere</code> where to store the
+   * first piece
+   * @return the number of pieces, i.e. <code>numParams+1</code>
+   */
+  static public int splitCurve(
+    CubicCurve2D curve,
+    double[] params, int numParams,
+    double[] resultsHere, int offset
+  ) {
+    double x0=curve.getX1(), y0=curve.getY1();
+    double cx0=curve.getCtrlX1(), cy0=curve.getCtrlY1();
+    double cx1=curve.getCtrlX2(), cy1=curve.getCtrlY2();
+    double x1=curve.getX2(), y1=curve.getY2();
+    double prevT=0.0;
+    for(int i=0; i<numParams; i++) {
+      double t=params[i];
+      BezierUtils.extractSegment(
+        x0, y0, cx0, cy0, cx1, cy1, x1, y1, prevT, t, resultsHere, offset
+      );
+      offset+=8;
+      prevT=t;
+    }
+    BezierUtils.extractSegment(
+      x0, y0, cx0, cy0, cx1, cy1, x1, y1, prevT, 1.0, resultsHere, offset
+    );
+    return numParams+1;
+  }
+
+  /**
+   * Subdivides a quadratic B&eacute;zier in more than one subdivision points,
+   * storing the control points of the resulted pieces into a <code>double[]</code>,
+   * <code>6</code> values per piece in the <code>x0, y0, cx, cy, x1, y1</code>
+   * order. Allocates nothing, the parameters must be already sorted.
+   * @return the number of pieces, i.e. <code>numParams+1</code>
+   * @see #splitCurve(CubicCurve2D, double[], int, double[], int)
+   */
+  static public int splitCurve(
+    QuadCurve2D curve,
+    double[] params, int numParams,
+    double[] resultsHere, int offset
+  ) {
+    double x0=curve.getX1(), y0=curve.getY1();
+    double cx=curve.getCtrlX(), cy=curve.getCtrlY();
+    double x1=curve.getX2(), y1=curve.getY2();
+    double prevT=0.0;
+    for(int i=0; i<numParams; i++) {
+      double t=params[i];
+      BezierUtils.extractSegment(
+        x0, y0, cx, cy, x1, y1, prevT, t, resultsHere, offset
+      );
+      offset+=6;
+      prevT=t;
+    }
+    BezierUtils.extractSegment(
+      x0, y0, cx, cy, x1, y1, prevT, 1.0, resultsHere, offset
+    );
+    return numParams+1;
+  }
+
   /**
    * Computes the location of the point on a cubic B&eacute;zier corresponding to a 
    * given value of the parameter <code>t</code>, and returns the position in
@@ -471,7 +562,7 @@ public class BezierUtils {
       double x1=curve.getX1(), y1=curve.getY1();
       double cx1=curve.getCtrlX1(), cy1=curve.getCtrlY1();
       double cx2=curve.getCtrlX2(), cy2=curve.getCtrlY2();
-      double x2=curve.getX1(), y2=curve.getY1();
+      double x2=curve.getX2(), y2=curve.getY2();
       // Coefficients of the parametric representation of the cubic
       double ax=cx1-x1, ay=cy1-y1;
       double bx=cx2-cx1-ax, by=cy2-cy1-ay;
@@ -527,7 +618,7 @@ public class BezierUtils {
     if(null!=curve) {
       double x1=curve.getX1(), y1=curve.getY1();
       double cx=curve.getCtrlX(), cy=curve.getCtrlY();
-      double x2=curve.getX1(), y2=curve.getY1();
+      double x2=curve.getX2(), y2=curve.getY2();
       // Coefficients of the parametric representation of the cubic
       double ax=cx-x1, ay=cy-y1;
       double bx=x2-cx-ax, by=y2-cy-ay;
@@ -556,7 +647,7 @@ public class BezierUtils {
       }
       else {
         double ax0=curve.getX1(), ay0=curve.getY1();
-        double ax1=curve.getX1(), ay1=curve.getY2();
+        double ax1=curve.getX2(), ay1=curve.getY2();
         double cx0=curve.getCtrlX1(), cy0=curve.getCtrlY1();
         double cx1=curve.getCtrlX2(), cy1=curve.getCtrlY2();
         
@@ -585,7 +676,7 @@ public class BezierUtils {
       }
       else {
         double ax0=curve.getX1(), ay0=curve.getY1();
-        double ax1=curve.getX1(), ay1=curve.getY2();
+        double ax1=curve.getX2(), ay1=curve.getY2();
         double cx=curve.getCtrlX(), cy=curve.getCtrlY();
         
         double tx0=ax0+(cx-ax0)*t, ty0=ay0+(cy-ay0)*t;
@@ -605,7 +696,7 @@ public class BezierUtils {
   ) {
     if(null!=curve && (null!=point || null!=tangent)) {
       double ax0=curve.getX1(), ay0=curve.getY1();
-      double ax1=curve.getX1(), ay1=curve.getY2();
+      double ax1=curve.getX2(), ay1=curve.getY2();
       double cx0=curve.getCtrlX1(), cy0=curve.getCtrlY1();
       double cx1=curve.getCtrlX2(), cy1=curve.getCtrlY2();
       
@@ -630,11 +721,11 @@ public class BezierUtils {
   ) {
     if(null!=curve && (null!=point || null!=tangent)) {
       double ax0=curve.getX1(), ay0=curve.getY1();
-      double ax1=curve.getX1(), ay1=curve.getY2();
+      double ax1=curve.getX2(), ay1=curve.getY2();
       double cx=curve.getCtrlX(), cy=curve.getCtrlY();
       
       double tx0=(cx+ax0)*0.5, ty0=(cy+ay0)*0.5;
-      double tx1=(ax1+cx)*0.5, ty1=(ay1-cy)*0.5;
+      double tx1=(ax1+cx)*0.5, ty1=(ay1+cy)*0.5;
       
       if(null!=tangent) {
         tangent.setLine(tx0, ty0, tx1, ty1);
@@ -667,9 +758,10 @@ public class BezierUtils {
    * @param params the array where the values (in the <code>(0, 1)</code> range)
    * for the curve parameter corresponding to the inflexion points are to be 
    * returned. If <code>null</code>, a <code>NullPointerException</code> 
-   * will be thrown <i>if the curve has inflexion points</i>. If the length of
-   * the array is not enough to accommodate all the values (at most <code>2</code>),
-   * an <code>ArrayIndexOutOfBoundsException</code> is thrown.
+   * will be thrown <i>if the curvature numerator has real roots</i> (even 
+   * outside the <code>(0, 1)</code> range, the array is used as scratch area
+   * by the root solver). If the length of the array is less than <code>2</code>,
+   * an <code>ArrayIndexOutOfBoundsException</code> may be thrown.
    * @return the number of the inflexion points that were found.
    */
   static public int computeInflexion(CubicCurve2D curve, double[] params)
@@ -698,52 +790,435 @@ public class BezierUtils {
     double c1=(ax*cy)-(ay*cx);
     double c2=(bx*cy)-(by*cx);
   
-    if(c2!=0.0) { // quadratic equation
-  
-      double discr=(c1*c1)-(4*c0*c2);
-      c2*=2;
-  
-      if(discr==0) {
-        double root=-c1/c2;
-  
-        if((root>0) && (root<1)) {
-          toRet=1;
-          params[0]=root;
+    // solved by the stable quadratic solver (linear if c2==0), then only the
+    // roots strictly inside the (0, 1) range are kept - in the same order
+    int numRoots=PolyRoots.solveQuadratic(c2, c1, c0, params, 0);
+    for(int i=0; i<numRoots; i++) {
+      double root=params[i];
+      if((root>0) && (root<1)) { //collect it only if between [0..1]
+        params[toRet++]=root;
+      }
+    }
+    return toRet;
+  }
+
+  /**
+   * Computes the parameter values corresponding to the cusps of a cubic
+   * B&eacute;zier, i.e. the points where both the <code>x'(t)</code> and
+   * <code>y'(t)</code> derivatives vanish (the curve stops and turns back).
+   * Only the values in the <code>(0, 1)</code> range are returned, in 
+   * ascending order. A cubic has at most one cusp unless it is degenerate
+   * (e.g. all its points collinear and the curve doubling back on itself).
+   * <p>The roots of one derivative are computed with
+   * {@link PolyRoots#solveQuadratic(double, double, double, double[], int)} and 
+   * kept if the other derivative vanishes there too (within a tolerance
+   * relative to the size of the control polygon).
+   * @param curve the cubic curve
+   * @param params where to store the values, must accommodate <code>2</code> values.
+   * @return the number of cusps found.
+   */
+  static public int computeCusps(CubicCurve2D curve, double[] params) {
+    double x0=curve.getX1(), y0=curve.getY1();
+    double cx0=curve.getCtrlX1(), cy0=curve.getCtrlY1();
+    double cx1=curve.getCtrlX2(), cy1=curve.getCtrlY2();
+    double x1=curve.getX2(), y1=curve.getY2();
+    // derivatives/3 as a*t^2+b*t+c
+    double ax=x1-3*(cx1-cx0)-x0, bx=2*(cx1-cx0-cx0+x0), cx=cx0-x0;
+    double ay=y1-3*(cy1-cy0)-y0, by=2*(cy1-cy0-cy0+y0), cy=cy0-y0;
+    double scale=Math.max(
+      Math.max(Math.abs(ax), Math.abs(bx)), 
+      Math.max(Math.abs(ay), Math.abs(by))
+    );
+    scale=Math.max(scale, Math.max(Math.abs(cx), Math.abs(cy)));
+    if(0.0==scale) { // a single point
+      return 0;
+    }
+    double tol=1.0e-9*scale;
+    // solve for the coordinate with the "larger" derivative,
+    // check the other one
+    boolean solveX=Math.abs(ax)+Math.abs(bx)+Math.abs(cx)>=Math.abs(ay)+Math.abs(by)+Math.abs(cy);
+    int num=solveX ? 
+      PolyRoots.solveQuadratic(ax, bx, cx, params, 0) :
+      PolyRoots.solveQuadratic(ay, by, cy, params, 0)
+    ;
+    int toRet=0;
+    for(int i=0; i<num; i++) {
+      double t=params[i];
+      if(t>0 && t<1) {
+        double other=solveX ? ((ay*t+by)*t+cy) : ((ax*t+bx)*t+cx);
+        if(Math.abs(other)<=tol) {
+          params[toRet++]=t;
         }
-      } else if(discr>0) {
-        discr=Math.sqrt(discr);
+      }
+    }
+    return toRet;
+  }
+
+  /**
+   * Computes the blossom (polar form) of a cubic B&eacute;zier coordinate,
+   * i.e. runs the de Casteljau algorithm using a different parameter
+   * value at each of the three levels.
+   * <code>blossom(p0, p1, p2, p3, t, t, t)</code> is the coordinate of the
+   * point at <code>t</code>; the control points of the part of the curve
+   * between <code>t0</code> and <code>t1</code> are the blossoms at
+   * <code>(t0, t0, t0)</code>, <code>(t0, t0, t1)</code>, 
+   * <code>(t0, t1, t1)</code> and <code>(t1, t1, t1)</code>.
+   */
+  static private double blossom(
+    double p0, double p1, double p2, double p3,
+    double u, double v, double w
+  ) {
+    double a0=p0+(u*(p1-p0));
+    double a1=p1+(u*(p2-p1));
+    double a2=p2+(u*(p3-p2));
+    double b0=a0+(v*(a1-a0));
+    double b1=a1+(v*(a2-a1));
+    return b0+(w*(b1-b0));
+  }
+
+  /**
+   * Computes the blossom (polar form) of a quadratic B&eacute;zier coordinate.
+   * @see #blossom(double, double, double, double, double, double, double)
+   */
+  static private double blossom(
+    double p0, double p1, double p2,
+    double u, double v
+  ) {
+    double a0=p0+(u*(p1-p0));
+    double a1=p1+(u*(p2-p1));
+    return a0+(v*(a1-a0));
+  }
   
-        double root=(-c1-discr)/c2;
-        if((root>0) && (root<1)) { //collect it only if between [0..1]
-          params[toRet++]=root;
+  /**
+   * Computes the control points of the part of a cubic B&eacute;zier
+   * between the <code>t0</code> and <code>t1</code> values of the parameter,
+   * directly on the original curve (no error accumulates when extracting 
+   * consecutive parts). The coordinates are stored in the
+   * <code>x0, y0, cx0, cy0, cx1, cy1, x1, y1</code> order (the order 
+   * <code>CubicCurve2D.setCurve(double[], int)</code> expects).
+   * For <code>t0==0</code> and <code>t1==1</code>, the anchors
+   * of the original curve are copied verbatim.
+   */
+  static void extractSegment(
+    double x0, double y0, double cx0, double cy0,
+    double cx1, double cy1, double x1, double y1,
+    double t0, double t1,
+    double[] resultHere, int offset
+  ) {
+    if(0.0==t0) {
+      resultHere[offset]=x0;
+      resultHere[offset+1]=y0;
+    }
+    else {
+      resultHere[offset]=BezierUtils.blossom(x0, cx0, cx1, x1, t0, t0, t0);
+      resultHere[offset+1]=BezierUtils.blossom(y0, cy0, cy1, y1, t0, t0, t0);
+    }
+    resultHere[offset+2]=BezierUtils.blossom(x0, cx0, cx1, x1, t0, t0, t1);
+    resultHere[offset+3]=BezierUtils.blossom(y0, cy0, cy1, y1, t0, t0, t1);
+    resultHere[offset+4]=BezierUtils.blossom(x0, cx0, cx1, x1, t0, t1, t1);
+    resultHere[offset+5]=BezierUtils.blossom(y0, cy0, cy1, y1, t0, t1, t1);
+    if(1.0==t1) {
+      resultHere[offset+6]=x1;
+      resultHere[offset+7]=y1;
+    }
+    else {
+      resultHere[offset+6]=BezierUtils.blossom(x0, cx0, cx1, x1, t1, t1, t1);
+      resultHere[offset+7]=BezierUtils.blossom(y0, cy0, cy1, y1, t1, t1, t1);
+    }
+  }
+
+  /**
+   * Computes the control points of the part of a quadratic B&eacute;zier
+   * between the <code>t0</code> and <code>t1</code> values of the parameter,
+   * directly on the original curve. The coordinates are stored in the
+   * <code>x0, y0, cx, cy, x1, y1</code> order (the order 
+   * <code>QuadCurve2D.setCurve(double[], int)</code> expects).
+   * @see #extractSegment(double, double, double, double, double, double, double, double, double, double, double[], int)
+   */
+  static void extractSegment(
+    double x0, double y0, double cx, double cy,
+    double x1, double y1,
+    double t0, double t1,
+    double[] resultHere, int offset
+  ) {
+    if(0.0==t0) {
+      resultHere[offset]=x0;
+      resultHere[offset+1]=y0;
+    }
+    else {
+      resultHere[offset]=BezierUtils.blossom(x0, cx, x1, t0, t0);
+      resultHere[offset+1]=BezierUtils.blossom(y0, cy, y1, t0, t0);
+    }
+    resultHere[offset+2]=BezierUtils.blossom(x0, cx, x1, t0, t1);
+    resultHere[offset+3]=BezierUtils.blossom(y0, cy, y1, t0, t1);
+    if(1.0==t1) {
+      resultHere[offset+4]=x1;
+      resultHere[offset+5]=y1;
+    }
+    else {
+      resultHere[offset+4]=BezierUtils.blossom(x0, cx, x1, t1, t1);
+      resultHere[offset+5]=BezierUtils.blossom(y0, cy, y1, t1, t1);
+    }
+  }
+  
+  /**
+   * Keeps the values in the <code>(0, 1)</code> range of the <code>n</code>
+   * ones starting at <code>offset</code> (compacting them), sorts them 
+   * and removes the duplicates.
+   * @return the number of values kept.
+   */
+  static private int sortedInnerParams(double[] params, int offset, int n) {
+    int toRet=0;
+    for(int i=0; i<n; i++) {
+      double t=params[offset+i];
+      if(t>0 && t<1) {
+        int j=toRet-1;
+        while(j>=0 && params[offset+j]>t) {
+          j--;
         }
-        
-        root=(-c1+discr)/c2;
-        if((root>0) && (root<1)) { //collect it only if between [0..1]
-          if(toRet>0 && params[0]>root) {
-            params[1]=params[0];
-            params[0]=root;
-          }
-          else {
-            params[toRet++]=root;
+        if(j<0 || params[offset+j]!=t) { // not a duplicate, insert it after j
+          for(int k=toRet; k>j+1; k--) {
+            params[offset+k]=params[offset+k-1];
           }
+          params[offset+j+1]=t;
+          toRet++;
         }
-        
-        if(2==toRet && (params[0]>params[1])) {
-          double aux=params[0];
-          params[0]=params[1];
-          params[1]=aux;
-        }
-      }
-    } else if(c1!=0.0) { // linear equation c1*t+c0=0
-      double root=-c0/c1;
-      if((root>0) && (root<1)) {
-        params[toRet++]=root;
       }
-    }  
-    // else its a totally degenerate curve: a single point
+    }
     return toRet;
   }
+  
+  /**
+   * Computes the parameter values where the coordinates of a cubic
+   * B&eacute;zier reach their extremes (i.e. where the derivative
+   * of the <code>x(t)</code> and/or <code>y(t)</code> is null).
+   * Only the values in the <code>(0, 1)</code> range are returned, in
+   * ascending order and without duplicates. Splitting the curve at these 
+   * values gives pieces that are monotonic along the requested axis(es).
+   * <p>The derivatives are quadratics, solved by 
+   * {@link PolyRoots#solveQuadratic(double, double, double, double[], int)}.
+   * @param curve the cubic curve
+   * @param inX if <code>true</code>, the extremes of the <code>x(t)</code> 
+   *   are searched for
+   * @param inY if <code>true</code>, the extremes of the <code>y(t)</code> 
+   *   are searched for
+   * @param params where to store the values; it must be able to accommodate
+   *   <code>4</code> values (even if, at the end, less are returned - the array
+   *   is used as a scratch area)
+   * @return the number of parameter values that were found.
+   */
+  static public int computeExtremes(
+    CubicCurve2D curve, boolean inX, boolean inY, double[] params
+  ) {
+    int num=0;
+    if(inX) {
+      num+=BezierUtils.cubicDerivativeRoots(
+        curve.getX1(), curve.getCtrlX1(), curve.getCtrlX2(), curve.getX2(), params, num
+      );
+    }
+    if(inY) {
+      num+=BezierUtils.cubicDerivativeRoots(
+        curve.getY1(), curve.getCtrlY1(), curve.getCtrlY2(), curve.getY2(), params, num
+      );
+    }
+    return BezierUtils.sortedInnerParams(params, 0, num);
+  }
+
+  /**
+   * Computes the parameter values where the coordinates of a quadratic
+   * B&eacute;zier reach their extremes. Only the values in the <code>(0, 1)</code>
+   * range are returned, in ascending order and without duplicates.
+   * @param params where to store the values (at most <code>2</code>).
+   * @return the number of parameter values that were found.
+   * @see #computeExtremes(CubicCurve2D, boolean, boolean, double[])
+   */
+  static public int computeExtremes(
+    QuadCurve2D curve, boolean inX, boolean inY, double[] params
+  ) {
+    int num=0;
+    if(inX) {
+      num+=PolyRoots.solveLinear(
+        curve.getX1()-2*curve.getCtrlX()+curve.getX2(),
+        curve.getCtrlX()-curve.getX1(),
+        params, num
+      );
+    }
+    if(inY) {
+      num+=PolyRoots.solveLinear(
+        curve.getY1()-2*curve.getCtrlY()+curve.getY2(),
+        curve.getCtrlY()-curve.getY1(),
+        params, num
+      );
+    }
+    return BezierUtils.sortedInnerParams(params, 0, num);
+  }
+  
+  /**
+   * Computes the tight bounding box of a cubic B&eacute;zier (the one
+   * of the curve itself, not of its control polygon): the bounds of the
+   * end points and of the points where the coordinates reach their extremes
+   * (the roots of the derivatives, see 
+   * {@link #computeExtremes(CubicCurve2D, boolean, boolean, double[])}).
+   * @param coords the control points, <code>x0, y0, cx0, cy0, cx1, cy1, x1, y1</code>
+   * @param offset the position of <code>x0</code> in <code>coords</code>
+   * @param boundsHere where to store the bounds, as <code>minX, minY, maxX, maxY</code>
+   * @param boundsOffset the position in <code>boundsHere</code> where to store <code>minX</code>
+   */
+  static public void tightBounds(
+    double[] coords, int offset, double[] boundsHere, int boundsOffset
+  ) {
+    double[] roots=new double[2];
+    for(int axis=0; axis<2; axis++) {
+      double p0=coords[offset+axis], p1=coords[offset+2+axis];
+      double p2=coords[offset+4+axis], p3=coords[offset+6+axis];
+      double min=Math.min(p0, p3), max=Math.max(p0, p3);
+      if(p1<min || p1>max || p2<min || p2>max) { // else the hull is within the ends
+        int num=BezierUtils.cubicDerivativeRoots(p0, p1, p2, p3, roots, 0);
+        for(int i=0; i<num; i++) {
+          double t=roots[i];
+          if(t>0 && t<1) {
+            double mt=1-t;
+            double v=mt*mt*mt*p0+3*mt*mt*t*p1+3*mt*t*t*p2+t*t*t*p3;
+            min=Math.min(min, v);
+            max=Math.max(max, v);
+          }
+        }
+      }
+      boundsHere[boundsOffset+axis]=min;
+      boundsHere[boundsOffset+2+axis]=max;
+    }
+  }
+  
+  /**
+   * Computes the tight bounding box of a cubic B&eacute;zier.
+   * @param boundsHere where to store the bounds; if <code>null</code>, a
+   *   new <code>Rectangle2D.Double</code> is allocated
+   * @return the bounds
+   * @see #tightBounds(double[], int, double[], int)
+   */
+  static public Rectangle2D tightBounds(CubicCurve2D curve, Rectangle2D boundsHere) {
+    double[] coords={
+      curve.getX1(), curve.getY1(), curve.getCtrlX1(), curve.getCtrlY1(),
+      curve.getCtrlX2(), curve.getCtrlY2(), curve.getX2(), curve.getY2()
+    };
+    double[] bounds=new double[4];
+    BezierUtils.tightBounds(coords, 0, bounds, 0);
+    if(null==boundsHere) {
+      boundsHere=new Rectangle2D.Double();
+    }
+    boundsHere.setFrameFromDiagonal(bounds[0], bounds[1], bounds[2], bounds[3]);
+    return boundsHere;
+  }
+  
+  /**
+   * The roots of the derivative of a cubic B&eacute;zier coordinate
+   * (divided by 3):
+   * <code>(p3-3p2+3p1-p0)t<sup>2</sup>+2(p2-2p1+p0)t+(p1-p0)</code>
+   */
+  static private int cubicDerivativeRoots(
+    double p0, double p1, double p2, double p3,
+    double[] roots, int offset
+  ) {
+    return PolyRoots.solveQuadratic(
+      p3-3*(p2-p1)-p0,
+      2*(p2-p1-p1+p0),
+      p1-p0,
+      roots, offset
+    );
+  }
+  
+  /**
+   * Splits a cubic B&eacute;zier in pieces that are monotonic along the
+   * requested axis(es) - e.g. y-monotonic pieces for a scanline rasteriser, 
+   * x- and y-monotonic ones for intersection sweeps.<br>
+   * The pieces are computed directly on the original curve (no accumulated
+   * rounding errors, same as 
+   * {@link #splitCurve(CubicCurve2D, double[], int, double[], int)})
+   * and their control points are written, <code>8</code> values per 
+   * piece (<code>x0, y0, cx0, cy0, cx1, cy1, x1, y1</code>), into the provided
+   * array. The pieces make a "daisy-chain". Nothing is allocated.
+   * @param curve the cubic to decompose
+   * @param inX if <code>true</code>, the pieces will be monotonic in <code>x</code>
+   * @param inY if <code>true</code>, the pieces will be monotonic in <code>y</code>
+   * @param coordsHere where to store the pieces; in the worst case,
+   *   there are 5 pieces (<code>40</code> values), use 
+   *   {@link #computeExtremes(CubicCurve2D, boolean, boolean, double[])} if
+   *   the exact number is needed beforehand. The array needs to accommodate at
+   *   least <code>8</code> values, because it is used as scratch area.
+   * @param offset the position in <code>coordsHere</code> where the first piece starts
+   * @return the number of pieces.
+   */
+  static public int monotonicDecomposition(
+    CubicCurve2D curve, boolean inX, boolean inY,
+    double[] coordsHere, int offset
+  ) {
+    int num=0;
+    double x0=curve.getX1(), y0=curve.getY1();
+    double cx0=curve.getCtrlX1(), cy0=curve.getCtrlY1();
+    double cx1=curve.getCtrlX2(), cy1=curve.getCtrlY2();
+    double x1=curve.getX2(), y1=curve.getY2();
+    // use the first 4 slots of the result as the scratch area for the roots
+    if(inX) {
+      num+=BezierUtils.cubicDerivativeRoots(x0, cx0, cx1, x1, coordsHere, offset+num);
+    }
+    if(inY) {
+      num+=BezierUtils.cubicDerivativeRoots(y0, cy0, cy1, y1, coordsHere, offset+num);
+    }
+    num=BezierUtils.sortedInnerParams(coordsHere, offset, num);
+    double t0=(num>0) ? coordsHere[offset] : 1.0;
+    double t1=(num>1) ? coordsHere[offset+1] : 1.0;
+    double t2=(num>2) ? coordsHere[offset+2] : 1.0;
+    double t3=(num>3) ? coordsHere[offset+3] : 1.0;
+    double prevT=0.0;
+    for(int i=0; i<=num; i++) {
+      double t=(0==i) ? t0 : ((1==i) ? t1 : ((2==i) ? t2 : ((3==i) ? t3 : 1.0)));
+      BezierUtils.extractSegment(
+        x0, y0, cx0, cy0, cx1, cy1, x1, y1,
+        prevT, t, coordsHere, offset+8*i
+      );
+      prevT=t;
+    }
+    return num+1;
+  }
+
+  /**
+   * Splits a quadratic B&eacute;zier in pieces that are monotonic along the
+   * requested axis(es). The control points of the pieces are written, 
+   * <code>6</code> values per piece (<code>x0, y0, cx, cy, x1, y1</code>), into
+   * the provided array.
+   * @param coordsHere where to store the pieces; in the worst case,
+   *   there are 3 pieces (<code>18</code> values).
+   * @return the number of pieces.
+   * @see #monotonicDecomposition(CubicCurve2D, boolean, boolean, double[], int)
+   */
+  static public int monotonicDecomposition(
+    QuadCurve2D curve, boolean inX, boolean inY,
+    double[] coordsHere, int offset
+  ) {
+    int num=0;
+    double x0=curve.getX1(), y0=curve.getY1();
+    double cx=curve.getCtrlX(), cy=curve.getCtrlY();
+    double x1=curve.getX2(), y1=curve.getY2();
+    if(inX) {
+      num+=PolyRoots.solveLinear(x0-2*cx+x1, cx-x0, coordsHere, offset+num);
+    }
+    if(inY) {
+      num+=PolyRoots.solveLinear(y0-2*cy+y1, cy-y0, coordsHere, offset+num);
+    }
+    num=BezierUtils.sortedInnerParams(coordsHere, offset, num);
+    double t0=(num>0) ? coordsHere[offset] : 1.0;
+    double t1=(num>1) ? coordsHere[offset+1] : 1.0;
+    double prevT=0.0;
+    for(int i=0; i<=num; i++) {
+      double t=(0==i) ? t0 : ((1==i) ? t1 : 1.0);
+      BezierUtils.extractSegment(
+        x0, y0, cx, cy, x1, y1,
+        prevT, t, coordsHere, offset+6*i
+      );
+      prevT=t;
+    }
+    return num+1;
+  }
 
   /**
    * Method to perform an adaptive halving of a cubic B&eacute;zier, based
@@ -808,7 +1283,25 @@ public class BezierUtils {
     if(null==subdivCriterion) {
       subdivCriterion=BezierUtils.defaultCubicSubdivCriterion;
     }
-    BezierUtils.adaptiveHalving(curve, 0.0, 1.0, subdivCriterion, segConsumer);
+    Object event=FlatteningEvents.beginFlattening();
+    FlatteningEvents.SegmentCounter counter=null;
+    if(null!=event) {
+      counter=new FlatteningEvents.SegmentCounter(segConsumer);
+      segConsumer=counter;
+    }
+    CubicSubdivisionCriterion criterion=subdivCriterion;
+    if(FlatteningInstrumentation.isEnabled()) {
+      SubdivisionCounters counters=FlatteningInstrumentation.countersFor(subdivCriterion.getClass());
+      criterion=FlatteningInstrumentation.instrumentCubic(subdivCriterion, counters);
+      segConsumer=FlatteningInstrumentation.instrumentCubic(segConsumer, counters);
+    }
+    BezierUtils.adaptiveHalving(curve, 0.0, 1.0, criterion, segConsumer);
+    if(null!=event) {
+      FlatteningEvents.endFlattening(
+        event, "adaptiveHalving", "cubic", subdivCriterion,
+        FlatteningEvents.toleranceOf(subdivCriterion), counter.getCount()
+      );
+    }
   }
   
   /**
@@ -874,7 +1367,449 @@ public class BezierUtils {
     if(null==subdivCriterion) {
       subdivCriterion=BezierUtils.defaultQuadSubdivCriterion;
     }
-    BezierUtils.adaptiveHalving(curve, 0.0, 1.0, subdivCriterion, segConsumer);
+    Object event=FlatteningEvents.beginFlattening();
+    FlatteningEvents.SegmentCounter counter=null;
+    if(null!=event) {
+      counter=new FlatteningEvents.SegmentCounter(segConsumer);
+      segConsumer=counter;
+    }
+    QuadSubdivisionCriterion criterion=subdivCriterion;
+    if(FlatteningInstrumentation.isEnabled()) {
+      SubdivisionCounters counters=FlatteningInstrumentation.countersFor(subdivCriterion.getClass());
+      criterion=FlatteningInstrumentation.instrumentQuad(subdivCriterion, counters);
+      segConsumer=FlatteningInstrumentation.instrumentQuad(segConsumer, counters);
+    }
+    BezierUtils.adaptiveHalving(curve, 0.0, 1.0, criterion, segConsumer);
+    if(null!=event) {
+      FlatteningEvents.endFlattening(
+        event, "adaptiveHalving", "quad", subdivCriterion,
+        FlatteningEvents.toleranceOf(subdivCriterion), counter.getCount()
+      );
+    }
+  }
+  
+  /**
+   * The hard limit for the depth of the 
+   * {@linkplain #adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer, int, int) bounded
+   * adaptive halving}: past it, the parameter ranges of the halves are no
+   * longer representable anyway.
+   */
+  static public final int maxHalvingDepth=60;
+  
+  /**
+   * Tells if a cubic is geometrically a straight segment (including the
+   * case of all the points coincident): both control points are on the
+   * segment between the anchors, within a relative <code>1e-12</code>
+   * of the curve extent. Such a curve is its own flattening.
+   * Curves with non-finite coordinates are not straight.
+   */
+  static public boolean isStraight(CubicCurve2D curve) {
+    double x0=curve.getX1(), y0=curve.getY1();
+    double x1=curve.getX2(), y1=curve.getY2();
+    double cx0=curve.getCtrlX1(), cy0=curve.getCtrlY1();
+    double cx1=curve.getCtrlX2(), cy1=curve.getCtrlY2();
+    double extent=Math.max(
+      Math.max(Math.abs(cx0-x0), Math.abs(cy0-y0)),
+      Math.max(
+        Math.max(Math.abs(cx1-x0), Math.abs(cy1-y0)),
+        Math.max(Math.abs(x1-x0), Math.abs(y1-y0))
+      )
+    );
+    if(!(extent<Double.POSITIVE_INFINITY)) { // infinite or NaN
+      return false;
+    }
+    double sqEps=1.0e-24*extent*extent;
+    return 
+      DistUtils.pointToSegSqEucDist(cx0, cy0, x0, y0, x1, y1)<=sqEps
+      && DistUtils.pointToSegSqEucDist(cx1, cy1, x0, y0, x1, y1)<=sqEps;
+  }
+  
+  /**
+   * Tells if a quadratic is geometrically a straight segment.
+   * @see #isStraight(CubicCurve2D)
+   */
+  static public boolean isStraight(QuadCurve2D curve) {
+    double x0=curve.getX1(), y0=curve.getY1();
+    double x1=curve.getX2(), y1=curve.getY2();
+    double cx=curve.getCtrlX(), cy=curve.getCtrlY();
+    double extent=Math.max(
+      Math.max(Math.abs(cx-x0), Math.abs(cy-y0)),
+      Math.max(Math.abs(x1-x0), Math.abs(y1-y0))
+    );
+    if(!(extent<Double.POSITIVE_INFINITY)) {
+      return false;
+    }
+    return DistUtils.pointToSegSqEucDist(cx, cy, x0, y0, x1, y1)<=1.0e-24*extent*extent;
+  }
+  
+  /**
+   * Tells if all the coordinates of a cubic are finite.
+   */
+  static public boolean isFinite(CubicCurve2D curve) {
+    // a sum of finite values is finite or +/-infinity, never NaN
+    double sum=curve.getX1()+curve.getY1()+curve.getCtrlX1()+curve.getCtrlY1()
+      +curve.getCtrlX2()+curve.getCtrlY2()+curve.getX2()+curve.getY2();
+    return !Double.isNaN(sum-sum);
+  }
+  
+  /**
+   * Tells if all the coordinates of a quadratic are finite.
+   */
+  static public boolean isFinite(QuadCurve2D curve) {
+    double sum=curve.getX1()+curve.getY1()+curve.getCtrlX()+curve.getCtrlY()
+      +curve.getX2()+curve.getY2();
+    return !Double.isNaN(sum-sum);
+  }
+  
+  /**
+   * The recursive core of the bounded adaptive halving of a cubic.
+   * @param depthLeft how many more times the curve may be halved
+   * @param budget the maximum number of segments this curve may be emitted as
+   *   (at least <code>1</code>).
+   * @return the number of emitted segments
+   */
+  static private int boundedHalving(
+    CubicCurve2D curve, double tMin, double tMax,
+    int depthLeft, int budget,
+    CubicSubdivisionCriterion           subdivCriterion,
+    CubicSegmentConsumer                segConsumer
+  ) {
+    if(depthLeft>0 && budget>1 && subdivCriterion.shouldSplit(curve)) {
+      CubicCurve2D firstHalf=new CubicCurve2D.Double();
+      CubicCurve2D secondHalf=new CubicCurve2D.Double();
+      double tMid=(tMin+tMax)/2.0;
+      BezierUtils.halfSplitCurve(curve, firstHalf, secondHalf);
+      // leave at least a segment for the second half
+      int used=BezierUtils.boundedHalving(
+        firstHalf, tMin, tMid, depthLeft-1, budget-1, subdivCriterion, segConsumer
+      );
+      return used+BezierUtils.boundedHalving(
+        secondHalf, tMid, tMax, depthLeft-1, budget-used, subdivCriterion, segConsumer
+      );
+    }
+    if(null!=segConsumer) {
+      segConsumer.processSegment(curve, tMin, tMax);
+    }
+    return 1;
+  }
+  
+  /**
+   * The recursive core of the bounded adaptive halving of a quadratic.
+   * @see #boundedHalving(CubicCurve2D, double, double, int, int, CubicSubdivisionCriterion, CubicSegmentConsumer)
+   */
+  static private int boundedHalving(
+    QuadCurve2D curve, double tMin, double tMax,
+    int depthLeft, int budget,
+    QuadSubdivisionCriterion            subdivCriterion,
+    QuadSegmentConsumer                 segConsumer
+  ) {
+    if(depthLeft>0 && budget>1 && subdivCriterion.shouldSplit(curve)) {
+      QuadCurve2D firstHalf=new QuadCurve2D.Double();
+      QuadCurve2D secondHalf=new QuadCurve2D.Double();
+      double tMid=(tMin+tMax)/2.0;
+      BezierUtils.halfSplitCurve(curve, firstHalf, secondHalf);
+      int used=BezierUtils.boundedHalving(
+        firstHalf, tMin, tMid, depthLeft-1, budget-1, subdivCriterion, segConsumer
+      );
+      return used+BezierUtils.boundedHalving(
+        secondHalf, tMid, tMax, depthLeft-1, budget-used, subdivCriterion, segConsumer
+      );
+    }
+    if(null!=segConsumer) {
+      segConsumer.processSegment(curve, tMin, tMax);
+    }
+    return 1;
+  }
+  
+  /**
+   * A bounded variant of the 
+   * {@linkplain #adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) 
+   * adaptive halving}, safe against malformed input: the recursion never
+   * goes deeper than <code>maxDepth</code> and no more than <code>maxSegments</code>
+   * segments are emitted (the pieces that would need further splitting 
+   * past these limits are emitted as they are, so the result is still a
+   * "daisy-chain" covering the whole curve; when the budget runs out,
+   * the refinement favours the start of the curve).
+   * <p>Degenerate curves are detected up front and emitted as one segment,
+   * without consulting the criterion: the {@linkplain #isStraight(CubicCurve2D) straight}
+   * ones (including the all-points-coincident ones) and the ones with 
+   * non-{@linkplain #isFinite(CubicCurve2D) finite} coordinates (which no
+   * subdivision can make flat).
+   * @param curve the curve to be split
+   * @param subdivCriterion the subdivision criterion (<code>null</code> for the default)
+   * @param segConsumer the consumer of the resulted segments
+   * @param maxDepth the maximum recursion depth, capped at {@link #maxHalvingDepth}
+   * @param maxSegments the maximum number of emitted segments (at least <code>1</code>)
+   * @return the number of emitted segments
+   */
+  static public int adaptiveHalving(
+    CubicCurve2D                        curve,
+    CubicSubdivisionCriterion           subdivCriterion,
+    CubicSegmentConsumer                segConsumer,
+    int maxDepth, int maxSegments
+  ) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    if(null==subdivCriterion) {
+      subdivCriterion=BezierUtils.defaultCubicSubdivCriterion;
+    }
+    maxDepth=Math.max(0, Math.min(maxDepth, BezierUtils.maxHalvingDepth));
+    maxSegments=Math.max(1, maxSegments);
+    if(false==BezierUtils.isFinite(curve) || BezierUtils.isStraight(curve)) {
+      maxDepth=0;
+    }
+    return BezierUtils.boundedHalving(
+      curve, 0.0, 1.0, maxDepth, maxSegments, subdivCriterion, segConsumer
+    );
+  }
+  
+  /**
+   * A bounded variant of the 
+   * {@linkplain #adaptiveHalving(QuadCurve2D, QuadSubdivisionCriterion, QuadSegmentConsumer) 
+   * adaptive halving} of a quadratic.
+   * @see #adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer, int, int)
+   */
+  static public int adaptiveHalving(
+    QuadCurve2D                         curve,
+    QuadSubdivisionCriterion            subdivCriterion,
+    QuadSegmentConsumer                 segConsumer,
+    int maxDepth, int maxSegments
+  ) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    if(null==subdivCriterion) {
+      subdivCriterion=BezierUtils.defaultQuadSubdivCriterion;
+    }
+    maxDepth=Math.max(0, Math.min(maxDepth, BezierUtils.maxHalvingDepth));
+    maxSegments=Math.max(1, maxSegments);
+    if(false==BezierUtils.isFinite(curve) || BezierUtils.isStraight(curve)) {
+      maxDepth=0;
+    }
+    return BezierUtils.boundedHalving(
+      curve, 0.0, 1.0, maxDepth, maxSegments, subdivCriterion, segConsumer
+    );
+  }
+  
+  /**
+   * Flattens a cubic B&eacute;zier under an affine transformation (e.g. the
+   * user-to-device one): as affine maps preserve the B&eacute;zier form, the
+   * control points are transformed once and the 
+   * {@linkplain #adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) adaptive halving}
+   * is done on the transformed curve. The criterion is thus applied in 
+   * device space, where its tolerance is met exactly (whatever the scale,
+   * uniform or not, of the transformation), and the consumer receives the
+   * segments already transformed.
+   * @param curve the curve to be flattened, in user space
+   * @param at the transformation to device space (<code>null</code> for the identity)
+   * @param subdivCriterion the subdivision criterion, with a device space
+   *   tolerance (<code>null</code> for the default)
+   * @param segConsumer the consumer of the (device space) segments
+   */
+  static public void adaptiveHalving(
+    CubicCurve2D                        curve,
+    AffineTransform                     at,
+    CubicSubdivisionCriterion           subdivCriterion,
+    CubicSegmentConsumer                segConsumer
+  ) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    if(null!=at && false==at.isIdentity()) {
+      double[] pts={
+        curve.getX1(), curve.getY1(), curve.getCtrlX1(), curve.getCtrlY1(),
+        curve.getCtrlX2(), curve.getCtrlY2(), curve.getX2(), curve.getY2()
+      };
+      at.transform(pts, 0, pts, 0, 4);
+      curve=new CubicCurve2D.Double(pts[0], pts[1], pts[2], pts[3], pts[4], pts[5], pts[6], pts[7]);
+    }
+    BezierUtils.adaptiveHalving(curve, subdivCriterion, segConsumer);
+  }
+  
+  /**
+   * Flattens a quadratic B&eacute;zier under an affine transformation, the
+   * criterion being applied in device space.
+   * @see #adaptiveHalving(CubicCurve2D, AffineTransform, CubicSubdivisionCriterion, CubicSegmentConsumer)
+   */
+  static public void adaptiveHalving(
+    QuadCurve2D                         curve,
+    AffineTransform                     at,
+    QuadSubdivisionCriterion            subdivCriterion,
+    QuadSegmentConsumer                 segConsumer
+  ) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    if(null!=at && false==at.isIdentity()) {
+      double[] pts={
+        curve.getX1(), curve.getY1(), curve.getCtrlX(), curve.getCtrlY(),
+        curve.getX2(), curve.getY2()
+      };
+      at.transform(pts, 0, pts, 0, 3);
+      curve=new QuadCurve2D.Double(pts[0], pts[1], pts[2], pts[3], pts[4], pts[5]);
+    }
+    BezierUtils.adaptiveHalving(curve, subdivCriterion, segConsumer);
+  }
+  
+  /**
+   * Tells if the bounding box of the control points of a cubic (which
+   * contains the convex hull, hence the curve) is disjoint from a rectangle.
+   */
+  static private boolean isOutside(CubicCurve2D curve, Rectangle2D view) {
+    double x0=curve.getX1(), x1=curve.getCtrlX1(), x2=curve.getCtrlX2(), x3=curve.getX2();
+    if(Math.max(Math.max(x0, x1), Math.max(x2, x3))<view.getMinX()
+      || Math.min(Math.min(x0, x1), Math.min(x2, x3))>view.getMaxX()) {
+      return true;
+    }
+    double y0=curve.getY1(), y1=curve.getCtrlY1(), y2=curve.getCtrlY2(), y3=curve.getY2();
+    return Math.max(Math.max(y0, y1), Math.max(y2, y3))<view.getMinY()
+      || Math.min(Math.min(y0, y1), Math.min(y2, y3))>view.getMaxY();
+  }
+  
+  /**
+   * Tells if the bounding box of the control points of a quadratic is 
+   * disjoint from a rectangle.
+   */
+  static private boolean isOutside(QuadCurve2D curve, Rectangle2D view) {
+    double x0=curve.getX1(), x1=curve.getCtrlX(), x2=curve.getX2();
+    if(Math.max(Math.max(x0, x1), x2)<view.getMinX()
+      || Math.min(Math.min(x0, x1), x2)>view.getMaxX()) {
+      return true;
+    }
+    double y0=curve.getY1(), y1=curve.getCtrlY(), y2=curve.getY2();
+    return Math.max(Math.max(y0, y1), y2)<view.getMinY()
+      || Math.min(Math.min(y0, y1), y2)>view.getMaxY();
+  }
+  
+  /**
+   * The recursive core of the clipped adaptive halving of a cubic.
+   * @return the number of emitted segments
+   */
+  static private int clippedHalving(
+    CubicCurve2D curve, double tMin, double tMax,
+    Rectangle2D view, boolean dropHidden,
+    CubicSubdivisionCriterion           subdivCriterion,
+    CubicSegmentConsumer                segConsumer
+  ) {
+    if(BezierUtils.isOutside(curve, view)) {
+      if(dropHidden) {
+        return 0;
+      }
+    }
+    else if(subdivCriterion.shouldSplit(curve)) {
+      CubicCurve2D firstHalf=new CubicCurve2D.Double();
+      CubicCurve2D secondHalf=new CubicCurve2D.Double();
+      double tMid=(tMin+tMax)/2.0;
+      BezierUtils.halfSplitCurve(curve, firstHalf, secondHalf);
+      return BezierUtils.clippedHalving(
+          firstHalf, tMin, tMid, view, dropHidden, subdivCriterion, segConsumer
+        )
+        +BezierUtils.clippedHalving(
+          secondHalf, tMid, tMax, view, dropHidden, subdivCriterion, segConsumer
+        );
+    }
+    if(null!=segConsumer) {
+      segConsumer.processSegment(curve, tMin, tMax);
+    }
+    return 1;
+  }
+  
+  /**
+   * The recursive core of the clipped adaptive halving of a quadratic.
+   * @return the number of emitted segments
+   */
+  static private int clippedHalving(
+    QuadCurve2D curve, double tMin, double tMax,
+    Rectangle2D view, boolean dropHidden,
+    QuadSubdivisionCriterion            subdivCriterion,
+    QuadSegmentConsumer                 segConsumer
+  ) {
+    if(BezierUtils.isOutside(curve, view)) {
+      if(dropHidden) {
+        return 0;
+      }
+    }
+    else if(subdivCriterion.shouldSplit(curve)) {
+      QuadCurve2D firstHalf=new QuadCurve2D.Double();
+      QuadCurve2D secondHalf=new QuadCurve2D.Double();
+      double tMid=(tMin+tMax)/2.0;
+      BezierUtils.halfSplitCurve(curve, firstHalf, secondHalf);
+      return BezierUtils.clippedHalving(
+          firstHalf, tMin, tMid, view, dropHidden, subdivCriterion, segConsumer
+        )
+        +BezierUtils.clippedHalving(
+          secondHalf, tMid, tMax, view, dropHidden, subdivCriterion, segConsumer
+        );
+    }
+    if(null!=segConsumer) {
+      segConsumer.processSegment(curve, tMin, tMax);
+    }
+    return 1;
+  }
+  
+  /**
+   * A variant of the 
+   * {@linkplain #adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) 
+   * adaptive halving} that only refines the parts of the curve that may 
+   * be visible in a view rectangle: before consulting the criterion, 
+   * each piece is tested against the view, by the bounding box of its 
+   * control points (which contains the convex hull of the piece). A piece
+   * found outside the view is not split any further; it is either emitted
+   * as it is (its chord, as the piece itself, does not touch the view, so
+   * the result still makes a "daisy-chain" and can be filled without 
+   * changing what is visible) or dropped.
+   * <p>The work is thus roughly proportional to the visible part of the
+   * curve, plus one segment for each stretch of it outside the view.
+   * @param curve the curve to be split
+   * @param subdivCriterion the subdivision criterion for the visible pieces
+   *   (<code>null</code> for the default)
+   * @param segConsumer the consumer of the resulted segments
+   * @param view the view rectangle, in the same coordinates as the curve
+   * @param dropHidden if <code>true</code>, the pieces outside the view 
+   *   are not emitted (the segments no longer make a daisy-chain, the
+   *   gaps being visible in their parameter ranges)
+   * @return the number of emitted segments
+   */
+  static public int clippedAdaptiveHalving(
+    CubicCurve2D                        curve,
+    CubicSubdivisionCriterion           subdivCriterion,
+    CubicSegmentConsumer                segConsumer,
+    Rectangle2D                         view,
+    boolean                             dropHidden
+  ) {
+    if(null==curve || null==view) {
+      throw new NullPointerException();
+    }
+    if(null==subdivCriterion) {
+      subdivCriterion=BezierUtils.defaultCubicSubdivCriterion;
+    }
+    return BezierUtils.clippedHalving(
+      curve, 0.0, 1.0, view, dropHidden, subdivCriterion, segConsumer
+    );
+  }
+  
+  /**
+   * A variant of the adaptive halving of a quadratic that only refines
+   * the parts of the curve that may be visible in a view rectangle.
+   * @see #clippedAdaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer, Rectangle2D, boolean)
+   */
+  static public int clippedAdaptiveHalving(
+    QuadCurve2D                         curve,
+    QuadSubdivisionCriterion            subdivCriterion,
+    QuadSegmentConsumer                 segConsumer,
+    Rectangle2D                         view,
+    boolean                             dropHidden
+  ) {
+    if(null==curve || null==view) {
+      throw new NullPointerException();
+    }
+    if(null==subdivCriterion) {
+      subdivCriterion=BezierUtils.defaultQuadSubdivCriterion;
+    }
+    return BezierUtils.clippedHalving(
+      curve, 0.0, 1.0, view, dropHidden, subdivCriterion, segConsumer
+    );
   }
   
   /**
@@ -1005,8 +1940,8 @@ public class BezierUtils {
      * <a href="http://www.caffeineowl.com/graphics/2d/vectorial/cubic2quad01.html#pseudoQuadDist">distance</a>
      * between the control points of 
      * <tt>0-</tt> and <tt>1-</tt> approximations of the given cubic 
-     * multiplied by <tt>1/432=1/(sqrt(3)/36)<sup>2</sup></tt>
-     * is less or equal the {@linkplain #sqTol square} of the requested 
+     * multiplied by <tt>1/432=(sqrt(3)/36)<sup>2</sup></tt>
+     * exceeds the {@linkplain #sqTol square} of the requested 
      * precision.
      */
     @Override
@@ -1016,7 +1951,7 @@ public class BezierUtils {
       double dy=c.getCtrlY2()-c.getCtrlY1();
       dy=c.getY2()-c.getY1()-dy-dy-dy;
       double sqDist=dx*dx+dy*dy;
-      return (sqDist*BezierUtils.v3div_sq36) <= this.sqTol;
+      return (sqDist*BezierUtils.v3div_sq36) > this.sqTol;
     }
   }
   
@@ -1073,70 +2008,147 @@ public class BezierUtils {
   
   /**
    * The very core of the <tt>adaptive cubic B&eacute;zier degree reduction</a>.
-   * @param cubic the cubic to be approximated
+   * Works on the cubic's coordinates and feeds the result into a primitive
+   * {@link QuadSegmentSink}, therefore nothing is allocated on the way: the
+   * "split at <code>t</code> and <code>1-t</code>" step is computed inline
+   * (the same way {@link #splitCurve(CubicCurve2D, double[], CubicCurve2D[])} does it),
+   * with the last of the three pieces kept in locals while the middle one
+   * is processed recursively.
+   * @param x0 x coordinate of the cubic's start
+   * @param y0 y coordinate of the cubic's start
+   * @param cx0 x coordinate of the first control point
+   * @param cy0 y coordinate of the first control point
+   * @param cx1 x coordinate of the second control point
+   * @param cy1 y coordinate of the second control point
+   * @param x1 x coordinate of the cubic's end
+   * @param y1 y coordinate of the cubic's end
    * @param precision the desired precision
    * @param startT the value of the <tt>t</tt> curve parameter corresponding to
    *  the start of the cubic curve (may not be <t>0.0</tt> - the method may recursive)
    * @param endT the value of the <tt>t</tt> curve parameter corresponding to
    *  the end of the cubic curve (may not be <tt>1.0 </tt>- the method may recursive)
-   * @param resultHere the consumer to be fed with the results of the adaprive division.
+   * @param resultHere the sink to be fed with the results of the adaprive division.
    */
   static private void doAdaptiveDegreeReduction(
-    CubicCurve2D cubic, double precision,
+    double x0, double y0, double cx0, double cy0, 
+    double cx1, double cy1, double x1, double y1,
+    double precision,
     double startT, double endT,
-    QuadSegmentConsumer resultHere
+    QuadSegmentSink resultHere
   ) {
-    QuadCurve2D.Double quad=null;
-    double a0x=cubic.getX1(), a0y=cubic.getY1();
-    double a1x=cubic.getX2(), a1y=cubic.getY2();
-    double p0x=(3*cubic.getCtrlX1()-a0x)/2.0;
-    double p0y=(3*cubic.getCtrlY1()-a0y)/2.0;
-    double p1x=(3*cubic.getCtrlX2()-a1x)/2.0;
-    double p1y=(3*cubic.getCtrlY2()-a1y)/2.0;
+    double p0x=(3*cx0-x0)/2.0;
+    double p0y=(3*cy0-y0)/2.0;
+    double p1x=(3*cx1-x1)/2.0;
+    double p1y=(3*cy1-y1)/2.0;
     
-    double defect=BezierUtils.v18div_sqrt3*Math.hypot(p1x-p0x, p1y-p0y);
-    if(defect>=1.0) { // a single segment
-      quad=new QuadCurve2D.Double();
-      quad.setCurve(a0x, a0y, (p0x+p1x)/2, (p0y+p1y)/2, a1x, a1y);
-      resultHere.processSegment(quad, startT, endT);
+    // the mid-point approx error is (sqrt(3)/18)*|p1-p0| and it scales with
+    // the cube of the parameter range; the defect is the cube of the 
+    // range fraction that would still be within precision
+    double defect=BezierUtils.v18div_sqrt3*precision/Math.hypot(p1x-p0x, p1y-p0y);
+    if(defect>=1.0) { // a single segment (infinite defect for an elevated quad)
+      resultHere.processSegment(
+        x0, y0, (p0x+p1x)/2, (p0y+p1y)/2, x1, y1, startT, endT
+      );
     }
     else if(defect>=0.125) { // 0.125=(0.5)^3
-      CubicCurve2D.Double firstHalf=new CubicCurve2D.Double();
-      CubicCurve2D.Double secondHalf=new CubicCurve2D.Double();
       double midT=(startT+endT)/2.0;
-      // split the curve in 2 halves
-      BezierUtils.halfSplitCurve(cubic, firstHalf, secondHalf);
-
-      quad=new QuadCurve2D.Double();
-      BezierUtils.applyMidPointApprox(firstHalf, quad);
-      resultHere.processSegment(quad, startT, midT);
+      // split the curve in 2 halves, see halfSplitCurve
+      double q0x=(x0+cx0)/2.0, q0y=(y0+cy0)/2.0;
+      double q1x=(cx0+cx1)/2.0, q1y=(cy0+cy1)/2.0;
+      double q2x=(cx1+x1)/2.0, q2y=(cy1+y1)/2.0;
+      double q01x=(q0x+q1x)/2.0, q01y=(q0y+q1y)/2.0;
+      double q12x=(q1x+q2x)/2.0, q12y=(q1y+q2y)/2.0;
+      double dpx=(q01x+q12x)/2.0, dpy=(q01y+q12y)/2.0;
 
-      quad=new QuadCurve2D.Double();
-      BezierUtils.applyMidPointApprox(secondHalf, quad);
-      resultHere.processSegment(quad, midT, endT);
+      BezierUtils.emitMidPointApprox(
+        x0, y0, q0x, q0y, q01x, q01y, dpx, dpy, startT, midT, resultHere
+      );
+      BezierUtils.emitMidPointApprox(
+        dpx, dpy, q12x, q12y, q2x, q2y, x1, y1, midT, endT, resultHere
+      );
     }
     else { // div t is less than 0.5, go on 1 step adaptive
       double t=Math.cbrt(defect);
-      double tes[]={t, 1.0-t};
-      CubicCurve2D segs[]={null, null, null};
-      BezierUtils.splitCurve(cubic, tes, segs);
-      t=endT-startT; // t now contains deltaT
-      tes[0]=startT+tes[0]*t; // because t now contains deltaT
-      tes[1]=startT+tes[1]*t;// because t now contains deltaT
-      quad=new QuadCurve2D.Double();
-      BezierUtils.applyMidPointApprox(segs[0], quad);
-      resultHere.processSegment(quad, startT, tes[0]);
-      segs[0]=null; // let the GC reclaim the memory, if needed
-      quad=null;
+      // the middle piece splitting param, relative to the remainder
+      double tr=((1.0-t)-t)/(1-t);
+      double deltaT=endT-startT;
+      double tes0=startT+t*deltaT;
+      double tes1=startT+(1.0-t)*deltaT;
+      
+      // first split, at t: the head is emitted, the tail is the remainder
+      double q0x=x0+(t*(cx0-x0)), q0y=y0+(t*(cy0-y0));
+      double q1x=cx0+(t*(cx1-cx0)), q1y=cy0+(t*(cy1-cy0));
+      double q2x=cx1+(t*(x1-cx1)), q2y=cy1+(t*(y1-cy1));
+      double q01x=q0x+(t*(q1x-q0x)), q01y=q0y+(t*(q1y-q0y));
+      double q12x=q1x+(t*(q2x-q1x)), q12y=q1y+(t*(q2y-q1y));
+      double dpx=q01x+(t*(q12x-q01x)), dpy=q01y+(t*(q12y-q01y));
+      BezierUtils.emitMidPointApprox(
+        x0, y0, q0x, q0y, q01x, q01y, dpx, dpy, startT, tes0, resultHere
+      );
       
-      BezierUtils.doAdaptiveDegreeReduction(segs[1], precision, tes[0], tes[1], resultHere);
-      segs[1]=null; // let the GC reclaim the memory, if needed
+      // second split of the remainder (dp, q12, q2, x1) at tr
+      double rx0=dpx, ry0=dpy;
+      double rcx0=q12x, rcy0=q12y, rcx1=q2x, rcy1=q2y;
+      q0x=rx0+(tr*(rcx0-rx0)); q0y=ry0+(tr*(rcy0-ry0));
+      q1x=rcx0+(tr*(rcx1-rcx0)); q1y=rcy0+(tr*(rcy1-rcy0));
+      q2x=rcx1+(tr*(x1-rcx1)); q2y=rcy1+(tr*(y1-rcy1));
+      q01x=q0x+(tr*(q1x-q0x)); q01y=q0y+(tr*(q1y-q0y));
+      q12x=q1x+(tr*(q2x-q1x)); q12y=q1y+(tr*(q2y-q1y));
+      dpx=q01x+(tr*(q12x-q01x)); dpy=q01y+(tr*(q12y-q01y));
       
-      quad=new QuadCurve2D.Double();
-      BezierUtils.applyMidPointApprox(segs[2], quad);
-      resultHere.processSegment(quad, tes[1], endT);
-      segs[0]=null; // let the GC reclaim the memory, if needed
-      quad=null;
+      BezierUtils.doAdaptiveDegreeReduction(
+        rx0, ry0, q0x, q0y, q01x, q01y, dpx, dpy, 
+        precision, tes0, tes1, resultHere
+      );
+      BezierUtils.emitMidPointApprox(
+        dpx, dpy, q12x, q12y, q2x, q2y, x1, y1, tes1, endT, resultHere
+      );
+    }
+  }
+  
+  /**
+   * Feeds the <a href="http://www.caffeineowl.com/graphics/2d/vectorial/cubic2quad01.html#mid-point-approx">mid-point
+   * approximation</a> of the given cubic into a {@link QuadSegmentSink}.
+   * Same arithmetic as {@link #applyMidPointApprox(CubicCurve2D, QuadCurve2D)}.
+   */
+  static final private void emitMidPointApprox(
+    double x0, double y0, double cx0, double cy0, 
+    double cx1, double cy1, double x1, double y1,
+    double startT, double endT,
+    QuadSegmentSink resultHere
+  ) {
+    double p0x=(3*cx0-x0)/2.0;
+    double p0y=(3*cy0-y0)/2.0;
+    double p1x=(3*cx1-x1)/2.0;
+    double p1y=(3*cy1-y1)/2.0;
+    resultHere.processSegment(
+      x0, y0, (p0x+p1x)/2, (p0y+p1y)/2, x1, y1, startT, endT
+    );
+  }
+  
+  /**
+   * Adapts a {@link QuadSegmentConsumer} to the {@link QuadSegmentSink}
+   * interface (allocating a <code>QuadCurve2D</code> for each received segment,
+   * as the consumer may keep it).
+   */
+  static final class QuadConsumerSink
+  implements QuadSegmentSink {
+    /**
+     * The wrapped consumer.
+     */
+    QuadSegmentConsumer actualConsumer;
+    
+    QuadConsumerSink(QuadSegmentConsumer actualConsumer) {
+      this.actualConsumer=actualConsumer;
+    }
+    
+    @Override
+    public void processSegment(
+      double x0, double y0, double cx, double cy, double x1, double y1,
+      double startT, double endT
+    ) {
+      QuadCurve2D.Double quad=new QuadCurve2D.Double(x0, y0, cx, cy, x1, y1);
+      this.actualConsumer.processSegment(quad, startT, endT);
     }
   }
   
@@ -1152,10 +2164,74 @@ public class BezierUtils {
     *   and the <tt>x, y<</tt> coordinates are pixels, use <tt>0.5</tt> as a minimum
     *   for the precision, even if for most of the cases a value of 0.75 or even 1.0 will
     *   be sufficient).
+    * @see #adaptiveDegreeReduction(CubicCurve2D, double, QuadSegmentSink)
     */
   static public void adaptiveDegreeReduction(
     CubicCurve2D cubic, double precision, 
     QuadSegmentConsumer resultHere
+  ) {
+    if(null!=cubic && null!=resultHere) {
+      BezierUtils.adaptiveDegreeReduction(
+        cubic, precision, new QuadConsumerSink(resultHere)
+      );
+    }
+  }
+  
+  /**
+   * The allocation-free flavour of the 
+   * {@link #adaptiveDegreeReduction(CubicCurve2D, double, QuadSegmentConsumer) adaptive
+   * degree reduction}: the very same quads are produced, but they are
+   * fed as plain coordinates into a {@link QuadSegmentSink} (e.g. a
+   * reused {@link QuadSegmentBuffer}).
+   * @param cubic the cubic to be approximated by quad segments
+   * @param precision the desired precision of approximation.
+   * @param resultHere the sink receiving the approximating quads.
+   */
+  static public void adaptiveDegreeReduction(
+    CubicCurve2D cubic, double precision, 
+    QuadSegmentSink resultHere
+  ) {
+    if(null!=cubic && null!=resultHere) {
+      BezierUtils.adaptiveDegreeReduction(
+        cubic.getX1(), cubic.getY1(), cubic.getCtrlX1(), cubic.getCtrlY1(),
+        cubic.getCtrlX2(), cubic.getCtrlY2(), cubic.getX2(), cubic.getY2(),
+        precision, resultHere
+      );
+    }
+  }
+  
+  /**
+   * As {@link #adaptiveDegreeReduction(CubicCurve2D, double, QuadSegmentSink)}, 
+   * with the cubic given by its coordinates in an array.
+   * @param coords the array holding the cubic's coordinates, in the
+   *   <code>x0, y0, cx0, cy0, cx1, cy1, x1, y1</code> order (the one
+   *   used by <code>CubicCurve2D.setCurve(double[], int)</code>).
+   * @param offset where the cubic's coordinates start inside <code>coords</code>
+   * @param precision the desired precision of approximation.
+   * @param resultHere the sink receiving the approximating quads.
+   */
+  static public void adaptiveDegreeReduction(
+    double[] coords, int offset, double precision, 
+    QuadSegmentSink resultHere
+  ) {
+    if(null!=coords && null!=resultHere) {
+      BezierUtils.adaptiveDegreeReduction(
+        coords[offset], coords[offset+1], coords[offset+2], coords[offset+3],
+        coords[offset+4], coords[offset+5], coords[offset+6], coords[offset+7],
+        precision, resultHere
+      );
+    }
+  }
+  
+  /**
+   * The entry point of the adaptive degree reduction: sanitizes the 
+   * precision and records the 
+   * {@linkplain FlatteningEvents#beginFlattening() flight recorder event}.
+   */
+  static private void adaptiveDegreeReduction(
+    double x0, double y0, double cx0, double cy0, 
+    double cx1, double cy1, double x1, double y1,
+    double precision, QuadSegmentSink resultHere
   ) {
     if(precision<0) {
       precision=-precision;
@@ -1163,11 +2239,129 @@ public class BezierUtils {
     if(precision==0.0) {
       precision=1.0e-5;
     }
-    if(null!=cubic && null!=resultHere) {
-      BezierUtils.doAdaptiveDegreeReduction(cubic, precision, 0.0, 1.0, resultHere);
+    Object event=FlatteningEvents.beginFlattening();
+    FlatteningEvents.SegmentCounter counter=null;
+    if(null!=event) {
+      counter=new FlatteningEvents.SegmentCounter(resultHere);
+      resultHere=counter;
+    }
+    BezierUtils.doAdaptiveDegreeReduction(
+      x0, y0, cx0, cy0, cx1, cy1, x1, y1, precision, 0.0, 1.0, resultHere
+    );
+    if(null!=event) {
+      FlatteningEvents.endFlattening(
+        event, "adaptiveDegreeReduction", "cubic", null, precision, counter.getCount()
+      );
     }
   }
   
+  /**
+   * Computes the number of quads the 
+   * {@linkplain #minimalDegreeReduction(double[], int, double, QuadSegmentSink) minimal
+   * degree reduction} would produce for a cubic.
+   * <p>The error of the mid-point approximation of a cubic is 
+   * <code>(sqrt(3)/18)*|p1-p0|</code> (with <code>p0=(3*c0-a0)/2</code>,
+   * <code>p1=(3*c1-a1)/2</code>) and, as the third derivative of a cubic is 
+   * constant, the error on a piece spanning a <code>dt</code> parameter 
+   * range is exactly <code>dt<sup>3</sup></code> of it. 
+   * The worst piece of any split in <code>n</code> is therefore no better 
+   * than the one of the uniform split, hence the uniform split in 
+   * <code>n=ceil(cbrt(error/precision))</code> pieces gives the minimal 
+   * number of quads, uniform or not, meeting the precision.
+   * @param coords the cubic's coordinates, in the 
+   *   <code>x0, y0, cx0, cy0, cx1, cy1, x1, y1</code> order.
+   * @param offset where the cubic's coordinates start inside <code>coords</code>
+   * @param precision the desired precision of approximation.
+   * @return the minimal number of mid-point approximation quads 
+   *   approximating the cubic within the precision (at least <code>1</code>).
+   */
+  static public int minimalQuadCount(double[] coords, int offset, double precision) {
+    if(precision<0) {
+      precision=-precision;
+    }
+    if(precision==0.0) {
+      precision=1.0e-5;
+    }
+    double dx=(3*coords[offset+4]-coords[offset+6])-(3*coords[offset+2]-coords[offset]);
+    double dy=(3*coords[offset+5]-coords[offset+7])-(3*coords[offset+3]-coords[offset+1]);
+    // the (p1-p0) distance is the half of the (dx, dy) one
+    double err=Math.hypot(dx, dy)/(2*BezierUtils.v18div_sqrt3);
+    // the small slack avoids an extra piece when err/precision is 
+    // (up to the rounding) an exact cube
+    double n=Math.ceil(Math.cbrt(err/precision)*(1-1.0e-12));
+    return n<1 ? 1 : (n>(1<<20) ? (1<<20) : (int)n);
+  }
+  
+  /**
+   * Approximates a cubic by the minimal number of mid-point approximation 
+   * quads meeting the precision (see {@link #minimalQuadCount(double[], int, double)}
+   * for why a uniform split is the minimal one). The quads are emitted in
+   * order, the pieces are computed directly from the original cubic 
+   * (by blossoming, no error accumulation from successive splits) and
+   * nothing is allocated.
+   * <p>Unlike the {@linkplain #adaptiveDegreeReduction(double[], int, double, QuadSegmentSink)
+   * adaptive degree reduction}, which produces pieces just within the
+   * precision near the ends and whatever is left in the middle, this
+   * spreads the error evenly.
+   * @param coords the cubic's coordinates, in the 
+   *   <code>x0, y0, cx0, cy0, cx1, cy1, x1, y1</code> order.
+   * @param offset where the cubic's coordinates start inside <code>coords</code>
+   * @param precision the desired precision of approximation.
+   * @param resultHere the sink receiving the approximating quads.
+   * @return the number of emitted quads.
+   */
+  static public int minimalDegreeReduction(
+    double[] coords, int offset, double precision, 
+    QuadSegmentSink resultHere
+  ) {
+    Object event=FlatteningEvents.beginFlattening();
+    int n=BezierUtils.minimalQuadCount(coords, offset, precision);
+    double x0=coords[offset], y0=coords[offset+1];
+    double cx0=coords[offset+2], cy0=coords[offset+3];
+    double cx1=coords[offset+4], cy1=coords[offset+5];
+    double x1=coords[offset+6], y1=coords[offset+7];
+    double t0=0.0, ax=x0, ay=y0;
+    for(int i=1; i<=n; i++) {
+      double t1=(i==n) ? 1.0 : ((double)i)/n;
+      double bx, by;
+      if(i==n) {
+        bx=x1; by=y1;
+      }
+      else {
+        bx=BezierUtils.blossom(x0, cx0, cx1, x1, t1, t1, t1);
+        by=BezierUtils.blossom(y0, cy0, cy1, y1, t1, t1, t1);
+      }
+      double sx0=BezierUtils.blossom(x0, cx0, cx1, x1, t0, t0, t1);
+      double sy0=BezierUtils.blossom(y0, cy0, cy1, y1, t0, t0, t1);
+      double sx1=BezierUtils.blossom(x0, cx0, cx1, x1, t0, t1, t1);
+      double sy1=BezierUtils.blossom(y0, cy0, cy1, y1, t0, t1, t1);
+      BezierUtils.emitMidPointApprox(ax, ay, sx0, sy0, sx1, sy1, bx, by, t0, t1, resultHere);
+      t0=t1;
+      ax=bx; ay=by;
+    }
+    if(null!=event) {
+      FlatteningEvents.endFlattening(
+        event, "minimalDegreeReduction", "cubic", null, Math.abs(precision), n
+      );
+    }
+    return n;
+  }
+  
+  /**
+   * As {@link #minimalDegreeReduction(double[], int, double, QuadSegmentSink)},
+   * for a <code>CubicCurve2D</code> (whose coordinates are copied into
+   * a temporary array).
+   */
+  static public int minimalDegreeReduction(
+    CubicCurve2D cubic, double precision, QuadSegmentSink resultHere
+  ) {
+    double[] coords={
+      cubic.getX1(), cubic.getY1(), cubic.getCtrlX1(), cubic.getCtrlY1(),
+      cubic.getCtrlX2(), cubic.getCtrlY2(), cubic.getX2(), cubic.getY2()
+    };
+    return BezierUtils.minimalDegreeReduction(coords, 0, precision, resultHere);
+  }
+  
   /**
    * A {@link QuadSegmentConsumer} that stores the 
    * {@linkplain #processSegment(QuadCurve2D, double, double) received}
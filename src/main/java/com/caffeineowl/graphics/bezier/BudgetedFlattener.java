@@ -0,0 +1,312 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import java.awt.geom.CubicCurve2D;
+import java.util.ArrayList;
+
+/**
+ * Flattens a set of cubic B&eacute;ziers within a time and/or segment budget,
+ * for interactive rendering where a frame cannot wait for the full
+ * {@linkplain BezierUtils#adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) 
+ * adaptive halving} of everything on screen.
+ * <p>The refinement goes breadth-first: each pass halves (once) every 
+ * piece of every curve that the criterion still finds not flat enough,
+ * so a coarse approximation of all the curves is available at any time
+ * and the next level of detail is spread evenly over them. A
+ * {@linkplain #refine(long, int) refinement} stops when the deadline or
+ * the segment budget is hit; the next call resumes from where the previous
+ * one stopped (pieces found flat are never tested again), so the 
+ * refinement can continue over the next frames.
+ * <p>Between refinements, each curve is a "daisy-chain" of pieces covering
+ * it entirely, which can be {@linkplain #emit(int, CubicSegmentConsumer) emitted}
+ * in the same way the adaptive halving does; the curves still in need
+ * of refinement are reported by {@link #getUnderRefined()}.
+ * <p>Instances are not thread safe.
+ */
+public class BudgetedFlattener {
+  
+  /**
+   * A piece of a curve, with its parameter range, whether it was
+   * already found flat enough (or cannot be split any further) and the
+   * pass that created it (a piece is split at most once per pass).
+   */
+  @SuppressWarnings("serial")
+  static private class Piece extends CubicCurve2D.Double {
+    double  tMin;
+    double  tMax;
+    boolean done;
+    int     pass;
+    
+    Piece(CubicCurve2D curve, double tMin, double tMax, int pass) {
+      super(
+        curve.getX1(), curve.getY1(), curve.getCtrlX1(), curve.getCtrlY1(),
+        curve.getCtrlX2(), curve.getCtrlY2(), curve.getX2(), curve.getY2()
+      );
+      this.tMin=tMin;
+      this.tMax=tMax;
+      this.pass=pass;
+    }
+  }
+  
+  /** The smallest parameter range a piece may be split into */
+  static private final double minParamRange=Math.scalb(1.0, -BezierUtils.maxHalvingDepth);
+  
+  protected CubicSubdivisionCriterion subdivCriterion;
+  
+  /** Per curve, the daisy-chain of pieces */
+  protected ArrayList<ArrayList<Piece>> chains=new ArrayList<ArrayList<Piece>>();
+  
+  /** Per curve, how many of its pieces are not yet done */
+  protected int[] pendingCounts=new int[16];
+  
+  /** The total number of pieces, over all the curves */
+  protected int segmentCount=0;
+  
+  /** The curve the next refinement pass resumes from */
+  protected int cursor=0;
+  
+  /** 
+   * The number of refinement passes completed so far (all the curves
+   * were refined by a level).
+   */
+  protected int passCount=0;
+  
+  /**
+   * @param subdivCriterion the criterion telling if a piece needs further 
+   *   splitting (<code>null</code> for the default one)
+   */
+  public BudgetedFlattener(CubicSubdivisionCriterion subdivCriterion) {
+    this.subdivCriterion=
+      null==subdivCriterion ? BezierUtils.defaultCubicSubdivCriterion : subdivCriterion;
+  }
+  
+  /**
+   * Adds a curve to be flattened, initially as a single piece.
+   * @return the index of the curve
+   */
+  public int addCurve(CubicCurve2D curve) {
+    int toRet=this.chains.size();
+    this.chains.add(new ArrayList<Piece>());
+    if(toRet>=this.pendingCounts.length) {
+      int[] grown=new int[2*this.pendingCounts.length];
+      System.arraycopy(this.pendingCounts, 0, grown, 0, toRet);
+      this.pendingCounts=grown;
+    }
+    this.setCurve(toRet, curve);
+    return toRet;
+  }
+  
+  /**
+   * Replaces a curve (e.g. after an edit), discarding its refinement: the
+   * curve restarts as a single piece.
+   */
+  public void setCurve(int index, CubicCurve2D curve) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    ArrayList<Piece> chain=this.chains.get(index);
+    this.segmentCount-=chain.size();
+    chain.clear();
+    // created "before" the current pass, so the current pass splits it
+    Piece piece=new Piece(curve, 0.0, 1.0, this.passCount-1);
+    // degenerate curves are final from the start
+    piece.done=false==BezierUtils.isFinite(curve) || BezierUtils.isStraight(curve);
+    chain.add(piece);
+    this.pendingCounts[index]=piece.done ? 0 : 1;
+    this.segmentCount++;
+  }
+  
+  /** Removes all the curves */
+  public void clear() {
+    this.chains.clear();
+    this.segmentCount=0;
+    this.cursor=0;
+    this.passCount=0;
+  }
+  
+  public int getCurveCount() {
+    return this.chains.size();
+  }
+  
+  /** The current number of pieces, over all the curves */
+  public int getSegmentCount() {
+    return this.segmentCount;
+  }
+  
+  /** The current number of pieces of a curve */
+  public int getSegmentCount(int curveIndex) {
+    return this.chains.get(curveIndex).size();
+  }
+  
+  /** The number of completed breadth-first passes over all the curves */
+  public int getPassCount() {
+    return this.passCount;
+  }
+  
+  /** Tells if a curve is refined to the criterion's tolerance */
+  public boolean isRefined(int curveIndex) {
+    if(curveIndex<0 || curveIndex>=this.chains.size()) {
+      throw new IndexOutOfBoundsException(String.valueOf(curveIndex));
+    }
+    return 0==this.pendingCounts[curveIndex];
+  }
+  
+  /** Tells if all the curves are refined to the criterion's tolerance */
+  public boolean isRefined() {
+    int n=this.chains.size();
+    for(int i=0; i<n; i++) {
+      if(0!=this.pendingCounts[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * The indices of the curves that still have pieces not flat enough,
+   * in increasing order.
+   */
+  public int[] getUnderRefined() {
+    int n=this.chains.size(), count=0;
+    for(int i=0; i<n; i++) {
+      if(0!=this.pendingCounts[i]) {
+        count++;
+      }
+    }
+    int[] toRet=new int[count];
+    count=0;
+    for(int i=0; i<n; i++) {
+      if(0!=this.pendingCounts[i]) {
+        toRet[count++]=i;
+      }
+    }
+    return toRet;
+  }
+  
+  /**
+   * Refines the curves until they are all flat enough or the deadline
+   * is reached, without limiting the number of segments.
+   * @see #refine(long, int)
+   */
+  public boolean refine(long deadlineNanos) {
+    return this.refine(deadlineNanos, Integer.MAX_VALUE);
+  }
+  
+  /**
+   * Refines the curves breadth-first until they are all flat enough, or
+   * the deadline is reached, or the total number of pieces reaches 
+   * <code>maxSegments</code>. The deadline is checked after each curve,
+   * so it may be overrun by the time needed to refine one curve by a level.
+   * @param deadlineNanos the deadline, as a {@link System#nanoTime()} value
+   * @param maxSegments the maximum total number of pieces, over all the curves
+   * @return <code>true</code> if all the curves are refined to the
+   *   criterion's tolerance, <code>false</code> if the refinement was
+   *   stopped by the budget
+   */
+  public boolean refine(long deadlineNanos, int maxSegments) {
+    int n=this.chains.size();
+    // a pass that refines nothing means all done
+    int idleCurves=0;
+    while(idleCurves<n) {
+      if(this.segmentCount>=maxSegments || System.nanoTime()-deadlineNanos>=0) {
+        return this.isRefined();
+      }
+      if(0==this.pendingCounts[this.cursor]) {
+        idleCurves++;
+      }
+      else {
+        idleCurves=0;
+        if(false==this.refineCurve(this.cursor, maxSegments)) {
+          return false;
+        }
+      }
+      this.cursor++;
+      if(this.cursor==n) {
+        this.cursor=0;
+        this.passCount++;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Refines a curve by a level: each pending piece not created by the 
+   * current pass is either found flat enough or halved. When resumed 
+   * after hitting the budget, only the pieces the interrupted pass
+   * did not reach are refined, so the refinement stays breadth-first.
+   * @return <code>false</code> if the segment budget was hit while refining
+   */
+  private boolean refineCurve(int curveIndex, int maxSegments) {
+    ArrayList<Piece> chain=this.chains.get(curveIndex);
+    ArrayList<Piece> refined=new ArrayList<Piece>(2*chain.size());
+    int pending=0;
+    boolean toRet=true;
+    for(Piece piece : chain) {
+      if(piece.done || false==toRet || piece.pass>=this.passCount) {
+        refined.add(piece);
+        pending+=piece.done ? 0 : 1;
+      }
+      else if(
+        false==this.subdivCriterion.shouldSplit(piece)
+        || piece.tMax-piece.tMin<=BudgetedFlattener.minParamRange
+      ) {
+        piece.done=true;
+        refined.add(piece);
+      }
+      else if(this.segmentCount>=maxSegments) {
+        toRet=false;
+        refined.add(piece);
+        pending++;
+      }
+      else {
+        double tMid=(piece.tMin+piece.tMax)/2.0;
+        Piece first=new Piece(piece, piece.tMin, tMid, this.passCount);
+        Piece second=new Piece(piece, tMid, piece.tMax, this.passCount);
+        BezierUtils.halfSplitCurve(piece, first, second);
+        refined.add(first);
+        refined.add(second);
+        pending+=2;
+        this.segmentCount++;
+      }
+    }
+    this.chains.set(curveIndex, refined);
+    this.pendingCounts[curveIndex]=pending;
+    return toRet;
+  }
+  
+  /**
+   * Feeds the current pieces of a curve into a consumer, in order.
+   * The consumer may keep the segments, but must not modify them.
+   */
+  public void emit(int curveIndex, CubicSegmentConsumer segConsumer) {
+    for(Piece piece : this.chains.get(curveIndex)) {
+      segConsumer.processSegment(piece, piece.tMin, piece.tMax);
+    }
+  }
+}
@@ -0,0 +1,361 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+import com.caffeineowl.graphics.PolyRoots;
+import com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullSubdivCriterion;
+
+/**
+ * A conic section arc, as a rational quadratic B&eacute;zier in standard
+ * form: the end points have unit weights, the control point has the 
+ * weight <code>w&gt;0</code>:
+ * <pre>
+ *        (1-t)<sup>2</sup>P<sub>0</sub> + 2w t(1-t)P<sub>1</sub> + t<sup>2</sup>P<sub>2</sub>
+ * C(t) = ----------------------------------
+ *          (1-t)<sup>2</sup> + 2w t(1-t) + t<sup>2</sup>
+ * </pre>
+ * The arc is elliptic for <code>w&lt;1</code>, parabolic (the plain 
+ * quadratic) for <code>w=1</code> and hyperbolic for <code>w&gt;1</code>;
+ * a circular arc of sweep <code>2&alpha;</code> (<code>&alpha;&lt;&pi;/2</code>) 
+ * has <code>w=cos(&alpha;)</code> and the control point where the
+ * tangents at the ends meet (see {@link #circularArc(double, double, double, double, double)}).
+ * Affine transformations keep the weight, so elliptic arcs are
+ * transformed circular ones.
+ * <p>The distance between the arc and its chord is the largest at 
+ * <code>t=1/2</code>, where it is <code>w/(1+w)</code> times the distance
+ * between the control point and the chord. The flattening uses the
+ * {@linkplain com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullFlatnessAlgo#getSquaredFlatness(ConicCurve) convex hull flatness},
+ * the same bound as for a quad. For circular arcs, the number of chords needed 
+ * for a given tolerance is known exactly 
+ * ({@link #circularArcSegmentCount(double, double, double)}), and 
+ * {@link #flattenCircularArc(double, double, double, double, double, double, ConicSegmentConsumer)}
+ * emits just that many.
+ */
+public class ConicCurve {
+  
+  protected double x0;
+  protected double y0;
+  protected double ctrlx;
+  protected double ctrly;
+  protected double x1;
+  protected double y1;
+  protected double weight;
+  
+  /**
+   * @param weight the weight of the control point, strictly positive
+   */
+  public ConicCurve(
+    double x0, double y0, double ctrlx, double ctrly, double x1, double y1, double weight
+  ) {
+    this.setCurve(x0, y0, ctrlx, ctrly, x1, y1, weight);
+  }
+  
+  /**
+   * @param weight the weight of the control point, strictly positive
+   */
+  public void setCurve(
+    double x0, double y0, double ctrlx, double ctrly, double x1, double y1, double weight
+  ) {
+    if(!(weight>0)) {
+      throw new IllegalArgumentException("Invalid weight: "+weight);
+    }
+    this.x0=x0;
+    this.y0=y0;
+    this.ctrlx=ctrlx;
+    this.ctrly=ctrly;
+    this.x1=x1;
+    this.y1=y1;
+    this.weight=weight;
+  }
+  
+  public double getX1() {
+    return this.x0;
+  }
+  
+  public double getY1() {
+    return this.y0;
+  }
+  
+  public double getCtrlX() {
+    return this.ctrlx;
+  }
+  
+  public double getCtrlY() {
+    return this.ctrly;
+  }
+  
+  public double getX2() {
+    return this.x1;
+  }
+  
+  public double getY2() {
+    return this.y1;
+  }
+  
+  public double getWeight() {
+    return this.weight;
+  }
+  
+  /**
+   * Computes a point on the arc.
+   * @param pointHere where to store the point; if <code>null</code>, a 
+   *   new <code>Point2D.Double</code> is allocated
+   * @return the point
+   */
+  public Point2D pointAt(double t, Point2D pointHere) {
+    double mt=1.0-t;
+    double b0=mt*mt, b1=2*this.weight*mt*t, b2=t*t;
+    double d=b0+b1+b2;
+    if(null==pointHere) {
+      pointHere=new Point2D.Double();
+    }
+    pointHere.setLocation(
+      (b0*this.x0+b1*this.ctrlx+b2*this.x1)/d,
+      (b0*this.y0+b1*this.ctrly+b2*this.y1)/d
+    );
+    return pointHere;
+  }
+  
+  /**
+   * Extracts the part of the arc between two parameter values, by
+   * de Casteljau subdivision on the homogeneous coordinates, brought back
+   * to the standard form.
+   * @param segmentHere where to store the part
+   */
+  public void extractSegment(double t0, double t1, ConicCurve segmentHere) {
+    double w=this.weight;
+    double[] xy=new double[6], ww=new double[6];
+    BezierUtils.extractSegment(
+      this.x0, this.y0, w*this.ctrlx, w*this.ctrly, this.x1, this.y1, t0, t1, xy, 0
+    );
+    BezierUtils.extractSegment(1.0, 0.0, w, 0.0, 1.0, 0.0, t0, t1, ww, 0);
+    double w0=ww[0], w1=ww[2], w2=ww[4];
+    segmentHere.setCurve(
+      xy[0]/w0, xy[1]/w0, xy[2]/w1, xy[3]/w1, xy[4]/w2, xy[5]/w2,
+      w1/Math.sqrt(w0*w2)
+    );
+  }
+  
+  /**
+   * Splits the arc at a parameter value.
+   * @param first where to store the part before <code>t</code>
+   * @param second where to store the part after <code>t</code>
+   */
+  public void split(double t, ConicCurve first, ConicCurve second) {
+    this.extractSegment(0.0, t, first);
+    this.extractSegment(t, 1.0, second);
+  }
+  
+  /**
+   * Splits the arc in halves, at <code>t=1/2</code>; both halves
+   * have the weight <code>sqrt((1+w)/2)</code>.
+   */
+  public void halfSplit(ConicCurve first, ConicCurve second) {
+    double w=this.weight, d=1.0+w;
+    // the mid point and the (standard form) control points of the halves
+    double mx=(this.x0+2*w*this.ctrlx+this.x1)/(2*d);
+    double my=(this.y0+2*w*this.ctrly+this.y1)/(2*d);
+    double c0x=(this.x0+w*this.ctrlx)/d, c0y=(this.y0+w*this.ctrly)/d;
+    double c1x=(w*this.ctrlx+this.x1)/d, c1y=(w*this.ctrly+this.y1)/d;
+    double hw=Math.sqrt(d/2.0);
+    first.setCurve(this.x0, this.y0, c0x, c0y, mx, my, hw);
+    second.setCurve(mx, my, c1x, c1y, this.x1, this.y1, hw);
+  }
+  
+  /**
+   * Computes the tight bounding box of the arc: the bounds of the end
+   * points and of the points where the coordinates reach their extremes
+   * (the roots of a quadratic, for a rational quadratic).
+   * @param boundsHere where to store the bounds; if <code>null</code>, a
+   *   new <code>Rectangle2D.Double</code> is allocated
+   * @return the bounds
+   */
+  public Rectangle2D tightBounds(Rectangle2D boundsHere) {
+    double minX=Math.min(this.x0, this.x1), maxX=Math.max(this.x0, this.x1);
+    double minY=Math.min(this.y0, this.y1), maxY=Math.max(this.y0, this.y1);
+    double[] roots=new double[2];
+    Point2D p=new Point2D.Double();
+    for(int axis=0; axis<2; axis++) {
+      double v0=(0==axis) ? this.x0 : this.y0;
+      double vc=(0==axis) ? this.ctrlx : this.ctrly;
+      double v1=(0==axis) ? this.x1 : this.y1;
+      // numerator n2*t^2+n1*t+n0 over the denominator d2*t^2+d1*t+1,
+      // the extremes are the roots of n'd-nd' (a quadratic)
+      double w=this.weight;
+      double n0=v0, n1=2*(w*vc-v0), n2=v0-2*w*vc+v1;
+      double d1=2*(w-1), d2=2-2*w;
+      int n=PolyRoots.solveQuadraticInUnit(n2*d1-n1*d2, 2*(n2-n0*d2), n1-n0*d1, roots, 0);
+      for(int i=0; i<n; i++) {
+        this.pointAt(roots[i], p);
+        double v=(0==axis) ? p.getX() : p.getY();
+        if(0==axis) {
+          minX=Math.min(minX, v);
+          maxX=Math.max(maxX, v);
+        }
+        else {
+          minY=Math.min(minY, v);
+          maxY=Math.max(maxY, v);
+        }
+      }
+    }
+    if(null==boundsHere) {
+      boundsHere=new Rectangle2D.Double();
+    }
+    boundsHere.setFrameFromDiagonal(minX, minY, maxX, maxY);
+    return boundsHere;
+  }
+  
+  /**
+   * Creates the conic of a circular arc.
+   * @param centerX the <code>x</code> of the circle centre
+   * @param centerY the <code>y</code> of the circle centre
+   * @param radius the circle radius
+   * @param start the angle of the arc start, radians
+   * @param extent the (signed) sweep of the arc, radians, less than 
+   *   <code>&pi;</code> in absolute value
+   */
+  static public ConicCurve circularArc(
+    double centerX, double centerY, double radius, double start, double extent
+  ) {
+    if(!(Math.abs(extent)<Math.PI)) {
+      throw new IllegalArgumentException("Extent out of (-PI, PI): "+extent);
+    }
+    double half=extent/2.0, mid=start+half;
+    double w=Math.cos(half);
+    double ctrlDist=radius/w;
+    return new ConicCurve(
+      centerX+radius*Math.cos(start), centerY+radius*Math.sin(start),
+      centerX+ctrlDist*Math.cos(mid), centerY+ctrlDist*Math.sin(mid),
+      centerX+radius*Math.cos(start+extent), centerY+radius*Math.sin(start+extent),
+      w
+    );
+  }
+  
+  /**
+   * The minimal number of chords approximating a circular arc within
+   * a tolerance: a chord subtending the angle <code>&phi;</code> is 
+   * <code>r(1-cos(&phi;/2))</code> away from the arc, so each chord may
+   * subtend at most <code>2acos(1-tol/r)</code>.
+   * @param radius the circle radius
+   * @param sweep the arc sweep, radians (the sign is ignored)
+   * @param tolerance the maximum distance between the chords and the arc
+   * @return the number of chords, at least <code>floor(sweep/&pi;)+1</code>
+   *   (whatever the tolerance, each chord subtends less than <code>&pi;</code>)
+   */
+  static public int circularArcSegmentCount(double radius, double sweep, double tolerance) {
+    radius=Math.abs(radius);
+    sweep=Math.abs(sweep);
+    double toRet=1.0;
+    if(tolerance<radius && sweep>0.0) {
+      double maxAngle=2.0*Math.acos(1.0-Math.max(tolerance, BezierUtils.minPrecision)/radius);
+      toRet=Math.min(Math.ceil(sweep/maxAngle*(1-1e-12)), (double)(1<<24));
+    }
+    return (int)Math.max(toRet, Math.floor(sweep/Math.PI)+1.0);
+  }
+  
+  /**
+   * Flattens a circular arc with the {@linkplain #circularArcSegmentCount(double, double, double) 
+   * minimal number} of chords: the arc is split in pieces of equal sweep,
+   * each emitted as a conic segment, the parameters being the fractions
+   * of the sweep. Each piece starts exactly where the previous one ends.
+   * @param extent the (signed) sweep of the arc, radians, any magnitude
+   * @return the number of emitted segments
+   * @see #circularArc(double, double, double, double, double)
+   */
+  static public int flattenCircularArc(
+    double centerX, double centerY, double radius, double start, double extent,
+    double tolerance, ConicSegmentConsumer segConsumer
+  ) {
+    int toRet=ConicCurve.circularArcSegmentCount(radius, extent, tolerance);
+    double a0=start;
+    ConicCurve prev=null;
+    for(int i=0; i<toRet; i++) {
+      double a1=(i+1==toRet) ? start+extent : start+extent*(i+1)/toRet;
+      ConicCurve segment=ConicCurve.circularArc(centerX, centerY, radius, a0, a1-a0);
+      if(null!=prev) { // share the joint bit for bit
+        segment.setCurve(
+          prev.x1, prev.y1, segment.ctrlx, segment.ctrly, segment.x1, segment.y1, segment.weight
+        );
+      }
+      if(null!=segConsumer) {
+        segConsumer.processSegment(segment, (double)i/toRet, (i+1==toRet) ? 1.0 : (double)(i+1)/toRet);
+      }
+      prev=segment;
+      a0=a1;
+    }
+    return toRet;
+  }
+  
+  static private int halving(
+    ConicCurve curve, double tMin, double tMax, int depthLeft,
+    ConvexHullSubdivCriterion subdivCriterion, ConicSegmentConsumer segConsumer
+  ) {
+    if(depthLeft>0 && subdivCriterion.shouldSplit(curve)) {
+      ConicCurve firstHalf=new ConicCurve(0, 0, 0, 0, 0, 0, 1);
+      ConicCurve secondHalf=new ConicCurve(0, 0, 0, 0, 0, 0, 1);
+      double tMid=(tMin+tMax)/2.0;
+      curve.halfSplit(firstHalf, secondHalf);
+      return ConicCurve.halving(
+          firstHalf, tMin, tMid, depthLeft-1, subdivCriterion, segConsumer
+        )
+        +ConicCurve.halving(
+          secondHalf, tMid, tMax, depthLeft-1, subdivCriterion, segConsumer
+        );
+    }
+    if(null!=segConsumer) {
+      segConsumer.processSegment(curve, tMin, tMax);
+    }
+    return 1;
+  }
+  
+  /**
+   * Flattens a conic arc by adaptive halving, splitting the pieces whose
+   * {@linkplain com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullFlatnessAlgo#getSquaredFlatness(ConicCurve) flatness}
+   * exceeds the tolerance of the criterion. 
+   * @return the number of emitted segments
+   */
+  static public int adaptiveHalving(
+    ConicCurve curve, ConvexHullSubdivCriterion subdivCriterion, ConicSegmentConsumer segConsumer
+  ) {
+    if(null==curve || null==subdivCriterion) {
+      throw new NullPointerException();
+    }
+    return ConicCurve.halving(
+      curve, 0.0, 1.0, BezierUtils.maxHalvingDepth, subdivCriterion, segConsumer
+    );
+  }
+  
+  @Override
+  public String toString() {
+    return "ConicCurve["+this.x0+", "+this.y0+", "+this.ctrlx+", "+this.ctrly+", "
+      +this.x1+", "+this.y1+", w="+this.weight+"]";
+  }
+}
@@ -0,0 +1,342 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import java.awt.Shape;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.caffeineowl.graphics.bezier.instrumentation.FlatteningEvents;
+
+/**
+ * Converts outlines made of cubic B&eacute;ziers (e.g. the glyphs of a CFF font)
+ * into outlines made of quadratic ones (e.g. for TrueType), using the 
+ * {@linkplain BezierUtils#adaptiveDegreeReduction(double[], int, double, QuadSegmentSink) 
+ * allocation-free adaptive degree reduction}.
+ * <p>The contours of an outline keep their order, starting points and 
+ * closures, the line and quadratic segments are copied as they are; only the
+ * cubics are replaced by daisy-chains of quads.
+ * <p>An instance keeps its scratch storage and its {@link Stats statistics}
+ * between conversions, and is not thread safe; for converting whole
+ * font files, see {@link #convertAll(Shape[], double, ExecutorService, Stats)}.
+ */
+public class CubicToQuadConverter {
+  
+  /**
+   * Aggregated statistics of the conversions: number of glyphs and quads,
+   * the maximum observed error and the time spent.
+   * <p>The error of a quad is measured as the maximum distance between the
+   * points of the quad and of the original cubic at the corresponding
+   * parameter values, sampled at <code>1/4, 1/2, 3/4</code> of the quad.
+   * This is an estimate, not a bound: the curves may be further apart
+   * between the samples.
+   */
+  static public class Stats {
+    protected long   numGlyphs;
+    protected long   numCubics;
+    protected long   numQuads;
+    protected double maxError;
+    protected long   totalNanos;
+    protected long   maxGlyphNanos;
+    
+    /** The number of converted glyphs (outlines) */
+    public long getNumGlyphs() {
+      return this.numGlyphs;
+    }
+    
+    /** The number of cubics found in the converted glyphs */
+    public long getNumCubics() {
+      return this.numCubics;
+    }
+    
+    /** The number of quads emitted as replacements for the cubics */
+    public long getNumQuads() {
+      return this.numQuads;
+    }
+    
+    /** The maximum observed error of an emitted quad */
+    public double getMaxError() {
+      return this.maxError;
+    }
+    
+    /** The time spent converting, summed over all the glyphs (nanoseconds) */
+    public long getTotalNanos() {
+      return this.totalNanos;
+    }
+    
+    /** The average time spent converting a glyph (nanoseconds) */
+    public double getNanosPerGlyph() {
+      return 0==this.numGlyphs ? 0.0 : ((double)this.totalNanos)/this.numGlyphs;
+    }
+    
+    /** The longest time spent converting a single glyph (nanoseconds) */
+    public long getMaxGlyphNanos() {
+      return this.maxGlyphNanos;
+    }
+    
+    /**
+     * Accumulates the statistics of another instance into this one.
+     */
+    public synchronized void merge(Stats other) {
+      this.numGlyphs+=other.numGlyphs;
+      this.numCubics+=other.numCubics;
+      this.numQuads+=other.numQuads;
+      this.totalNanos+=other.totalNanos;
+      if(other.maxError>this.maxError) {
+        this.maxError=other.maxError;
+      }
+      if(other.maxGlyphNanos>this.maxGlyphNanos) {
+        this.maxGlyphNanos=other.maxGlyphNanos;
+      }
+    }
+    
+    public synchronized void reset() {
+      this.numGlyphs=0;
+      this.numCubics=0;
+      this.numQuads=0;
+      this.maxError=0.0;
+      this.totalNanos=0;
+      this.maxGlyphNanos=0;
+    }
+    
+    @Override
+    public String toString() {
+      return "glyphs: "+this.numGlyphs+", cubics: "+this.numCubics
+        +", quads: "+this.numQuads+", max error: "+this.maxError
+        +", ns/glyph: "+Math.round(this.getNanosPerGlyph())
+        +" (max "+this.maxGlyphNanos+")";
+    }
+  }
+  
+  protected final double precision;
+  protected final boolean measureError;
+  protected final Stats stats=new Stats();
+  
+  /** Scratch storage, reused between the cubics */
+  private final QuadSegmentBuffer quads=new QuadSegmentBuffer();
+  private final double[] cubic=new double[8];
+  private final double[] coords=new double[6];
+  
+  /**
+   * @param precision the precision of the approximation 
+   *   (see {@link BezierUtils#adaptiveDegreeReduction(CubicCurve2D, double, QuadSegmentConsumer)})
+   * @param measureError whether the {@linkplain Stats#getMaxError() error}
+   *   of the emitted quads is measured (costs <code>3</code> evaluations per quad).
+   */
+  public CubicToQuadConverter(double precision, boolean measureError) {
+    this.precision=precision;
+    this.measureError=measureError;
+  }
+  
+  /**
+   * The statistics accumulated by this instance.
+   */
+  public Stats getStats() {
+    return this.stats;
+  }
+  
+  /**
+   * Converts the outline, returning a new path with the same winding rule.
+   */
+  public Path2D.Double convert(Shape glyph) {
+    PathIterator it=glyph.getPathIterator(null);
+    Path2D.Double toRet=new Path2D.Double(it.getWindingRule());
+    this.convert(it, toRet);
+    return toRet;
+  }
+  
+  /**
+   * Converts the outline described by the path iterator, appending the
+   * resulted contours to the provided path.
+   */
+  public void convert(PathIterator it, Path2D resultHere) {
+    long start=System.nanoTime();
+    double[] c=this.coords;
+    double lastX=0, lastY=0, startX=0, startY=0;
+    long numCubics=0, numQuads=0;
+    while(!it.isDone()) {
+      switch(it.currentSegment(c)) {
+        case PathIterator.SEG_MOVETO:
+          resultHere.moveTo(c[0], c[1]);
+          lastX=startX=c[0]; lastY=startY=c[1];
+          break;
+        case PathIterator.SEG_LINETO:
+          resultHere.lineTo(c[0], c[1]);
+          lastX=c[0]; lastY=c[1];
+          break;
+        case PathIterator.SEG_QUADTO:
+          resultHere.quadTo(c[0], c[1], c[2], c[3]);
+          lastX=c[2]; lastY=c[3];
+          break;
+        case PathIterator.SEG_CUBICTO:
+          numCubics++;
+          numQuads+=this.convertCubic(lastX, lastY, c, resultHere);
+          lastX=c[4]; lastY=c[5];
+          break;
+        case PathIterator.SEG_CLOSE:
+          resultHere.closePath();
+          lastX=startX; lastY=startY;
+          break;
+      }
+      it.next();
+    }
+    long elapsed=System.nanoTime()-start;
+    Stats s=this.stats;
+    s.numGlyphs++;
+    s.numCubics+=numCubics;
+    s.numQuads+=numQuads;
+    s.totalNanos+=elapsed;
+    if(elapsed>s.maxGlyphNanos) {
+      s.maxGlyphNanos=elapsed;
+    }
+  }
+  
+  /**
+   * Converts a whole set of outlines, in parallel if an executor is provided.
+   * Each thread uses its own converter (so the scratch storage is per-thread),
+   * the statistics of the converters are merged into <code>statsHere</code>
+   * once all the outlines are done.
+   * @param glyphs the outlines to convert
+   * @param precision the precision of the approximation
+   * @param executor the executor to run the conversions; if <code>null</code>,
+   *   the outlines are converted in the calling thread.
+   * @param statsHere where to accumulate the statistics; may be <code>null</code>
+   *   (in which case the error is not measured).
+   * @return the converted outlines, in the same order as <code>glyphs</code>
+   */
+  static public Path2D.Double[] convertAll(
+    final Shape[] glyphs, final double precision,
+    ExecutorService executor, Stats statsHere
+  ) throws InterruptedException, ExecutionException {
+    final Path2D.Double[] toRet=new Path2D.Double[glyphs.length];
+    final boolean measureError=null!=statsHere;
+    Object event=FlatteningEvents.beginBatch();
+    if(null==executor) {
+      CubicToQuadConverter converter=new CubicToQuadConverter(precision, measureError);
+      for(int i=0; i<glyphs.length; i++) {
+        toRet[i]=converter.convert(glyphs[i]);
+      }
+      if(null!=statsHere) {
+        statsHere.merge(converter.stats);
+      }
+      FlatteningEvents.endBatch(event, "CubicToQuadConverter.convertAll", glyphs.length, false);
+      return toRet;
+    }
+    final ArrayList<CubicToQuadConverter> converters=new ArrayList<CubicToQuadConverter>();
+    final ThreadLocal<CubicToQuadConverter> perThread=new ThreadLocal<CubicToQuadConverter>() {
+      @Override
+      protected CubicToQuadConverter initialValue() {
+        CubicToQuadConverter converter=new CubicToQuadConverter(precision, measureError);
+        synchronized(converters) {
+          converters.add(converter);
+        }
+        return converter;
+      }
+    };
+    ArrayList<Future<?>> results=new ArrayList<Future<?>>(glyphs.length);
+    for(int i=0; i<glyphs.length; i++) {
+      final int index=i;
+      results.add(
+        executor.submit(
+          new Callable<Object>() {
+            @Override
+            public Object call() {
+              toRet[index]=perThread.get().convert(glyphs[index]);
+              return null;
+            }
+          }
+        )
+      );
+    }
+    for(Future<?> f : results) {
+      f.get(); // also makes the writes in toRet visible to this thread
+    }
+    if(null!=statsHere) {
+      synchronized(converters) {
+        for(CubicToQuadConverter converter : converters) {
+          // each converter's last write happened-before its task's completion
+          statsHere.merge(converter.stats);
+        }
+      }
+    }
+    FlatteningEvents.endBatch(event, "CubicToQuadConverter.convertAll", glyphs.length, true);
+    return toRet;
+  }
+  
+  // ------------------------------------------------------------------
+  // internals
+  
+  private int convertCubic(double x0, double y0, double[] c, Path2D resultHere) {
+    double[] cb=this.cubic;
+    cb[0]=x0; cb[1]=y0;
+    System.arraycopy(c, 0, cb, 2, 6);
+    QuadSegmentBuffer q=this.quads;
+    q.clear();
+    BezierUtils.adaptiveDegreeReduction(cb, 0, this.precision, q);
+    int n=q.size();
+    double[] qc=q.getCoords();
+    for(int i=0, pos=0; i<n; i++, pos+=6) {
+      resultHere.quadTo(qc[pos+2], qc[pos+3], qc[pos+4], qc[pos+5]);
+    }
+    if(this.measureError) {
+      double err=this.measureError(cb, qc, q.getParams(), n);
+      if(err>this.stats.maxError) {
+        this.stats.maxError=err;
+      }
+    }
+    return n;
+  }
+  
+  private double measureError(double[] cb, double[] qc, double[] params, int n) {
+    double toRet=0.0;
+    for(int i=0; i<n; i++) {
+      int pos=6*i;
+      double t0=params[2*i], dt=params[2*i+1]-t0;
+      for(int k=1; k<4; k++) {
+        double u=0.25*k, mu=1-u;
+        double qx=mu*mu*qc[pos]+2*mu*u*qc[pos+2]+u*u*qc[pos+4];
+        double qy=mu*mu*qc[pos+1]+2*mu*u*qc[pos+3]+u*u*qc[pos+5];
+        double t=t0+u*dt, mt=1-t;
+        double b0=mt*mt*mt, b1=3*mt*mt*t, b2=3*mt*t*t, b3=t*t*t;
+        double cx=b0*cb[0]+b1*cb[2]+b2*cb[4]+b3*cb[6];
+        double cy=b0*cb[1]+b1*cb[3]+b2*cb[5]+b3*cb[7];
+        double d=Math.hypot(qx-cx, qy-cy);
+        if(d>toRet) {
+          toRet=d;
+        }
+      }
+    }
+    return toRet;
+  }
+}
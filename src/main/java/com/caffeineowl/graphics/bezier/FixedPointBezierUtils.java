@@ -0,0 +1,307 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import com.caffeineowl.graphics.PolylineSink;
+
+/**
+ * Fixed point counterparts of the {@link BezierUtils#halfSplitCurve(java.awt.geom.CubicCurve2D, java.awt.geom.CubicCurve2D, java.awt.geom.CubicCurve2D) halving}
+ * and of the {@linkplain com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullFlatnessAlgo convex hull}
+ * flatness test, for flattening results that must be bit-identical 
+ * whatever the JVM, the CPU or the JIT decisions. The coordinates are 
+ * <code>long</code>s with {@link #fractionBits} fractional bits (a 24.8
+ * format), laid out as in {@link BezierUtils}: <code>8</code> values
+ * per cubic, <code>6</code> per quad.
+ * <p>Everything is integer arithmetic: the halving averages by an 
+ * arithmetic shift (rounding towards negative infinity), the flatness 
+ * test compares the cross product of a control point against the 
+ * tolerance times the (integer, floor) length of the chord, so that no 
+ * intermediate exceeds 64 bits as long as the coordinates stay within
+ * <code>&plusmn;</code>{@link #maxCoordinate}. The flatness test is 
+ * then slightly conservative: it may split a piece whose control points
+ * are less than one fixed point unit above the tolerance.
+ */
+public final class FixedPointBezierUtils {
+  
+  /** The number of fractional bits: the fixed point unit is <code>1/256</code> */
+  static public final int fractionBits=8;
+  
+  /** The fixed point value of <code>1.0</code> */
+  static public final long one=1L<<FixedPointBezierUtils.fractionBits;
+  
+  /**
+   * The largest magnitude, in fixed point units, a coordinate may have
+   * (<code>2<sup>21</sup></code> in double units).
+   */
+  static public final long maxCoordinate=1L<<29;
+  
+  /**
+   * The subdivision depth limit: past it, the halves of a curve within
+   * {@link #maxCoordinate} have collapsed to single fixed point units.
+   */
+  static public final int maxHalvingDepth=32;
+  
+  /**
+   * Converts a value to the nearest fixed point one.
+   * @throws IllegalArgumentException if the value is not finite or is 
+   *   out of the <code>&plusmn;</code>{@link #maxCoordinate} range
+   */
+  static public long toFixed(double v) {
+    double scaled=Math.scalb(v, FixedPointBezierUtils.fractionBits);
+    if(!(Math.abs(scaled)<=FixedPointBezierUtils.maxCoordinate)) {
+      throw new IllegalArgumentException("Out of the fixed point range: "+v);
+    }
+    return Math.round(scaled);
+  }
+  
+  /**
+   * Converts <code>count</code> values to fixed point, see {@link #toFixed(double)}.
+   */
+  static public void toFixed(double[] src, int srcOffset, long[] dest, int destOffset, int count) {
+    for(int i=0; i<count; i++) {
+      dest[destOffset+i]=FixedPointBezierUtils.toFixed(src[srcOffset+i]);
+    }
+  }
+  
+  /** Converts a fixed point value back, exactly */
+  static public double toDouble(long v) {
+    return Math.scalb((double)v, -FixedPointBezierUtils.fractionBits);
+  }
+  
+  /**
+   * Subdivides a cubic at <code>t=1/2</code> by de Casteljau. The halves are
+   * stored as <code>14</code> consecutive values in <code>dest</code>: the
+   * first half at <code>destOffset</code>, the second at 
+   * <code>destOffset+6</code> (sharing the mid point). <code>src==dest</code>
+   * is allowed.
+   */
+  static public void halfSplitCubic(long[] src, int srcOffset, long[] dest, int destOffset) {
+    long x0=src[srcOffset], y0=src[srcOffset+1];
+    long cx0=src[srcOffset+2], cy0=src[srcOffset+3];
+    long cx1=src[srcOffset+4], cy1=src[srcOffset+5];
+    long x1=src[srcOffset+6], y1=src[srcOffset+7];
+    
+    long p0x=(x0+cx0)>>1, p0y=(y0+cy0)>>1;
+    long p1x=(cx0+cx1)>>1, p1y=(cy0+cy1)>>1;
+    long p2x=(cx1+x1)>>1, p2y=(cy1+y1)>>1;
+    long p01x=(p0x+p1x)>>1, p01y=(p0y+p1y)>>1;
+    long p12x=(p1x+p2x)>>1, p12y=(p1y+p2y)>>1;
+    long dpx=(p01x+p12x)>>1, dpy=(p01y+p12y)>>1;
+    
+    int i=destOffset;
+    dest[i]=x0; dest[i+1]=y0;
+    dest[i+2]=p0x; dest[i+3]=p0y;
+    dest[i+4]=p01x; dest[i+5]=p01y;
+    dest[i+6]=dpx; dest[i+7]=dpy;
+    dest[i+8]=p12x; dest[i+9]=p12y;
+    dest[i+10]=p2x; dest[i+11]=p2y;
+    dest[i+12]=x1; dest[i+13]=y1;
+  }
+  
+  /**
+   * Subdivides a quadratic at <code>t=1/2</code>. The halves are stored as
+   * <code>10</code> consecutive values in <code>dest</code>: the first
+   * half at <code>destOffset</code>, the second at <code>destOffset+4</code>.
+   * <code>src==dest</code> is allowed.
+   */
+  static public void halfSplitQuad(long[] src, int srcOffset, long[] dest, int destOffset) {
+    long x0=src[srcOffset], y0=src[srcOffset+1];
+    long cx=src[srcOffset+2], cy=src[srcOffset+3];
+    long x1=src[srcOffset+4], y1=src[srcOffset+5];
+    
+    long p0x=(x0+cx)>>1, p0y=(y0+cy)>>1;
+    long p1x=(cx+x1)>>1, p1y=(cy+y1)>>1;
+    long dpx=(p0x+p1x)>>1, dpy=(p0y+p1y)>>1;
+    
+    int i=destOffset;
+    dest[i]=x0; dest[i+1]=y0;
+    dest[i+2]=p0x; dest[i+3]=p0y;
+    dest[i+4]=dpx; dest[i+5]=dpy;
+    dest[i+6]=p1x; dest[i+7]=p1y;
+    dest[i+8]=x1; dest[i+9]=y1;
+  }
+  
+  /** The floor of the square root of a non-negative value */
+  static long isqrt(long v) {
+    long toRet=(long)Math.sqrt((double)v);
+    // the double rounding may be off by one either way, fix it up exactly
+    while(toRet*toRet>v) {
+      toRet--;
+    }
+    while((toRet+1)*(toRet+1)<=v) {
+      toRet++;
+    }
+    return toRet;
+  }
+  
+  /**
+   * Tells if the distance between a point and a segment is greater than
+   * the tolerance.
+   */
+  static boolean isFurther(
+    long pointX, long pointY,
+    long startX, long startY,
+    long endX, long endY,
+    long tolerance, long sqTolerance
+  ) {
+    long segDx=endX-startX, segDy=endY-startY;
+    long dx=pointX-endX, dy=pointY-endY;
+    if(dx*segDx+dy*segDy>=0) { // the end point is the closest
+      return dx*dx+dy*dy>sqTolerance;
+    }
+    dx=pointX-startX; dy=pointY-startY;
+    if(dx*segDx+dy*segDy<=0) { // the start point is the closest
+      return dx*dx+dy*dy>sqTolerance;
+    }
+    // the projection falls on the (not degenerate) segment: compare 
+    // |cross|/len with the tolerance, without the division
+    long crossProd=Math.abs(dx*segDy-dy*segDx);
+    return crossProd>tolerance*FixedPointBezierUtils.isqrt(segDx*segDx+segDy*segDy);
+  }
+  
+  /**
+   * The fixed point convex hull flatness test of a cubic: is any of the
+   * control points further than the tolerance from the segment joining 
+   * the anchor points?
+   * @param tolerance the tolerance, in fixed point units
+   */
+  static public boolean shouldSplitCubic(long[] coords, int offset, long tolerance) {
+    long tol=FixedPointBezierUtils.clampTolerance(tolerance);
+    return FixedPointBezierUtils.shouldSplitCubic(coords, offset, tol, tol*tol);
+  }
+  
+  static private boolean shouldSplitCubic(long[] coords, int offset, long tol, long sqTol) {
+    long x0=coords[offset], y0=coords[offset+1];
+    long x1=coords[offset+6], y1=coords[offset+7];
+    return FixedPointBezierUtils.isFurther(
+        coords[offset+2], coords[offset+3], x0, y0, x1, y1, tol, sqTol
+      )
+      || FixedPointBezierUtils.isFurther(
+        coords[offset+4], coords[offset+5], x0, y0, x1, y1, tol, sqTol
+      );
+  }
+  
+  /**
+   * The fixed point convex hull flatness test of a quadratic.
+   * @param tolerance the tolerance, in fixed point units
+   */
+  static public boolean shouldSplitQuad(long[] coords, int offset, long tolerance) {
+    long tol=FixedPointBezierUtils.clampTolerance(tolerance);
+    return FixedPointBezierUtils.shouldSplitQuad(coords, offset, tol, tol*tol);
+  }
+  
+  static private boolean shouldSplitQuad(long[] coords, int offset, long tol, long sqTol) {
+    return FixedPointBezierUtils.isFurther(
+      coords[offset+2], coords[offset+3], 
+      coords[offset], coords[offset+1], coords[offset+4], coords[offset+5], 
+      tol, sqTol
+    );
+  }
+  
+  static private long clampTolerance(long tolerance) {
+    return Math.min(Math.abs(tolerance), FixedPointBezierUtils.maxCoordinate);
+  }
+  
+  static private int cubicHalving(
+    long[] coords, int offset, long tol, long sqTol, long[] stack, int depth,
+    PolylineSink pointsHere
+  ) {
+    if(depth<FixedPointBezierUtils.maxHalvingDepth 
+       && FixedPointBezierUtils.shouldSplitCubic(coords, offset, tol, sqTol)
+    ) {
+      int at=14*depth;
+      FixedPointBezierUtils.halfSplitCubic(coords, offset, stack, at);
+      return FixedPointBezierUtils.cubicHalving(stack, at, tol, sqTol, stack, depth+1, pointsHere)
+        +FixedPointBezierUtils.cubicHalving(stack, at+6, tol, sqTol, stack, depth+1, pointsHere);
+    }
+    pointsHere.lineTo(
+      FixedPointBezierUtils.toDouble(coords[offset+6]), 
+      FixedPointBezierUtils.toDouble(coords[offset+7])
+    );
+    return 1;
+  }
+  
+  static private int quadHalving(
+    long[] coords, int offset, long tol, long sqTol, long[] stack, int depth,
+    PolylineSink pointsHere
+  ) {
+    if(depth<FixedPointBezierUtils.maxHalvingDepth 
+       && FixedPointBezierUtils.shouldSplitQuad(coords, offset, tol, sqTol)
+    ) {
+      int at=10*depth;
+      FixedPointBezierUtils.halfSplitQuad(coords, offset, stack, at);
+      return FixedPointBezierUtils.quadHalving(stack, at, tol, sqTol, stack, depth+1, pointsHere)
+        +FixedPointBezierUtils.quadHalving(stack, at+4, tol, sqTol, stack, depth+1, pointsHere);
+    }
+    pointsHere.lineTo(
+      FixedPointBezierUtils.toDouble(coords[offset+4]), 
+      FixedPointBezierUtils.toDouble(coords[offset+5])
+    );
+    return 1;
+  }
+  
+  /**
+   * Flattens a fixed point cubic by adaptive halving with the fixed point
+   * convex hull flatness test. The ends of the chords are passed to
+   * the sink as {@link PolylineSink#lineTo(double, double) lineTo}s (the 
+   * start point of the curve being the caller's business), converted 
+   * exactly to <code>double</code>s.
+   * @param tolerance the tolerance, in fixed point units
+   * @return the number of chords
+   */
+  static public int adaptiveHalvingCubic(
+    long[] coords, int offset, long tolerance, PolylineSink pointsHere
+  ) {
+    if(null==coords || null==pointsHere) {
+      throw new NullPointerException();
+    }
+    long[] stack=new long[14*FixedPointBezierUtils.maxHalvingDepth];
+    long tol=FixedPointBezierUtils.clampTolerance(tolerance);
+    return FixedPointBezierUtils.cubicHalving(coords, offset, tol, tol*tol, stack, 0, pointsHere);
+  }
+  
+  /**
+   * Flattens a fixed point quadratic, see 
+   * {@link #adaptiveHalvingCubic(long[], int, long, PolylineSink)}.
+   * @param tolerance the tolerance, in fixed point units
+   * @return the number of chords
+   */
+  static public int adaptiveHalvingQuad(
+    long[] coords, int offset, long tolerance, PolylineSink pointsHere
+  ) {
+    if(null==coords || null==pointsHere) {
+      throw new NullPointerException();
+    }
+    long[] stack=new long[10*FixedPointBezierUtils.maxHalvingDepth];
+    long tol=FixedPointBezierUtils.clampTolerance(tolerance);
+    return FixedPointBezierUtils.quadHalving(coords, offset, tol, tol*tol, stack, 0, pointsHere);
+  }
+  
+  private FixedPointBezierUtils() {
+  }
+}
@@ -0,0 +1,315 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import com.caffeineowl.graphics.DistUtils;
+import com.caffeineowl.graphics.GeomUtils;
+import com.caffeineowl.graphics.PolylineSink;
+
+/**
+ * Single precision counterparts of the {@link BezierUtils} splitting, 
+ * evaluation, flatness and flattening, over curves stored in 
+ * <code>float[]</code> buffers: <code>8</code> consecutive values 
+ * (<code>x0, y0, cx0, cy0, cx1, cy1, x1, y1</code>) for a cubic, 
+ * <code>6</code> for a quadratic. All the arithmetic is done in
+ * <code>float</code>s, for geometry that already comes in 
+ * single precision (<code>CubicCurve2D.Float</code>, glyph outlines, 
+ * vertex buffers) and for which the memory traffic matters more than
+ * the precision.
+ * <p>The flattening tolerance is never taken below 
+ * {@link GeomUtils#getDistTolerance()}, and the subdivision never goes
+ * deeper than {@link #maxHalvingDepth}: beyond that, the halves of a 
+ * <code>float</code> curve are no longer distinguishable from rounding.
+ */
+public final class FloatBezierUtils {
+  
+  /**
+   * The subdivision depth limit for the flattening: the number of
+   * significand bits of a <code>float</code>.
+   */
+  static public final int maxHalvingDepth=24;
+  
+  /**
+   * Subdivides a cubic at <code>t=1/2</code> by de Casteljau. The halves are 
+   * stored as <code>14</code> consecutive values in <code>dest</code>: the 
+   * first half at <code>destOffset</code>, the second at 
+   * <code>destOffset+6</code> (sharing the mid point). The source may be 
+   * overwritten, i.e. <code>src==dest</code> is allowed.
+   */
+  static public void halfSplitCubic(float[] src, int srcOffset, float[] dest, int destOffset) {
+    float x0=src[srcOffset], y0=src[srcOffset+1];
+    float cx0=src[srcOffset+2], cy0=src[srcOffset+3];
+    float cx1=src[srcOffset+4], cy1=src[srcOffset+5];
+    float x1=src[srcOffset+6], y1=src[srcOffset+7];
+    
+    float p0x=(x0+cx0)*0.5f, p0y=(y0+cy0)*0.5f;
+    float p1x=(cx0+cx1)*0.5f, p1y=(cy0+cy1)*0.5f;
+    float p2x=(cx1+x1)*0.5f, p2y=(cy1+y1)*0.5f;
+    float p01x=(p0x+p1x)*0.5f, p01y=(p0y+p1y)*0.5f;
+    float p12x=(p1x+p2x)*0.5f, p12y=(p1y+p2y)*0.5f;
+    float dpx=(p01x+p12x)*0.5f, dpy=(p01y+p12y)*0.5f;
+    
+    int i=destOffset;
+    dest[i]=x0; dest[i+1]=y0;
+    dest[i+2]=p0x; dest[i+3]=p0y;
+    dest[i+4]=p01x; dest[i+5]=p01y;
+    dest[i+6]=dpx; dest[i+7]=dpy;
+    dest[i+8]=p12x; dest[i+9]=p12y;
+    dest[i+10]=p2x; dest[i+11]=p2y;
+    dest[i+12]=x1; dest[i+13]=y1;
+  }
+  
+  /**
+   * Subdivides a quadratic at <code>t=1/2</code>. The halves are stored as
+   * <code>10</code> consecutive values in <code>dest</code>: the first
+   * half at <code>destOffset</code>, the second at <code>destOffset+4</code>.
+   * <code>src==dest</code> is allowed.
+   */
+  static public void halfSplitQuad(float[] src, int srcOffset, float[] dest, int destOffset) {
+    float x0=src[srcOffset], y0=src[srcOffset+1];
+    float cx=src[srcOffset+2], cy=src[srcOffset+3];
+    float x1=src[srcOffset+4], y1=src[srcOffset+5];
+    
+    float p0x=(x0+cx)*0.5f, p0y=(y0+cy)*0.5f;
+    float p1x=(cx+x1)*0.5f, p1y=(cy+y1)*0.5f;
+    float dpx=(p0x+p1x)*0.5f, dpy=(p0y+p1y)*0.5f;
+    
+    int i=destOffset;
+    dest[i]=x0; dest[i+1]=y0;
+    dest[i+2]=p0x; dest[i+3]=p0y;
+    dest[i+4]=dpx; dest[i+5]=dpy;
+    dest[i+6]=p1x; dest[i+7]=p1y;
+    dest[i+8]=x1; dest[i+9]=y1;
+  }
+  
+  /**
+   * Subdivides a cubic at a parameter value, with the same output layout
+   * as {@link #halfSplitCubic(float[], int, float[], int)}.
+   * @return <code>false</code> (and nothing computed) if <code>tSplit</code>
+   *   is out of the <code>0..1</code> range
+   */
+  static public boolean splitCubic(
+    float[] src, int srcOffset, float tSplit, float[] dest, int destOffset
+  ) {
+    boolean toRet=(tSplit>=0.0f && tSplit<=1.0f);
+    if(toRet) {
+      float t=tSplit, mt=1.0f-tSplit;
+      float x0=src[srcOffset], y0=src[srcOffset+1];
+      float cx0=src[srcOffset+2], cy0=src[srcOffset+3];
+      float cx1=src[srcOffset+4], cy1=src[srcOffset+5];
+      float x1=src[srcOffset+6], y1=src[srcOffset+7];
+      
+      float p0x=mt*x0+t*cx0, p0y=mt*y0+t*cy0;
+      float p1x=mt*cx0+t*cx1, p1y=mt*cy0+t*cy1;
+      float p2x=mt*cx1+t*x1, p2y=mt*cy1+t*y1;
+      float p01x=mt*p0x+t*p1x, p01y=mt*p0y+t*p1y;
+      float p12x=mt*p1x+t*p2x, p12y=mt*p1y+t*p2y;
+      float dpx=mt*p01x+t*p12x, dpy=mt*p01y+t*p12y;
+      
+      int i=destOffset;
+      dest[i]=x0; dest[i+1]=y0;
+      dest[i+2]=p0x; dest[i+3]=p0y;
+      dest[i+4]=p01x; dest[i+5]=p01y;
+      dest[i+6]=dpx; dest[i+7]=dpy;
+      dest[i+8]=p12x; dest[i+9]=p12y;
+      dest[i+10]=p2x; dest[i+11]=p2y;
+      dest[i+12]=x1; dest[i+13]=y1;
+    }
+    return toRet;
+  }
+  
+  /**
+   * Subdivides a quadratic at a parameter value, with the same output layout
+   * as {@link #halfSplitQuad(float[], int, float[], int)}.
+   * @return <code>false</code> (and nothing computed) if <code>tSplit</code>
+   *   is out of the <code>0..1</code> range
+   */
+  static public boolean splitQuad(
+    float[] src, int srcOffset, float tSplit, float[] dest, int destOffset
+  ) {
+    boolean toRet=(tSplit>=0.0f && tSplit<=1.0f);
+    if(toRet) {
+      float t=tSplit, mt=1.0f-tSplit;
+      float x0=src[srcOffset], y0=src[srcOffset+1];
+      float cx=src[srcOffset+2], cy=src[srcOffset+3];
+      float x1=src[srcOffset+4], y1=src[srcOffset+5];
+      
+      float p0x=mt*x0+t*cx, p0y=mt*y0+t*cy;
+      float p1x=mt*cx+t*x1, p1y=mt*cy+t*y1;
+      float dpx=mt*p0x+t*p1x, dpy=mt*p0y+t*p1y;
+      
+      int i=destOffset;
+      dest[i]=x0; dest[i+1]=y0;
+      dest[i+2]=p0x; dest[i+3]=p0y;
+      dest[i+4]=dpx; dest[i+5]=dpy;
+      dest[i+6]=p1x; dest[i+7]=p1y;
+      dest[i+8]=x1; dest[i+9]=y1;
+    }
+    return toRet;
+  }
+  
+  /**
+   * Evaluates a cubic at a parameter value (Bernstein form).
+   * @param pointHere where to store the <code>x, y</code> of the point
+   */
+  static public void pointOnCubic(
+    float[] coords, int offset, float t, float[] pointHere, int pointOffset
+  ) {
+    float mt=1.0f-t;
+    float b0=mt*mt*mt, b1=3.0f*mt*mt*t, b2=3.0f*mt*t*t, b3=t*t*t;
+    pointHere[pointOffset]=
+      b0*coords[offset]+b1*coords[offset+2]+b2*coords[offset+4]+b3*coords[offset+6];
+    pointHere[pointOffset+1]=
+      b0*coords[offset+1]+b1*coords[offset+3]+b2*coords[offset+5]+b3*coords[offset+7];
+  }
+  
+  /**
+   * Evaluates a quadratic at a parameter value (Bernstein form).
+   * @param pointHere where to store the <code>x, y</code> of the point
+   */
+  static public void pointOnQuad(
+    float[] coords, int offset, float t, float[] pointHere, int pointOffset
+  ) {
+    float mt=1.0f-t;
+    float b0=mt*mt, b1=2.0f*mt*t, b2=t*t;
+    pointHere[pointOffset]=b0*coords[offset]+b1*coords[offset+2]+b2*coords[offset+4];
+    pointHere[pointOffset+1]=b0*coords[offset+1]+b1*coords[offset+3]+b2*coords[offset+5];
+  }
+  
+  /**
+   * The single precision 
+   * {@linkplain com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullFlatnessAlgo convex hull flatness}
+   * of a cubic: the largest squared distance between a control point and 
+   * the segment joining the anchor points.
+   */
+  static public float squaredFlatnessCubic(float[] coords, int offset) {
+    float x0=coords[offset], y0=coords[offset+1];
+    float x1=coords[offset+6], y1=coords[offset+7];
+    float sqDist1=DistUtils.pointToSegSqEucDist(
+      coords[offset+2], coords[offset+3], x0, y0, x1, y1
+    );
+    float sqDist2=DistUtils.pointToSegSqEucDist(
+      coords[offset+4], coords[offset+5], x0, y0, x1, y1
+    );
+    return sqDist1>sqDist2 ? sqDist1 : sqDist2;
+  }
+  
+  /**
+   * The single precision convex hull flatness of a quadratic: the squared 
+   * distance between the control point and the segment joining the anchor
+   * points.
+   */
+  static public float squaredFlatnessQuad(float[] coords, int offset) {
+    return DistUtils.pointToSegSqEucDist(
+      coords[offset+2], coords[offset+3],
+      coords[offset], coords[offset+1], coords[offset+4], coords[offset+5]
+    );
+  }
+  
+  static private float sqTolerance(float tolerance) {
+    float tol=Math.max(Math.abs(tolerance), (float)GeomUtils.getDistTolerance());
+    return tol*tol;
+  }
+  
+  static private int cubicHalving(
+    float[] coords, int offset, float sqTol, float[] stack, int depth,
+    PolylineSink pointsHere
+  ) {
+    if(depth<FloatBezierUtils.maxHalvingDepth 
+       && FloatBezierUtils.squaredFlatnessCubic(coords, offset)>sqTol
+    ) {
+      int at=14*depth;
+      FloatBezierUtils.halfSplitCubic(coords, offset, stack, at);
+      return FloatBezierUtils.cubicHalving(stack, at, sqTol, stack, depth+1, pointsHere)
+        +FloatBezierUtils.cubicHalving(stack, at+6, sqTol, stack, depth+1, pointsHere);
+    }
+    pointsHere.lineTo(coords[offset+6], coords[offset+7]);
+    return 1;
+  }
+  
+  static private int quadHalving(
+    float[] coords, int offset, float sqTol, float[] stack, int depth,
+    PolylineSink pointsHere
+  ) {
+    if(depth<FloatBezierUtils.maxHalvingDepth 
+       && FloatBezierUtils.squaredFlatnessQuad(coords, offset)>sqTol
+    ) {
+      int at=10*depth;
+      FloatBezierUtils.halfSplitQuad(coords, offset, stack, at);
+      return FloatBezierUtils.quadHalving(stack, at, sqTol, stack, depth+1, pointsHere)
+        +FloatBezierUtils.quadHalving(stack, at+4, sqTol, stack, depth+1, pointsHere);
+    }
+    pointsHere.lineTo(coords[offset+4], coords[offset+5]);
+    return 1;
+  }
+  
+  /**
+   * Flattens a cubic by adaptive halving with the convex hull flatness,
+   * the single precision counterpart of 
+   * {@link BezierUtils#adaptiveHalving(java.awt.geom.CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer)}
+   * with a {@link com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullSubdivCriterion}.
+   * Only the chord ends are passed to the sink, as 
+   * {@link PolylineSink#lineTo(double, double) lineTo}s, the start point
+   * of the curve being the caller's business (e.g. the end of the previous
+   * curve of a path).
+   * @param tolerance the flatness tolerance
+   * @param pointsHere where to send the ends of the chords
+   * @return the number of chords
+   */
+  static public int adaptiveHalvingCubic(
+    float[] coords, int offset, float tolerance, PolylineSink pointsHere
+  ) {
+    if(null==coords || null==pointsHere) {
+      throw new NullPointerException();
+    }
+    float[] stack=new float[14*FloatBezierUtils.maxHalvingDepth];
+    return FloatBezierUtils.cubicHalving(
+      coords, offset, FloatBezierUtils.sqTolerance(tolerance), stack, 0, pointsHere
+    );
+  }
+  
+  /**
+   * Flattens a quadratic by adaptive halving with the convex hull flatness;
+   * see {@link #adaptiveHalvingCubic(float[], int, float, PolylineSink)}.
+   * @return the number of chords
+   */
+  static public int adaptiveHalvingQuad(
+    float[] coords, int offset, float tolerance, PolylineSink pointsHere
+  ) {
+    if(null==coords || null==pointsHere) {
+      throw new NullPointerException();
+    }
+    float[] stack=new float[10*FloatBezierUtils.maxHalvingDepth];
+    return FloatBezierUtils.quadHalving(
+      coords, offset, FloatBezierUtils.sqTolerance(tolerance), stack, 0, pointsHere
+    );
+  }
+  
+  private FloatBezierUtils() {
+  }
+}
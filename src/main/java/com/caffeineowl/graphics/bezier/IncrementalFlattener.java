@@ -0,0 +1,216 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import java.awt.geom.CubicCurve2D;
+
+/**
+ * Flattens a cubic B&eacute;zier by 
+ * {@linkplain BezierUtils#adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) 
+ * adaptive halving}, keeping the subdivision tree between the flattenings
+ * of successive versions of the curve (e.g. while one of its control points
+ * is dragged in an editor).
+ * <p>On a {@linkplain #setCurve(CubicCurve2D) change} of the curve, the
+ * tree is walked again from the root, with the pieces recomputed by
+ * halving: a node whose piece came out bit-for-bit the same as before
+ * keeps its verdict and its whole subtree without consulting the 
+ * criterion (this happens where the edit is too far, in parameter space,
+ * to make any difference in double precision); the other nodes are
+ * re-tested in place, the tree being grown or pruned only where the
+ * verdict changed. No node objects are allocated unless the tree grows.
+ * <p>Instances are not thread safe.
+ */
+public class IncrementalFlattener {
+  
+  /**
+   * A node of the subdivision tree: the piece of the curve it covers, its
+   * parameter range and, if the piece needed splitting, its halves.
+   */
+  @SuppressWarnings("serial")
+  static private class Node extends CubicCurve2D.Double {
+    double tMin;
+    double tMax;
+    /** The criterion generation the verdict of this node was taken with */
+    int    generation=-1;
+    Node   first;
+    Node   second;
+    
+    Node(double tMin, double tMax) {
+      this.tMin=tMin;
+      this.tMax=tMax;
+    }
+    
+    boolean sameAs(CubicCurve2D c) {
+      return 
+        this.x1==c.getX1() && this.y1==c.getY1()
+        && this.ctrlx1==c.getCtrlX1() && this.ctrly1==c.getCtrlY1()
+        && this.ctrlx2==c.getCtrlX2() && this.ctrly2==c.getCtrlY2()
+        && this.x2==c.getX2() && this.y2==c.getY2();
+    }
+  }
+  
+  /** The smallest parameter range a piece may be split into */
+  static private final double minParamRange=Math.scalb(1.0, -BezierUtils.maxHalvingDepth);
+  
+  protected CubicSubdivisionCriterion subdivCriterion;
+  
+  /** Incremented each time the criterion changes, invalidating all the verdicts */
+  protected int  generation=0;
+  
+  protected Node root=new Node(0.0, 1.0);
+  
+  /** Scratch halves, two per tree level */
+  protected CubicCurve2D.Double[] scratch=new CubicCurve2D.Double[2*(BezierUtils.maxHalvingDepth+1)];
+  
+  protected int segmentCount=0;
+  protected int testedCount=0;
+  protected int reusedCount=0;
+  
+  /**
+   * @param subdivCriterion the criterion telling if a piece needs further 
+   *   splitting (<code>null</code> for the default one)
+   */
+  public IncrementalFlattener(CubicSubdivisionCriterion subdivCriterion) {
+    this.setSubdivCriterion(subdivCriterion);
+    for(int i=0; i<this.scratch.length; i++) {
+      this.scratch[i]=new CubicCurve2D.Double();
+    }
+  }
+  
+  /**
+   * Changes the subdivision criterion; the tree topology is kept, but all 
+   * the verdicts are re-tested on the next {@link #setCurve(CubicCurve2D)}.
+   */
+  public void setSubdivCriterion(CubicSubdivisionCriterion subdivCriterion) {
+    this.subdivCriterion=
+      null==subdivCriterion ? BezierUtils.defaultCubicSubdivCriterion : subdivCriterion;
+    this.generation++;
+  }
+  
+  public CubicSubdivisionCriterion getSubdivCriterion() {
+    return this.subdivCriterion;
+  }
+  
+  /**
+   * Re-flattens after a change of the curve, reusing the subdivision tree
+   * of the previous curve.
+   * @return the number of segments of the flattened curve
+   */
+  public int setCurve(CubicCurve2D curve) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    this.segmentCount=0;
+    this.testedCount=0;
+    this.reusedCount=0;
+    if(false==BezierUtils.isFinite(curve) || BezierUtils.isStraight(curve)) {
+      // degenerate, a single segment whatever the criterion
+      this.root.setCurve(curve);
+      this.root.generation=-1;
+      this.root.first=null;
+      this.root.second=null;
+      this.segmentCount=1;
+    }
+    else {
+      this.refresh(this.root, curve, 0);
+    }
+    return this.segmentCount;
+  }
+  
+  private void refresh(Node node, CubicCurve2D piece, int depth) {
+    if(node.generation==this.generation && node.sameAs(piece)) {
+      // same piece, same criterion: same verdicts for the whole subtree
+      this.reusedCount++;
+      this.segmentCount+=IncrementalFlattener.countLeaves(node);
+      return;
+    }
+    node.setCurve(piece);
+    node.generation=this.generation;
+    this.testedCount++;
+    if(
+      node.tMax-node.tMin>IncrementalFlattener.minParamRange
+      && this.subdivCriterion.shouldSplit(node)
+    ) {
+      if(null==node.first) {
+        double tMid=(node.tMin+node.tMax)/2.0;
+        node.first=new Node(node.tMin, tMid);
+        node.second=new Node(tMid, node.tMax);
+      }
+      CubicCurve2D.Double firstHalf=this.scratch[2*depth];
+      CubicCurve2D.Double secondHalf=this.scratch[2*depth+1];
+      BezierUtils.halfSplitCurve(node, firstHalf, secondHalf);
+      this.refresh(node.first, firstHalf, depth+1);
+      this.refresh(node.second, secondHalf, depth+1);
+    }
+    else {
+      node.first=null;
+      node.second=null;
+      this.segmentCount++;
+    }
+  }
+  
+  static private int countLeaves(Node node) {
+    return null==node.first 
+      ? 1 
+      : IncrementalFlattener.countLeaves(node.first)+IncrementalFlattener.countLeaves(node.second);
+  }
+  
+  /** The number of segments of the flattened curve */
+  public int getSegmentCount() {
+    return this.segmentCount;
+  }
+  
+  /** The number of nodes the criterion was consulted for by the last update */
+  public int getTestedCount() {
+    return this.testedCount;
+  }
+  
+  /** The number of subtrees reused without consulting the criterion by the last update */
+  public int getReusedCount() {
+    return this.reusedCount;
+  }
+  
+  /**
+   * Feeds the segments of the flattened curve into a consumer, in order.
+   * The segments are the nodes of the tree, so the consumer must not 
+   * modify them, nor keep them past the next {@link #setCurve(CubicCurve2D)}.
+   */
+  public void emit(CubicSegmentConsumer segConsumer) {
+    IncrementalFlattener.emit(this.root, segConsumer);
+  }
+  
+  static private void emit(Node node, CubicSegmentConsumer segConsumer) {
+    if(null==node.first) {
+      segConsumer.processSegment(node, node.tMin, node.tMax);
+    }
+    else {
+      IncrementalFlattener.emit(node.first, segConsumer);
+      IncrementalFlattener.emit(node.second, segConsumer);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import java.awt.geom.CubicCurve2D;
+
+/**
+ * Interface to be implemented by algorithms that tell if a cubic 
+ * approximating the offset of a curve segment is not accurate enough,
+ * therefore the segment should be 
+ * {@link com.caffeineowl.graphics.bezier.stroking.BezierOffsetter#offsetCurve(CubicCurve2D, double, OffsetApproxCriterion, CubicSegmentConsumer) sub-divided}
+ * and each half approximated separately.
+ */
+public interface OffsetApproxCriterion {
+  /**
+   * @param segment the (part of the) original curve being offset
+   * @param offset the signed offset distance (positive values are on the
+   *   left of the curve, i.e. in the direction of the <code>(-dy, dx)</code>
+   *   normal)
+   * @param approx the cubic approximating the offset of the <code>segment</code>
+   * @return <code>true</code> if the approximation is not good enough
+   */
+  public boolean shouldSplit(CubicCurve2D segment, double offset, CubicCurve2D approx);
+}
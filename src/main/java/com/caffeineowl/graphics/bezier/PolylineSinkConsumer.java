@@ -0,0 +1,127 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.QuadCurve2D;
+
+import com.caffeineowl.graphics.GeomUtils;
+import com.caffeineowl.graphics.PolylineSink;
+
+/**
+ * Lets every consumer-based flattening path ({@link BezierUtils#adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) adaptive halving},
+ * the clipped, budgeted and incremental flatteners, the conic and the 
+ * rational curves) target a {@link PolylineSink}: each segment becomes a
+ * chord, sent as a {@link PolylineSink#lineTo(double, double) lineTo}. A 
+ * {@link PolylineSink#moveTo(double, double) moveTo} precedes it only when 
+ * the segment does not start where the previous one ended (a new curve 
+ * not joining the previous one, or a gap left by the clipping), so a 
+ * chain of joined curves gives a single polyline. The ends are compared
+ * within the {@linkplain GeomUtils#getDistTolerance() distance tolerance},
+ * so that the rounding at the joints of curves computed separately does
+ * not break the polyline.
+ */
+public class PolylineSinkConsumer
+implements CubicSegmentConsumer, QuadSegmentConsumer, ConicSegmentConsumer, 
+           RationalSegmentConsumer {
+  
+  protected PolylineSink sink;
+  
+  protected boolean hasCurrentPoint;
+  protected double lastX;
+  protected double lastY;
+  protected int numSegs;
+  
+  public PolylineSinkConsumer(PolylineSink sink) {
+    this.setSink(sink);
+  }
+  
+  public PolylineSink getSink() {
+    return this.sink;
+  }
+  
+  /**
+   * Changes the sink; the next segment will start with a <code>moveTo</code>.
+   */
+  public void setSink(PolylineSink sink) {
+    if(null==sink) {
+      throw new NullPointerException();
+    }
+    this.sink=sink;
+    this.hasCurrentPoint=false;
+  }
+  
+  /**
+   * Forgets the current point (the next segment will start a new polyline)
+   * and zeroes the segment count.
+   */
+  public void reset() {
+    this.hasCurrentPoint=false;
+    this.numSegs=0;
+  }
+  
+  /** The number of segments received since the creation or the last {@link #reset()} */
+  public int getNumSegs() {
+    return this.numSegs;
+  }
+  
+  protected void chord(double x0, double y0, double x1, double y1) {
+    double tol=GeomUtils.getDistTolerance();
+    if(false==this.hasCurrentPoint 
+       || Math.abs(x0-this.lastX)>tol || Math.abs(y0-this.lastY)>tol
+    ) {
+      this.sink.moveTo(x0, y0);
+    }
+    this.sink.lineTo(x1, y1);
+    this.lastX=x1;
+    this.lastY=y1;
+    this.hasCurrentPoint=true;
+    this.numSegs++;
+  }
+  
+  @Override
+  public void processSegment(CubicCurve2D segment, double startT, double endT) {
+    this.chord(segment.getX1(), segment.getY1(), segment.getX2(), segment.getY2());
+  }
+  
+  @Override
+  public void processSegment(QuadCurve2D segment, double startT, double endT) {
+    this.chord(segment.getX1(), segment.getY1(), segment.getX2(), segment.getY2());
+  }
+  
+  @Override
+  public void processSegment(ConicCurve segment, double startT, double endT) {
+    this.chord(segment.getX1(), segment.getY1(), segment.getX2(), segment.getY2());
+  }
+  
+  @Override
+  public void processSegment(RationalBezierCurve segment, double startT, double endT) {
+    int last=segment.getDegree();
+    this.chord(segment.getX(0), segment.getY(0), segment.getX(last), segment.getY(last));
+  }
+}
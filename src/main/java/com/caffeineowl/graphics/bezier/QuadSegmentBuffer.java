@@ -0,0 +1,121 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import java.awt.geom.QuadCurve2D;
+
+/**
+ * A {@link QuadSegmentSink} that stores the received segments into 
+ * growable primitive arrays: <code>6</code> coordinates per segment
+ * (<code>x0, y0, cx, cy, x1, y1</code> - the order 
+ * <code>QuadCurve2D.setCurve(double[], int)</code> expects) and
+ * <code>2</code> parameter values (start and end <code>t</code> on the
+ * original curve). The storage only grows (doubling) and is reused after
+ * a {@link #clear()}, so, once warmed up, nothing is allocated.
+ */
+public class QuadSegmentBuffer
+implements QuadSegmentSink {
+  
+  protected double[] coords;
+  protected double[] params;
+  protected int      numSegs;
+  
+  public QuadSegmentBuffer() {
+    this(64);
+  }
+
+  /**
+   * @param capacity the initial capacity, in segments.
+   */
+  public QuadSegmentBuffer(int capacity) {
+    if(capacity<4) {
+      capacity=4;
+    }
+    this.coords=new double[6*capacity];
+    this.params=new double[2*capacity];
+  }
+  
+  @Override
+  public void processSegment(
+    double x0, double y0, double cx, double cy, double x1, double y1,
+    double startT, double endT
+  ) {
+    int pos=6*this.numSegs;
+    if(pos+6>this.coords.length) {
+      double[] newCoords=new double[this.coords.length<<1];
+      System.arraycopy(this.coords, 0, newCoords, 0, pos);
+      this.coords=newCoords;
+      double[] newParams=new double[this.params.length<<1];
+      System.arraycopy(this.params, 0, newParams, 0, 2*this.numSegs);
+      this.params=newParams;
+    }
+    double[] c=this.coords;
+    c[pos]=x0; c[pos+1]=y0;
+    c[pos+2]=cx; c[pos+3]=cy;
+    c[pos+4]=x1; c[pos+5]=y1;
+    pos=2*this.numSegs;
+    this.params[pos]=startT;
+    this.params[pos+1]=endT;
+    this.numSegs++;
+  }
+  
+  /**
+   * Forgets the stored segments, keeping the storage.
+   */
+  public void clear() {
+    this.numSegs=0;
+  }
+  
+  /** The number of stored segments */
+  public int size() {
+    return this.numSegs;
+  }
+  
+  /**
+   * The coordinates of the segments, <code>6</code> per segment. Only 
+   * the first <code>6*{@link #size()}</code> values are meaningful; the
+   * array is replaced when the buffer grows.
+   */
+  public double[] getCoords() {
+    return this.coords;
+  }
+  
+  /**
+   * The start/end parameter values of the segments, <code>2</code> per segment.
+   */
+  public double[] getParams() {
+    return this.params;
+  }
+  
+  /**
+   * Copies the i-th segment into the provided curve.
+   */
+  public void getSegment(int i, QuadCurve2D curve) {
+    curve.setCurve(this.coords, 6*i);
+  }
+}
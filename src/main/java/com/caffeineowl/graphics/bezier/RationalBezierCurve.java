@@ -0,0 +1,344 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.QuadCurve2D;
+
+import com.caffeineowl.graphics.DistUtils;
+
+/**
+ * A rational quadratic or cubic B&eacute;zier, kept as a polynomial 
+ * B&eacute;zier in homogeneous coordinates: each control point is stored
+ * as <code>(w*x, w*y, w)</code>. This is the form B&eacute;ziers take
+ * under a projective (perspective) transformation, e.g. flat artwork
+ * projected on a tilted plane: {@link #transform(double[])} maps the 
+ * homogeneous control points, and the curve stays exact.
+ * <p>Evaluation and splitting are the 
+ * {@linkplain BezierUtils#splitCurve(CubicCurve2D, double[], int, double[], int) de Casteljau}
+ * ones, done on the homogeneous coordinates, the division by the weight
+ * coming last. When all the weights have the same sign, the curve is
+ * inside the convex hull of its (projected) control points, which gives
+ * the {@linkplain #flatness() flatness} measure used for flattening in
+ * screen space.
+ */
+public class RationalBezierCurve {
+  
+  /** 2 or 3 */
+  protected int      degree;
+  /** <code>w*x, w*y, w</code> for each control point */
+  protected double[] coords;
+  
+  /**
+   * Creates a curve with all the control points at the origin and unit weights.
+   * @param degree <code>2</code> or <code>3</code>
+   */
+  public RationalBezierCurve(int degree) {
+    if(2!=degree && 3!=degree) {
+      throw new IllegalArgumentException("Unsupported degree: "+degree);
+    }
+    this.degree=degree;
+    this.coords=new double[3*(degree+1)];
+    for(int i=0; i<=degree; i++) {
+      this.coords[3*i+2]=1.0;
+    }
+  }
+  
+  /**
+   * Creates a rational quadratic from a polynomial one and the weights 
+   * of its control points.
+   * @param weights the weights of the start, control and end points
+   *   (<code>null</code> for unit weights, i.e. the curve itself)
+   */
+  public RationalBezierCurve(QuadCurve2D curve, double[] weights) {
+    this(2);
+    this.setPoint(0, curve.getX1(), curve.getY1(), null==weights ? 1.0 : weights[0]);
+    this.setPoint(1, curve.getCtrlX(), curve.getCtrlY(), null==weights ? 1.0 : weights[1]);
+    this.setPoint(2, curve.getX2(), curve.getY2(), null==weights ? 1.0 : weights[2]);
+  }
+  
+  /**
+   * Creates a rational cubic from a polynomial one and the weights 
+   * of its control points.
+   * @param weights the weights of the control points, in order 
+   *   (<code>null</code> for unit weights, i.e. the curve itself)
+   */
+  public RationalBezierCurve(CubicCurve2D curve, double[] weights) {
+    this(3);
+    this.setPoint(0, curve.getX1(), curve.getY1(), null==weights ? 1.0 : weights[0]);
+    this.setPoint(1, curve.getCtrlX1(), curve.getCtrlY1(), null==weights ? 1.0 : weights[1]);
+    this.setPoint(2, curve.getCtrlX2(), curve.getCtrlY2(), null==weights ? 1.0 : weights[2]);
+    this.setPoint(3, curve.getX2(), curve.getY2(), null==weights ? 1.0 : weights[3]);
+  }
+  
+  public int getDegree() {
+    return this.degree;
+  }
+  
+  /**
+   * Sets a control point, from its (projected) coordinates and weight.
+   */
+  public void setPoint(int index, double x, double y, double weight) {
+    int pos=3*index;
+    this.coords[pos]=x*weight;
+    this.coords[pos+1]=y*weight;
+    this.coords[pos+2]=weight;
+  }
+  
+  /**
+   * Sets all the control points, from their homogeneous coordinates
+   * (<code>w*x, w*y, w</code> each).
+   */
+  public void setHomogeneous(double[] homogeneous, int offset) {
+    System.arraycopy(homogeneous, offset, this.coords, 0, this.coords.length);
+  }
+  
+  /** The projected <code>x</code> of a control point */
+  public double getX(int index) {
+    return this.coords[3*index]/this.coords[3*index+2];
+  }
+  
+  /** The projected <code>y</code> of a control point */
+  public double getY(int index) {
+    return this.coords[3*index+1]/this.coords[3*index+2];
+  }
+  
+  public double getWeight(int index) {
+    return this.coords[3*index+2];
+  }
+  
+  /**
+   * Applies a projective transformation to the curve (in place).
+   * @param matrix the <code>3x3</code> matrix, row-major, mapping 
+   *   <code>(x, y, 1)</code> to the homogeneous <code>(X, Y, W)</code>
+   *   (an affine one has <code>0, 0, 1</code> as the last row)
+   * @return this curve
+   */
+  public RationalBezierCurve transform(double[] matrix) {
+    double[] c=this.coords;
+    for(int pos=0; pos<c.length; pos+=3) {
+      double x=c[pos], y=c[pos+1], w=c[pos+2];
+      c[pos]=matrix[0]*x+matrix[1]*y+matrix[2]*w;
+      c[pos+1]=matrix[3]*x+matrix[4]*y+matrix[5]*w;
+      c[pos+2]=matrix[6]*x+matrix[7]*y+matrix[8]*w;
+    }
+    return this;
+  }
+  
+  /**
+   * Computes a point on the curve.
+   * @param pointHere where to store the point; if <code>null</code>, a 
+   *   new <code>Point2D.Double</code> is allocated
+   * @return the point
+   */
+  public Point2D pointAt(double t, Point2D pointHere) {
+    double[] c=this.coords;
+    double mt=1.0-t;
+    double x, y, w;
+    if(2==this.degree) {
+      double b0=mt*mt, b1=2*mt*t, b2=t*t;
+      x=b0*c[0]+b1*c[3]+b2*c[6];
+      y=b0*c[1]+b1*c[4]+b2*c[7];
+      w=b0*c[2]+b1*c[5]+b2*c[8];
+    }
+    else {
+      double b0=mt*mt*mt, b1=3*mt*mt*t, b2=3*mt*t*t, b3=t*t*t;
+      x=b0*c[0]+b1*c[3]+b2*c[6]+b3*c[9];
+      y=b0*c[1]+b1*c[4]+b2*c[7]+b3*c[10];
+      w=b0*c[2]+b1*c[5]+b2*c[8]+b3*c[11];
+    }
+    if(null==pointHere) {
+      pointHere=new Point2D.Double();
+    }
+    pointHere.setLocation(x/w, y/w);
+    return pointHere;
+  }
+  
+  /**
+   * Extracts the part of the curve between two parameter values, by
+   * de Casteljau subdivision on the homogeneous coordinates.
+   * @param segmentHere where to store the part; must have the same degree
+   */
+  public void extractSegment(double t0, double t1, RationalBezierCurve segmentHere) {
+    if(segmentHere.degree!=this.degree) {
+      throw new IllegalArgumentException("Degree mismatch");
+    }
+    double[] c=this.coords, r=segmentHere.coords;
+    double[] xy=new double[8], ww=new double[8];
+    if(2==this.degree) {
+      BezierUtils.extractSegment(c[0], c[1], c[3], c[4], c[6], c[7], t0, t1, xy, 0);
+      BezierUtils.extractSegment(c[2], 0.0, c[5], 0.0, c[8], 0.0, t0, t1, ww, 0);
+    }
+    else {
+      BezierUtils.extractSegment(
+        c[0], c[1], c[3], c[4], c[6], c[7], c[9], c[10], t0, t1, xy, 0
+      );
+      BezierUtils.extractSegment(
+        c[2], 0.0, c[5], 0.0, c[8], 0.0, c[11], 0.0, t0, t1, ww, 0
+      );
+    }
+    for(int i=0; i<=this.degree; i++) {
+      r[3*i]=xy[2*i];
+      r[3*i+1]=xy[2*i+1];
+      r[3*i+2]=ww[2*i];
+    }
+  }
+  
+  /**
+   * Splits the curve at a parameter value.
+   * @param first where to store the part before <code>t</code>
+   * @param second where to store the part after <code>t</code>
+   */
+  public void split(double t, RationalBezierCurve first, RationalBezierCurve second) {
+    this.extractSegment(0.0, t, first);
+    this.extractSegment(t, 1.0, second);
+  }
+  
+  /**
+   * Splits the curve in halves (at <code>t=0.5</code>).
+   */
+  public void halfSplit(RationalBezierCurve first, RationalBezierCurve second) {
+    this.split(0.5, first, second);
+  }
+  
+  /**
+   * Tells if all the weights are strictly positive, or all strictly 
+   * negative (in which case the curve does not cross the line at infinity,
+   * and is contained in the convex hull of its projected control points).
+   */
+  public boolean hasConsistentWeights() {
+    double[] c=this.coords;
+    boolean positive=c[2]>0, negative=c[2]<0;
+    for(int pos=5; pos<c.length; pos+=3) {
+      positive&=c[pos]>0;
+      negative&=c[pos]<0;
+    }
+    return positive || negative;
+  }
+  
+  /**
+   * The maximum distance between the (projected) inner control points and
+   * the chord; as the curve is inside their convex hull, this bounds the
+   * distance between the curve and its chord. If the weights are not
+   * {@linkplain #hasConsistentWeights() consistent}, no such bound exists
+   * and <code>Double.POSITIVE_INFINITY</code> is returned.
+   */
+  public double flatness() {
+    if(false==this.hasConsistentWeights()) {
+      return Double.POSITIVE_INFINITY;
+    }
+    int last=this.degree;
+    double x0=this.getX(0), y0=this.getY(0);
+    double x1=this.getX(last), y1=this.getY(last);
+    double toRet=0.0;
+    for(int i=1; i<last; i++) {
+      toRet=Math.max(
+        toRet, DistUtils.pointToSegSqEucDist(this.getX(i), this.getY(i), x0, y0, x1, y1)
+      );
+    }
+    return Math.sqrt(toRet);
+  }
+  
+  static private int halving(
+    RationalBezierCurve curve, double tMin, double tMax, int depthLeft,
+    double tolerance, RationalSegmentConsumer segConsumer
+  ) {
+    if(depthLeft>0 && !(curve.flatness()<=tolerance)) {
+      RationalBezierCurve firstHalf=new RationalBezierCurve(curve.degree);
+      RationalBezierCurve secondHalf=new RationalBezierCurve(curve.degree);
+      double tMid=(tMin+tMax)/2.0;
+      curve.halfSplit(firstHalf, secondHalf);
+      return RationalBezierCurve.halving(
+          firstHalf, tMin, tMid, depthLeft-1, tolerance, segConsumer
+        )
+        +RationalBezierCurve.halving(
+          secondHalf, tMid, tMax, depthLeft-1, tolerance, segConsumer
+        );
+    }
+    if(null!=segConsumer) {
+      segConsumer.processSegment(curve, tMin, tMax);
+    }
+    return 1;
+  }
+  
+  /**
+   * Flattens a rational curve by adaptive halving: a piece is split until
+   * its {@linkplain #flatness() flatness}, measured on the projected 
+   * control points, is within the tolerance. The pieces whose weights change
+   * sign (near the line at infinity of a perspective) are split too, down
+   * to {@link BezierUtils#maxHalvingDepth} levels, after which they are
+   * emitted as they are (a curve that really crosses the line at infinity
+   * has no finite flattening).
+   * @param tolerance the maximum distance between the curve and the
+   *   chords of the emitted segments, in the projected coordinates
+   * @return the number of emitted segments
+   */
+  static public int adaptiveHalving(
+    RationalBezierCurve curve, double tolerance, RationalSegmentConsumer segConsumer
+  ) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    if(!(tolerance>=BezierUtils.minPrecision)) {
+      tolerance=BezierUtils.minPrecision;
+    }
+    return RationalBezierCurve.halving(
+      curve, 0.0, 1.0, BezierUtils.maxHalvingDepth, tolerance, segConsumer
+    );
+  }
+  
+  /**
+   * Flattens a cubic B&eacute;zier under a projective transformation, with
+   * the tolerance applied in screen space: the curve is made a rational
+   * one, projected exactly by its control points, and flattened there, so
+   * the parts foreshortened by the perspective are not over-sampled to
+   * keep the near parts within the tolerance.
+   * @param matrix the <code>3x3</code> projection, row-major
+   * @see #transform(double[])
+   * @see #adaptiveHalving(RationalBezierCurve, double, RationalSegmentConsumer)
+   */
+  static public int adaptiveHalving(
+    CubicCurve2D curve, double[] matrix, double tolerance, RationalSegmentConsumer segConsumer
+  ) {
+    RationalBezierCurve projected=new RationalBezierCurve(curve, null).transform(matrix);
+    return RationalBezierCurve.adaptiveHalving(projected, tolerance, segConsumer);
+  }
+  
+  /**
+   * Flattens a quadratic B&eacute;zier under a projective transformation,
+   * with the tolerance applied in screen space.
+   * @see #adaptiveHalving(CubicCurve2D, double[], double, RationalSegmentConsumer)
+   */
+  static public int adaptiveHalving(
+    QuadCurve2D curve, double[] matrix, double tolerance, RationalSegmentConsumer segConsumer
+  ) {
+    RationalBezierCurve projected=new RationalBezierCurve(curve, null).transform(matrix);
+    return RationalBezierCurve.adaptiveHalving(projected, tolerance, segConsumer);
+  }
+}
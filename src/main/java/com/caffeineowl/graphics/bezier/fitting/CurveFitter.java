@@ -0,0 +1,595 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.fitting;
+
+import java.awt.Shape;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.QuadCurve2D;
+
+import com.caffeineowl.graphics.DistUtils;
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.QuadSegmentConsumer;
+
+/**
+ * A streaming path simplifier: merges runs of adjacent segments (lines,
+ * quads or cubics, in any mix) into single cubics, whenever a cubic fits
+ * the run within a tolerance.
+ * <p>The segments are fed in one at a time (path-like, with 
+ * {@link #moveTo(double, double)}, {@link #lineTo(double, double)}, ...;
+ * or as the output of another stage, as a {@link CubicSegmentConsumer}
+ * or {@link QuadSegmentConsumer}) and the simplified path is written into
+ * a <code>Path2D</code> as soon as a run can no longer be extended. Only 
+ * the current run is kept in memory, as a sequence of points sampled on
+ * its segments, bounded by a maximum number of samples.
+ * <p>The fit of a run is the least-squares cubic through the samples 
+ * (with chord-length parameterization, refined by Newton iterations), 
+ * keeping the end points and the end tangent directions of the run, so
+ * the smooth joins of the input stay smooth. A run is never extended over
+ * a corner (a turn sharper than the {@linkplain #CurveFitter(double, double, int) corner
+ * angle}). The fit error is the two-sided distance between the samples' 
+ * polyline and the fit's polyline, measured with 
+ * {@link DistUtils#pointToSegSqEucDist(double, double, double, double, double, double)}.
+ * <p>A run made of a single segment is written out unchanged, a run of 
+ * collinear segments as a single line. An instance is not thread safe.
+ */
+public class CurveFitter
+implements CubicSegmentConsumer, QuadSegmentConsumer {
+  
+  static protected final int SEG_LINE=1;
+  static protected final int SEG_QUAD=2;
+  static protected final int SEG_CUBIC=3;
+  
+  /** Samples taken on each input quad/cubic (lines contribute their end only) */
+  static protected final int quadSamples=6;
+  static protected final int cubicSamples=8;
+  /** The number of chords used for measuring the distance to a fit */
+  static protected final int fitChords=32;
+  /** Fit, reparameterize and fit again at most this many times */
+  static protected final int maxIterations=4;
+
+  protected final double tolerance;
+  protected final double sqTolerance;
+  protected final double cosCorner;
+  protected final int    maxSamples;
+  
+  protected Path2D output;
+  
+  /** The current point and the start of the current sub-path */
+  protected double curX, curY, startX, startY;
+  protected boolean hasCurrent=false;
+  
+  /** Number of input segments in the current run, 0 if no run */
+  protected int runSegs=0;
+  /** The first segment of the run, written unchanged if the run isn't extended */
+  protected int firstType;
+  protected final double[] firstCoords=new double[6];
+  /** Unit tangents at the start and the end of the run, in the direction of travel */
+  protected double startTx, startTy, endTx, endTy;
+  /** The accepted fit of the run (valid if more than one segment) */
+  protected final double[] fit=new double[8];
+  
+  /** The samples of the run (the run's start included) and their cumulated chord lengths */
+  protected double[] sampleX, sampleY, chordLen;
+  protected int numSamples=0;
+  
+  /** Scratch storage */
+  private final double[] trial=new double[8];
+  private final double[] fitPts=new double[2*(CurveFitter.fitChords+1)];
+  private double[] params;
+  private final double[] pieceCoords=new double[6];
+  
+  /**
+   * A fitter with a <code>30</code> degrees corner angle and runs of at
+   * most <code>512</code> samples.
+   * @param tolerance the maximum accepted distance between a run and its fit
+   */
+  public CurveFitter(double tolerance) {
+    this(tolerance, Math.PI/6, 512);
+  }
+  
+  /**
+   * @param tolerance the maximum accepted distance between a run and its fit
+   * @param cornerAngle the turn (in radians) between consecutive segments 
+   *   above which the join is a corner, which ends the run.
+   * @param maxSamples the maximum number of samples of a run (bounds both
+   *   the memory and the cost of a fit); at least <code>2*{@value #cubicSamples}</code>.
+   */
+  public CurveFitter(double tolerance, double cornerAngle, int maxSamples) {
+    if(tolerance<0) {
+      tolerance=-tolerance;
+    }
+    this.tolerance=tolerance;
+    this.sqTolerance=tolerance*tolerance;
+    this.cosCorner=Math.cos(Math.max(0.0, Math.min(Math.PI, cornerAngle)));
+    this.maxSamples=Math.max(2*CurveFitter.cubicSamples+1, maxSamples);
+    int cap=Math.min(64, this.maxSamples);
+    this.sampleX=new double[cap];
+    this.sampleY=new double[cap];
+    this.chordLen=new double[cap];
+    this.params=new double[cap];
+  }
+  
+  /**
+   * Sets the path where the simplified path is written (appended);
+   * with a <code>null</code> output, the segments are consumed but nothing
+   * is written.
+   */
+  public void setOutput(Path2D output) {
+    this.output=output;
+  }
+  
+  public Path2D getOutput() {
+    return this.output;
+  }
+  
+  /**
+   * Simplifies a whole shape, returning the simplified path (with the same
+   * winding rule). The current {@linkplain #setOutput(Path2D) output} is 
+   * restored afterwards.
+   */
+  public Path2D.Double simplify(Shape shape) {
+    PathIterator it=shape.getPathIterator(null);
+    Path2D.Double toRet=new Path2D.Double(it.getWindingRule());
+    Path2D prevOutput=this.output;
+    this.output=toRet;
+    double[] c=new double[6];
+    for(; !it.isDone(); it.next()) {
+      switch(it.currentSegment(c)) {
+        case PathIterator.SEG_MOVETO:
+          this.moveTo(c[0], c[1]);
+          break;
+        case PathIterator.SEG_LINETO:
+          this.lineTo(c[0], c[1]);
+          break;
+        case PathIterator.SEG_QUADTO:
+          this.quadTo(c[0], c[1], c[2], c[3]);
+          break;
+        case PathIterator.SEG_CUBICTO:
+          this.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+          break;
+        case PathIterator.SEG_CLOSE:
+          this.closePath();
+          break;
+      }
+    }
+    this.finish();
+    this.output=prevOutput;
+    return toRet;
+  }
+  
+  /**
+   * Starts a new sub-path (the current run, if any, is written out).
+   */
+  public void moveTo(double x, double y) {
+    this.flushRun();
+    if(null!=this.output) {
+      this.output.moveTo(x, y);
+    }
+    this.curX=this.startX=x;
+    this.curY=this.startY=y;
+    this.hasCurrent=true;
+  }
+  
+  /**
+   * Continues the sub-path with a straight segment. Zero-length segments
+   * are ignored.
+   */
+  public void lineTo(double x, double y) {
+    if(false==this.hasCurrent) {
+      this.moveTo(x, y);
+      return;
+    }
+    double dx=x-this.curX, dy=y-this.curY;
+    double len=Math.hypot(dx, dy);
+    if(len>0) {
+      double[] c=this.pieceCoords;
+      c[0]=x; c[1]=y;
+      this.addSegment(CurveFitter.SEG_LINE, c, dx/len, dy/len, dx/len, dy/len);
+    }
+  }
+  
+  /**
+   * Continues the sub-path with a quadratic segment. Degenerate (single
+   * point) segments are ignored.
+   */
+  public void quadTo(double cx, double cy, double x, double y) {
+    if(false==this.hasCurrent) {
+      this.moveTo(this.curX, this.curY);
+    }
+    double x0=this.curX, y0=this.curY;
+    double sx=cx-x0, sy=cy-y0;
+    if(0==sx && 0==sy) {
+      sx=x-x0; sy=y-y0;
+    }
+    double ex=x-cx, ey=y-cy;
+    if(0==ex && 0==ey) {
+      ex=x-x0; ey=y-y0;
+    }
+    double sl=Math.hypot(sx, sy), el=Math.hypot(ex, ey);
+    if(sl>0 && el>0) {
+      double[] c=this.pieceCoords;
+      c[0]=cx; c[1]=cy; c[2]=x; c[3]=y;
+      this.addSegment(CurveFitter.SEG_QUAD, c, sx/sl, sy/sl, ex/el, ey/el);
+    }
+  }
+  
+  /**
+   * Continues the sub-path with a cubic segment. Degenerate (single
+   * point) segments are ignored.
+   */
+  public void curveTo(double cx0, double cy0, double cx1, double cy1, double x, double y) {
+    if(false==this.hasCurrent) {
+      this.moveTo(this.curX, this.curY);
+    }
+    double x0=this.curX, y0=this.curY;
+    double sx=cx0-x0, sy=cy0-y0;
+    if(0==sx && 0==sy) {
+      sx=cx1-x0; sy=cy1-y0;
+      if(0==sx && 0==sy) {
+        sx=x-x0; sy=y-y0;
+      }
+    }
+    double ex=x-cx1, ey=y-cy1;
+    if(0==ex && 0==ey) {
+      ex=x-cx0; ey=y-cy0;
+      if(0==ex && 0==ey) {
+        ex=x-x0; ey=y-y0;
+      }
+    }
+    double sl=Math.hypot(sx, sy), el=Math.hypot(ex, ey);
+    if(sl>0 && el>0) {
+      double[] c=this.pieceCoords;
+      c[0]=cx0; c[1]=cy0; c[2]=cx1; c[3]=cy1; c[4]=x; c[5]=y;
+      this.addSegment(CurveFitter.SEG_CUBIC, c, sx/sl, sy/sl, ex/el, ey/el);
+    }
+  }
+  
+  /**
+   * Closes the current sub-path (the closing segment, if any, is a corner-to-corner
+   * straight line and is not merged).
+   */
+  public void closePath() {
+    if(this.hasCurrent) {
+      this.flushRun();
+      if(null!=this.output) {
+        this.output.closePath();
+      }
+      this.curX=this.startX;
+      this.curY=this.startY;
+    }
+  }
+  
+  /**
+   * Writes out the current run. Must be called after the last segment
+   * of a path was fed in.
+   */
+  public void finish() {
+    this.flushRun();
+    this.hasCurrent=false;
+  }
+  
+  /**
+   * Receives a cubic segment; it continues the current sub-path if it 
+   * starts where the sub-path ends, otherwise it starts a new sub-path.
+   */
+  @Override
+  public void processSegment(CubicCurve2D segment, double startT, double endT) {
+    this.continueFrom(segment.getX1(), segment.getY1());
+    this.curveTo(
+      segment.getCtrlX1(), segment.getCtrlY1(), segment.getCtrlX2(), segment.getCtrlY2(),
+      segment.getX2(), segment.getY2()
+    );
+  }
+
+  /**
+   * Receives a quadratic segment.
+   * @see #processSegment(CubicCurve2D, double, double)
+   */
+  @Override
+  public void processSegment(QuadCurve2D segment, double startT, double endT) {
+    this.continueFrom(segment.getX1(), segment.getY1());
+    this.quadTo(segment.getCtrlX(), segment.getCtrlY(), segment.getX2(), segment.getY2());
+  }
+  
+  // ------------------------------------------------------------------
+  // internals
+  
+  private void continueFrom(double x0, double y0) {
+    if(false==this.hasCurrent || this.curX!=x0 || this.curY!=y0) {
+      this.moveTo(x0, y0);
+    }
+  }
+  
+  /**
+   * Tries to extend the current run with the segment starting at the
+   * current point; if not possible, writes out the run and starts a new one.
+   */
+  private void addSegment(
+    int type, double[] c, double tsx, double tsy, double tex, double tey
+  ) {
+    int n=(CurveFitter.SEG_LINE==type) ? 1 
+      : (CurveFitter.SEG_QUAD==type ? CurveFitter.quadSamples : CurveFitter.cubicSamples);
+    if(this.runSegs>0) {
+      boolean corner=(this.endTx*tsx+this.endTy*tsy)<this.cosCorner;
+      if(false==corner && this.numSamples+n<=this.maxSamples) {
+        int mark=this.numSamples;
+        this.appendSamples(type, c, n);
+        if(this.fitRun(tex, tey)) {
+          this.runSegs++;
+          this.endTx=tex; this.endTy=tey;
+          this.setCurrent(type, c);
+          return;
+        }
+        this.numSamples=mark;
+      }
+      this.flushRun();
+    }
+    this.runSegs=1;
+    this.firstType=type;
+    System.arraycopy(c, 0, this.firstCoords, 0, 2*type);
+    this.startTx=tsx; this.startTy=tsy;
+    this.endTx=tex; this.endTy=tey;
+    this.numSamples=0;
+    this.ensureSamples(n+1);
+    this.sampleX[0]=this.curX;
+    this.sampleY[0]=this.curY;
+    this.chordLen[0]=0.0;
+    this.numSamples=1;
+    this.appendSamples(type, c, n);
+    this.setCurrent(type, c);
+  }
+  
+  private void setCurrent(int type, double[] c) {
+    this.curX=c[2*type-2];
+    this.curY=c[2*type-1];
+  }
+  
+  private void flushRun() {
+    if(this.runSegs>0 && null!=this.output) {
+      if(1==this.runSegs) {
+        double[] c=this.firstCoords;
+        switch(this.firstType) {
+          case CurveFitter.SEG_LINE:
+            this.output.lineTo(c[0], c[1]);
+            break;
+          case CurveFitter.SEG_QUAD:
+            this.output.quadTo(c[0], c[1], c[2], c[3]);
+            break;
+          default:
+            this.output.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+            break;
+        }
+      }
+      else {
+        double[] f=this.fit;
+        // a run of collinear segments is written as a line
+        double sqEps=1.0e-6*this.sqTolerance;
+        if(
+          DistUtils.pointToSegSqEucDist(f[2], f[3], f[0], f[1], f[6], f[7])<=sqEps
+          && DistUtils.pointToSegSqEucDist(f[4], f[5], f[0], f[1], f[6], f[7])<=sqEps
+        ) {
+          this.output.lineTo(f[6], f[7]);
+        }
+        else {
+          this.output.curveTo(f[2], f[3], f[4], f[5], f[6], f[7]);
+        }
+      }
+    }
+    this.runSegs=0;
+    this.numSamples=0;
+  }
+  
+  private void ensureSamples(int needed) {
+    if(needed>this.sampleX.length) {
+      int cap=Math.max(needed, this.sampleX.length<<1);
+      double[] nx=new double[cap], ny=new double[cap], nl=new double[cap];
+      System.arraycopy(this.sampleX, 0, nx, 0, this.numSamples);
+      System.arraycopy(this.sampleY, 0, ny, 0, this.numSamples);
+      System.arraycopy(this.chordLen, 0, nl, 0, this.numSamples);
+      this.sampleX=nx;
+      this.sampleY=ny;
+      this.chordLen=nl;
+      this.params=new double[cap];
+    }
+  }
+  
+  /**
+   * Appends <code>n</code> samples, uniformly spaced in the parameter, 
+   * of the segment starting at the current point (the start itself excluded).
+   */
+  private void appendSamples(int type, double[] c, int n) {
+    this.ensureSamples(this.numSamples+n);
+    double x0=this.curX, y0=this.curY;
+    int k=this.numSamples;
+    for(int i=1; i<=n; i++) {
+      double x, y;
+      if(i==n) {
+        x=c[2*type-2];
+        y=c[2*type-1];
+      }
+      else {
+        double t=((double)i)/n, mt=1-t;
+        if(CurveFitter.SEG_QUAD==type) {
+          double b0=mt*mt, b1=2*mt*t, b2=t*t;
+          x=b0*x0+b1*c[0]+b2*c[2];
+          y=b0*y0+b1*c[1]+b2*c[3];
+        }
+        else {
+          double b0=mt*mt*mt, b1=3*mt*mt*t, b2=3*mt*t*t, b3=t*t*t;
+          x=b0*x0+b1*c[0]+b2*c[2]+b3*c[4];
+          y=b0*y0+b1*c[1]+b2*c[3]+b3*c[5];
+        }
+      }
+      this.sampleX[k]=x;
+      this.sampleY[k]=y;
+      this.chordLen[k]=this.chordLen[k-1]+Math.hypot(x-this.sampleX[k-1], y-this.sampleY[k-1]);
+      k++;
+    }
+    this.numSamples=k;
+  }
+  
+  /**
+   * Fits a cubic to the current samples, with the run's start tangent 
+   * and the given end tangent. On success, the fit is stored in {@link #fit}.
+   */
+  private boolean fitRun(double tex, double tey) {
+    int n=this.numSamples;
+    double total=this.chordLen[n-1];
+    if(total<=0) {
+      return false;
+    }
+    double[] u=this.params;
+    for(int i=0; i<n; i++) {
+      u[i]=this.chordLen[i]/total;
+    }
+    u[n-1]=1.0;
+    for(int iter=0; iter<CurveFitter.maxIterations; iter++) {
+      this.solveArms(u, n, tex, tey, this.trial);
+      if(this.withinTolerance(this.trial)) {
+        System.arraycopy(this.trial, 0, this.fit, 0, 8);
+        return true;
+      }
+      this.reparameterize(u, n, this.trial);
+    }
+    return false;
+  }
+  
+  /**
+   * The least-squares lengths of the tangent arms (the classic 
+   * "fit with given end tangents" normal equations), falling back to a
+   * third of the chord when the system is degenerate or the solution
+   * points backwards.
+   */
+  private void solveArms(double[] u, int n, double tex, double tey, double[] resultHere) {
+    double[] px=this.sampleX, py=this.sampleY;
+    double p0x=px[0], p0y=py[0], p3x=px[n-1], p3y=py[n-1];
+    double t1x=this.startTx, t1y=this.startTy;
+    double t2x=-tex, t2y=-tey;
+    double c00=0, c01=0, c11=0, x0=0, x1=0;
+    for(int i=0; i<n; i++) {
+      double t=u[i], mt=1-t;
+      double b0=mt*mt*mt, b1=3*mt*mt*t, b2=3*mt*t*t, b3=t*t*t;
+      double a1x=t1x*b1, a1y=t1y*b1;
+      double a2x=t2x*b2, a2y=t2y*b2;
+      double dx=px[i]-(p0x*(b0+b1)+p3x*(b2+b3));
+      double dy=py[i]-(p0y*(b0+b1)+p3y*(b2+b3));
+      c00+=a1x*a1x+a1y*a1y;
+      c01+=a1x*a2x+a1y*a2y;
+      c11+=a2x*a2x+a2y*a2y;
+      x0+=dx*a1x+dy*a1y;
+      x1+=dx*a2x+dy*a2y;
+    }
+    double det=c00*c11-c01*c01;
+    double chord=Math.hypot(p3x-p0x, p3y-p0y);
+    double alpha1=0, alpha2=0;
+    if(Math.abs(det)>1.0e-12*c00*c11) {
+      alpha1=(x0*c11-x1*c01)/det;
+      alpha2=(c00*x1-c01*x0)/det;
+    }
+    double minArm=1.0e-6*chord;
+    if(!(alpha1>minArm) || !(alpha2>minArm)) {
+      alpha1=alpha2=chord/3;
+    }
+    resultHere[0]=p0x; resultHere[1]=p0y;
+    resultHere[2]=p0x+alpha1*t1x; resultHere[3]=p0y+alpha1*t1y;
+    resultHere[4]=p3x+alpha2*t2x; resultHere[5]=p3y+alpha2*t2y;
+    resultHere[6]=p3x; resultHere[7]=p3y;
+  }
+  
+  /**
+   * One Newton step, for each sample, towards the parameter of the
+   * closest point on the cubic.
+   */
+  private void reparameterize(double[] u, int n, double[] c) {
+    for(int i=1; i<n-1; i++) {
+      double t=u[i], mt=1-t;
+      double qx=mt*mt*mt*c[0]+3*mt*mt*t*c[2]+3*mt*t*t*c[4]+t*t*t*c[6];
+      double qy=mt*mt*mt*c[1]+3*mt*mt*t*c[3]+3*mt*t*t*c[5]+t*t*t*c[7];
+      double d1x=3*(mt*mt*(c[2]-c[0])+2*mt*t*(c[4]-c[2])+t*t*(c[6]-c[4]));
+      double d1y=3*(mt*mt*(c[3]-c[1])+2*mt*t*(c[5]-c[3])+t*t*(c[7]-c[5]));
+      double d2x=6*(mt*(c[4]-2*c[2]+c[0])+t*(c[6]-2*c[4]+c[2]));
+      double d2y=6*(mt*(c[5]-2*c[3]+c[1])+t*(c[7]-2*c[5]+c[3]));
+      double ex=qx-this.sampleX[i], ey=qy-this.sampleY[i];
+      double num=ex*d1x+ey*d1y;
+      double den=d1x*d1x+d1y*d1y+ex*d2x+ey*d2y;
+      if(den!=0) {
+        t-=num/den;
+        u[i]=t<0 ? 0 : (t>1 ? 1 : t);
+      }
+    }
+  }
+  
+  /**
+   * The two-sided distance check: every sample must be within tolerance
+   * from the fit's polyline, and every vertex of the fit's polyline within
+   * tolerance from the samples' polyline.
+   */
+  private boolean withinTolerance(double[] c) {
+    int m=CurveFitter.fitChords;
+    double[] fp=this.fitPts;
+    for(int j=0; j<=m; j++) {
+      double t=((double)j)/m, mt=1-t;
+      double b0=mt*mt*mt, b1=3*mt*mt*t, b2=3*mt*t*t, b3=t*t*t;
+      fp[2*j]=b0*c[0]+b1*c[2]+b2*c[4]+b3*c[6];
+      fp[2*j+1]=b0*c[1]+b1*c[3]+b2*c[5]+b3*c[7];
+    }
+    double[] px=this.sampleX, py=this.sampleY;
+    int n=this.numSamples;
+    for(int i=1; i<n-1; i++) {
+      double best=Double.POSITIVE_INFINITY;
+      for(int j=0; j<m && best>this.sqTolerance; j++) {
+        double d=DistUtils.pointToSegSqEucDist(
+          px[i], py[i], fp[2*j], fp[2*j+1], fp[2*j+2], fp[2*j+3]
+        );
+        if(d<best) {
+          best=d;
+        }
+      }
+      if(best>this.sqTolerance) {
+        return false;
+      }
+    }
+    for(int j=1; j<m; j++) {
+      double best=Double.POSITIVE_INFINITY;
+      for(int i=0; i<n-1 && best>this.sqTolerance; i++) {
+        double d=DistUtils.pointToSegSqEucDist(
+          fp[2*j], fp[2*j+1], px[i], py[i], px[i+1], py[i+1]
+        );
+        if(d<best) {
+          best=d;
+        }
+      }
+      if(best>this.sqTolerance) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -45,6 +45,7 @@ import java.awt.geom.CubicCurve2D;
 import java.awt.geom.QuadCurve2D;
 
 import com.caffeineowl.graphics.DistUtils;
+import com.caffeineowl.graphics.bezier.ConicCurve;
 import com.caffeineowl.graphics.bezier.CubicFlatnessAlgorithm;
 import com.caffeineowl.graphics.bezier.QuadFlatnessAlgorithm;
 
@@ -120,4 +121,31 @@ public class ConvexHullFlatnessAlgo
     return sqDist1>sqDist2 ? sqDist1 : sqDist2;
   }
 
+  /**
+   * Returns the square root of the {@link #getSquaredFlatness(ConicCurve)}.
+   */
+  public final double getFlatness(ConicCurve curve) {
+    return Math.sqrt(this.getSquaredFlatness(curve));
+  }
+
+  /**
+   * Returns the squared distance between the control point of the conic
+   * and the segment defined by its anchor points, as for a quad: the same
+   * value as for the <code>QuadCurve2D</code> with the same points when
+   * <code>w&gt;=1</code>. The arc being closer to its chord for
+   * <code>w&lt;1</code> (the largest distance, at <code>t=1/2</code>, is
+   * <code>w/(1+w)</code> times the one of the control point), the distance
+   * is then scaled by <code>2w/(1+w)</code>, which keeps the same 
+   * ratio to the exact deviation as at <code>w=1</code>.
+   */
+  public final double getSquaredFlatness(ConicCurve curve) {
+    double w=curve.getWeight();
+    double scale=(w<1.0) ? 2.0*w/(1.0+w) : 1.0;
+    return scale*scale*DistUtils.pointToSegSqEucDist(
+      curve.getCtrlX(), curve.getCtrlY(), 
+      curve.getX1(), curve.getY1(), 
+      curve.getX2(), curve.getY2()
+    );
+  }
+
 }
@@ -30,6 +30,7 @@ package com.caffeineowl.graphics.bezier.flatnessalgos;
 import java.awt.geom.CubicCurve2D;
 import java.awt.geom.QuadCurve2D;
 
+import com.caffeineowl.graphics.bezier.ConicCurve;
 import com.caffeineowl.graphics.bezier.CubicSubdivisionCriterion;
 import com.caffeineowl.graphics.bezier.QuadSubdivisionCriterion;
 
@@ -103,4 +104,21 @@ implements QuadSubdivisionCriterion, CubicSubdivisionCriterion {
     double defect=this.getSquaredFlatness(curve);
     return defect>this.sqTol;
   }
+
+  /**
+   * Returns <code>true</code> whenever the 
+   * {@link ConvexHullFlatnessAlgo#getSquaredFlatness(ConicCurve) flatness}
+   * of the conic is greater than the provided tolerance.
+   */
+  final public boolean shouldSplit(ConicCurve curve) {
+    double defect=this.getSquaredFlatness(curve);
+    return defect>this.sqTol;
+  }
+
+  /**
+   * The tolerance this instance was initialised with.
+   */
+  public double getTolerance() {
+    return Math.sqrt(this.sqTol);
+  }
 }
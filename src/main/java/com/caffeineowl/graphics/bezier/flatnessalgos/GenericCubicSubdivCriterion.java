@@ -122,4 +122,10 @@ implements CubicSubdivisionCriterion {
     return this.flatnessAlgo.getFlatness(curve)>this.tol;
   }
 
+  /**
+   * The tolerance this instance was initialised with.
+   */
+  public double getTolerance() {
+    return this.tol;
+  }
 }
@@ -121,4 +121,10 @@ implements QuadSubdivisionCriterion {
     return this.flatnessAlgo.getFlatness(curve)>this.tol;
   }
 
+  /**
+   * The tolerance this instance was initialised with.
+   */
+  public double getTolerance() {
+    return this.tol;
+  }
 }
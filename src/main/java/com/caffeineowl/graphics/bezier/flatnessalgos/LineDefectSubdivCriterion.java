@@ -202,4 +202,10 @@ implements CubicSubdivisionCriterion, QuadSubdivisionCriterion {
     return toRet;
   }
 
+  /**
+   * The tolerance this instance was initialised with.
+   */
+  public double getTolerance() {
+    return this.tol;
+  }
 }
@@ -68,4 +68,10 @@ implements CubicSubdivisionCriterion, QuadSubdivisionCriterion {
     return defect>this.sqTol;
   }
 
+  /**
+   * The tolerance this instance was initialised with.
+   */
+  public double getTolerance() {
+    return Math.sqrt(this.sqTol);
+  }
 }
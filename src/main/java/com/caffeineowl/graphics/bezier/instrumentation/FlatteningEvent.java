@@ -0,0 +1,66 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JFR event recorded around a single curve operation (flattening or
+ * degree reduction). Only referred from {@link JfrEventSupport}, so that
+ * the library still loads on runtimes without <code>jdk.jfr</code>.
+ */
+@Name("com.caffeineowl.graphics.CurveOperation")
+@Label("Curve Operation")
+@Description("Adaptive halving or degree reduction of a single Bezier curve")
+@Category({"Bezier Utils"})
+@Threshold("1 ms")
+@StackTrace(false)
+final class FlatteningEvent
+extends jdk.jfr.Event {
+  @Label("Operation")
+  String operation;
+  
+  @Label("Curve Type")
+  String curveType;
+  
+  @Label("Criterion")
+  @Description("The class of the subdivision criterion, if any")
+  String criterion;
+  
+  @Label("Tolerance")
+  @Description("NaN if the criterion doesn't expose it")
+  double tolerance;
+  
+  @Label("Segments Emitted")
+  long segments;
+}
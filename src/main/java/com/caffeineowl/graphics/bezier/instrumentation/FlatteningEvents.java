@@ -0,0 +1,236 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.instrumentation;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.QuadCurve2D;
+
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.QuadSegmentConsumer;
+import com.caffeineowl.graphics.bezier.QuadSegmentSink;
+import com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullSubdivCriterion;
+import com.caffeineowl.graphics.bezier.flatnessalgos.GenericCubicSubdivCriterion;
+import com.caffeineowl.graphics.bezier.flatnessalgos.GenericQuadSubdivCriterion;
+import com.caffeineowl.graphics.bezier.flatnessalgos.LineDefectSubdivCriterion;
+import com.caffeineowl.graphics.bezier.flatnessalgos.SimpleConvexHullSubdivCriterion;
+
+/**
+ * Java Flight Recorder events for the curve operations: the adaptive 
+ * halving, the degree reductions (event 
+ * <code>com.caffeineowl.graphics.CurveOperation</code>, with the curve type,
+ * criterion class, tolerance, number of emitted segments and duration) and
+ * the batch entry points (event <code>com.caffeineowl.graphics.BatchOperation</code>).
+ * <p>The events have thresholds (<code>1 ms</code> for a curve, <code>20 ms</code>
+ * for a batch), so that only the slow operations are recorded; they can
+ * be changed, as for any JFR event, in the recording settings.
+ * <p>The library targets Java 8, but <code>jdk.jfr</code> isn't in every
+ * Java 8 runtime: the event classes are only touched through this facade,
+ * which loads them reflectively and falls back to no-ops if that fails.
+ * When the events aren't enabled in a recording, the cost of an operation
+ * is a check of the event type; nothing is allocated.
+ */
+public final class FlatteningEvents {
+  
+  /**
+   * The bridge to the event classes.
+   */
+  static abstract class EventSupport {
+    /** @return the event in progress, or <code>null</code> if not recording */
+    abstract Object beginFlattening();
+    abstract void endFlattening(
+      Object event, String operation, String curveType, 
+      Object criterion, double tolerance, long segments
+    );
+    /** @return the event in progress, or <code>null</code> if not recording */
+    abstract Object beginBatch();
+    abstract void endBatch(Object event, String operation, int items, boolean parallel);
+  }
+  
+  static private final EventSupport support=FlatteningEvents.loadSupport();
+  
+  private FlatteningEvents() {
+  }
+  
+  static private EventSupport loadSupport() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      Class<?> impl=Class.forName(FlatteningEvents.class.getPackage().getName()+".JfrEventSupport");
+      return (EventSupport)impl.getDeclaredConstructor().newInstance();
+    }
+    catch(Throwable t) { // no JFR in this runtime
+      return null;
+    }
+  }
+  
+  /**
+   * Whether the JFR events could be loaded (the runtime has JFR).
+   */
+  static public boolean isAvailable() {
+    return null!=FlatteningEvents.support;
+  }
+  
+  /**
+   * Starts timing a curve operation.
+   * @return the event to be passed to 
+   *   {@link #endFlattening(Object, String, String, Object, double, long)},
+   *   or <code>null</code> if the event isn't recorded (then nothing else 
+   *   needs to be done).
+   */
+  static public Object beginFlattening() {
+    EventSupport s=FlatteningEvents.support;
+    return null==s ? null : s.beginFlattening();
+  }
+  
+  /**
+   * Ends a curve operation, committing its event if the operation
+   * exceeded the threshold.
+   * @param event the event {@linkplain #beginFlattening() started} for the operation
+   * @param operation the name of the operation
+   * @param curveType <code>"cubic"</code> or <code>"quad"</code>
+   * @param criterion the subdivision criterion, if any (its class is recorded)
+   * @param tolerance the tolerance, <code>NaN</code> if unknown
+   * @param segments the number of emitted segments
+   */
+  static public void endFlattening(
+    Object event, String operation, String curveType, 
+    Object criterion, double tolerance, long segments
+  ) {
+    if(null!=event) {
+      FlatteningEvents.support.endFlattening(
+        event, operation, curveType, criterion, tolerance, segments
+      );
+    }
+  }
+  
+  /**
+   * Starts timing a batch operation.
+   * @return the event, or <code>null</code> if the event isn't recorded.
+   */
+  static public Object beginBatch() {
+    EventSupport s=FlatteningEvents.support;
+    return null==s ? null : s.beginBatch();
+  }
+  
+  /**
+   * Ends a batch operation, committing its event if the operation
+   * exceeded the threshold.
+   */
+  static public void endBatch(Object event, String operation, int items, boolean parallel) {
+    if(null!=event) {
+      FlatteningEvents.support.endBatch(event, operation, items, parallel);
+    }
+  }
+  
+  /**
+   * The tolerance of the library's subdivision criteria, <code>NaN</code>
+   * for the others.
+   */
+  static public double toleranceOf(Object criterion) {
+    if(criterion instanceof ConvexHullSubdivCriterion) {
+      return ((ConvexHullSubdivCriterion)criterion).getTolerance();
+    }
+    if(criterion instanceof SimpleConvexHullSubdivCriterion) {
+      return ((SimpleConvexHullSubdivCriterion)criterion).getTolerance();
+    }
+    if(criterion instanceof LineDefectSubdivCriterion) {
+      return ((LineDefectSubdivCriterion)criterion).getTolerance();
+    }
+    if(criterion instanceof GenericCubicSubdivCriterion) {
+      return ((GenericCubicSubdivCriterion)criterion).getTolerance();
+    }
+    if(criterion instanceof GenericQuadSubdivCriterion) {
+      return ((GenericQuadSubdivCriterion)criterion).getTolerance();
+    }
+    return Double.NaN;
+  }
+  
+  /**
+   * Counts the segments passed to the wrapped consumer or sink (which may 
+   * be <code>null</code>). Only used while an event is being recorded.
+   */
+  static public final class SegmentCounter
+  implements CubicSegmentConsumer, QuadSegmentConsumer, QuadSegmentSink {
+    
+    private final CubicSegmentConsumer cubicConsumer;
+    private final QuadSegmentConsumer  quadConsumer;
+    private final QuadSegmentSink      quadSink;
+    private long count=0;
+    
+    public SegmentCounter(CubicSegmentConsumer consumer) {
+      this(consumer, null, null);
+    }
+    
+    public SegmentCounter(QuadSegmentConsumer consumer) {
+      this(null, consumer, null);
+    }
+    
+    public SegmentCounter(QuadSegmentSink sink) {
+      this(null, null, sink);
+    }
+    
+    private SegmentCounter(
+      CubicSegmentConsumer cubicConsumer, QuadSegmentConsumer quadConsumer,
+      QuadSegmentSink quadSink
+    ) {
+      this.cubicConsumer=cubicConsumer;
+      this.quadConsumer=quadConsumer;
+      this.quadSink=quadSink;
+    }
+    
+    public long getCount() {
+      return this.count;
+    }
+
+    @Override
+    public void processSegment(CubicCurve2D segment, double startT, double endT) {
+      this.count++;
+      if(null!=this.cubicConsumer) {
+        this.cubicConsumer.processSegment(segment, startT, endT);
+      }
+    }
+
+    @Override
+    public void processSegment(QuadCurve2D segment, double startT, double endT) {
+      this.count++;
+      if(null!=this.quadConsumer) {
+        this.quadConsumer.processSegment(segment, startT, endT);
+      }
+    }
+
+    @Override
+    public void processSegment(
+      double x0, double y0, double cx, double cy, double x1, double y1,
+      double startT, double endT
+    ) {
+      this.count++;
+      if(null!=this.quadSink) {
+        this.quadSink.processSegment(x0, y0, cx, cy, x1, y1, startT, endT);
+      }
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.instrumentation;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.QuadCurve2D;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.caffeineowl.graphics.bezier.BezierUtils;
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.CubicSubdivisionCriterion;
+import com.caffeineowl.graphics.bezier.QuadSegmentConsumer;
+import com.caffeineowl.graphics.bezier.QuadSubdivisionCriterion;
+
+/**
+ * Optional instrumentation of the 
+ * {@linkplain BezierUtils#adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) 
+ * adaptive halving}: counts, per criterion type, the curves, the
+ * <code>shouldSplit</code> invocations, the splits, the emitted segments
+ * and the maximum depth reached.
+ * <p>Disabled by default; enable it with the 
+ * <code>-Dcom.caffeineowl.graphics.instrumentation=true</code> system property
+ * or {@link #setEnabled(boolean)}. When enabled, the criterion and the 
+ * consumer of each halving are wrapped into counting decorators; when 
+ * disabled, the only cost is the reading of a flag once per curve (not per
+ * split).
+ * <p>The counters of each criterion type are registered as a JMX MBean, named
+ * <code>com.caffeineowl.graphics:type=SubdivisionCounters,criterion=&lt;class name&gt;</code>.
+ */
+public final class FlatteningInstrumentation {
+  
+  static public final String enablingProperty="com.caffeineowl.graphics.instrumentation";
+  
+  static public final String mbeanDomain="com.caffeineowl.graphics";
+  
+  static private volatile boolean enabled=Boolean.getBoolean(FlatteningInstrumentation.enablingProperty);
+  
+  static private final ConcurrentMap<String, SubdivisionCounters> counters=
+    new ConcurrentHashMap<String, SubdivisionCounters>();
+  
+  private FlatteningInstrumentation() {
+  }
+  
+  static public boolean isEnabled() {
+    return FlatteningInstrumentation.enabled;
+  }
+  
+  static public void setEnabled(boolean enabled) {
+    FlatteningInstrumentation.enabled=enabled;
+  }
+  
+  /**
+   * The counters of a criterion type, created (and registered with the
+   * platform MBean server) on the first request.
+   */
+  static public SubdivisionCounters countersFor(Class<?> criterionType) {
+    String name=criterionType.getName();
+    SubdivisionCounters toRet=FlatteningInstrumentation.counters.get(name);
+    if(null==toRet) {
+      SubdivisionCounters created=new SubdivisionCounters(name);
+      toRet=FlatteningInstrumentation.counters.putIfAbsent(name, created);
+      if(null==toRet) {
+        toRet=created;
+        FlatteningInstrumentation.register(created);
+      }
+    }
+    return toRet;
+  }
+  
+  /**
+   * All the counters created so far.
+   */
+  static public Collection<SubdivisionCounters> allCounters() {
+    return Collections.unmodifiableCollection(FlatteningInstrumentation.counters.values());
+  }
+  
+  /**
+   * Zeroes all the counters.
+   */
+  static public void resetAll() {
+    for(SubdivisionCounters c : FlatteningInstrumentation.counters.values()) {
+      c.reset();
+    }
+  }
+  
+  static private void register(SubdivisionCounters c) {
+    try {
+      MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+      ObjectName name=new ObjectName(
+        FlatteningInstrumentation.mbeanDomain+":type=SubdivisionCounters,criterion="
+        +ObjectName.quote(c.getCriterionType())
+      );
+      if(false==server.isRegistered(name)) {
+        server.registerMBean(c, name);
+      }
+    }
+    catch(Exception e) {
+      // no JMX (or a duplicate from another class loader): the counters still work
+    }
+  }
+  
+  /**
+   * Wraps a cubic criterion so that its invocations and splits are counted.
+   * The curve counter is incremented: call it once per halved curve.
+   */
+  static public CubicSubdivisionCriterion instrumentCubic(
+    CubicSubdivisionCriterion criterion, SubdivisionCounters c
+  ) {
+    c.curves.increment();
+    return new CountingCubicCriterion(criterion, c);
+  }
+  
+  /**
+   * Wraps a quad criterion so that its invocations and splits are counted.
+   * The curve counter is incremented: call it once per halved curve.
+   */
+  static public QuadSubdivisionCriterion instrumentQuad(
+    QuadSubdivisionCriterion criterion, SubdivisionCounters c
+  ) {
+    c.curves.increment();
+    return new CountingQuadCriterion(criterion, c);
+  }
+  
+  /**
+   * Wraps a cubic consumer (possibly <code>null</code>) so that the emitted
+   * segments and their depth are counted.
+   */
+  static public CubicSegmentConsumer instrumentCubic(
+    CubicSegmentConsumer consumer, SubdivisionCounters c
+  ) {
+    return new CountingCubicConsumer(consumer, c);
+  }
+  
+  /**
+   * Wraps a quad consumer (possibly <code>null</code>) so that the emitted
+   * segments and their depth are counted.
+   */
+  static public QuadSegmentConsumer instrumentQuad(
+    QuadSegmentConsumer consumer, SubdivisionCounters c
+  ) {
+    return new CountingQuadConsumer(consumer, c);
+  }
+  
+  /**
+   * The depth of a halving segment: its parameter range is exactly 
+   * <code>2<sup>-depth</sup></code>.
+   */
+  static int depthOf(double startT, double endT) {
+    return -Math.getExponent(endT-startT);
+  }
+  
+  static final class CountingCubicCriterion
+  implements CubicSubdivisionCriterion {
+    final CubicSubdivisionCriterion actual;
+    final SubdivisionCounters counters;
+    
+    CountingCubicCriterion(CubicSubdivisionCriterion actual, SubdivisionCounters counters) {
+      this.actual=actual;
+      this.counters=counters;
+    }
+
+    @Override
+    public boolean shouldSplit(CubicCurve2D c) {
+      boolean toRet=this.actual.shouldSplit(c);
+      this.counters.shouldSplitCalls.increment();
+      if(toRet) {
+        this.counters.splits.increment();
+      }
+      return toRet;
+    }
+  }
+  
+  static final class CountingQuadCriterion
+  implements QuadSubdivisionCriterion {
+    final QuadSubdivisionCriterion actual;
+    final SubdivisionCounters counters;
+    
+    CountingQuadCriterion(QuadSubdivisionCriterion actual, SubdivisionCounters counters) {
+      this.actual=actual;
+      this.counters=counters;
+    }
+
+    @Override
+    public boolean shouldSplit(QuadCurve2D c) {
+      boolean toRet=this.actual.shouldSplit(c);
+      this.counters.shouldSplitCalls.increment();
+      if(toRet) {
+        this.counters.splits.increment();
+      }
+      return toRet;
+    }
+  }
+  
+  static final class CountingCubicConsumer
+  implements CubicSegmentConsumer {
+    final CubicSegmentConsumer actual;
+    final SubdivisionCounters counters;
+    
+    CountingCubicConsumer(CubicSegmentConsumer actual, SubdivisionCounters counters) {
+      this.actual=actual;
+      this.counters=counters;
+    }
+
+    @Override
+    public void processSegment(CubicCurve2D segment, double startT, double endT) {
+      this.counters.segments.increment();
+      this.counters.maxDepth.accumulate(FlatteningInstrumentation.depthOf(startT, endT));
+      if(null!=this.actual) {
+        this.actual.processSegment(segment, startT, endT);
+      }
+    }
+  }
+  
+  static final class CountingQuadConsumer
+  implements QuadSegmentConsumer {
+    final QuadSegmentConsumer actual;
+    final SubdivisionCounters counters;
+    
+    CountingQuadConsumer(QuadSegmentConsumer actual, SubdivisionCounters counters) {
+      this.actual=actual;
+      this.counters=counters;
+    }
+
+    @Override
+    public void processSegment(QuadCurve2D segment, double startT, double endT) {
+      this.counters.segments.increment();
+      this.counters.maxDepth.accumulate(FlatteningInstrumentation.depthOf(startT, endT));
+      if(null!=this.actual) {
+        this.actual.processSegment(segment, startT, endT);
+      }
+    }
+  }
+}
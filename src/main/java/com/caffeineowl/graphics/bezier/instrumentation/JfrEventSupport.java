@@ -0,0 +1,90 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.instrumentation;
+
+import jdk.jfr.EventType;
+
+/**
+ * The JFR backed {@link FlatteningEvents.EventSupport}. Loaded reflectively, 
+ * and only if <code>jdk.jfr.Event</code> can be loaded.
+ */
+final class JfrEventSupport
+extends FlatteningEvents.EventSupport {
+  
+  private final EventType flatteningType=EventType.getEventType(FlatteningEvent.class);
+  private final EventType batchType=EventType.getEventType(BatchEvent.class);
+
+  @Override
+  Object beginFlattening() {
+    if(false==this.flatteningType.isEnabled()) {
+      return null;
+    }
+    FlatteningEvent toRet=new FlatteningEvent();
+    toRet.begin();
+    return toRet;
+  }
+
+  @Override
+  void endFlattening(
+    Object event, String operation, String curveType, 
+    Object criterion, double tolerance, long segments
+  ) {
+    FlatteningEvent e=(FlatteningEvent)event;
+    e.end();
+    if(e.shouldCommit()) {
+      e.operation=operation;
+      e.curveType=curveType;
+      e.criterion=null==criterion ? null : criterion.getClass().getName();
+      e.tolerance=tolerance;
+      e.segments=segments;
+      e.commit();
+    }
+  }
+
+  @Override
+  Object beginBatch() {
+    if(false==this.batchType.isEnabled()) {
+      return null;
+    }
+    BatchEvent toRet=new BatchEvent();
+    toRet.begin();
+    return toRet;
+  }
+
+  @Override
+  void endBatch(Object event, String operation, int items, boolean parallel) {
+    BatchEvent e=(BatchEvent)event;
+    e.end();
+    if(e.shouldCommit()) {
+      e.operation=operation;
+      e.items=items;
+      e.parallel=parallel;
+      e.commit();
+    }
+  }
+}
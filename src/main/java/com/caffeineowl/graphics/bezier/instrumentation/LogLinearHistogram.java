@@ -0,0 +1,181 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.instrumentation;
+
+/**
+ * A compact histogram of non-negative <code>long</code> values, in the
+ * manner of the HDR histograms: the values below <code>32</code> have
+ * their own buckets, above that each power of two range is split in 
+ * <code>16</code> linear sub-buckets, so a recorded value is known within
+ * <code>1/16</code> (about <code>6%</code>) of itself, whatever its 
+ * magnitude. The whole <code>long</code> range takes less than 
+ * <code>1000</code> counters.
+ * <p>Recording is a few shifts and an increment; instances aren't thread
+ * safe: keep one per thread and {@linkplain #merge(LogLinearHistogram) merge}
+ * them (an addition of the counters) when reporting.
+ */
+public class LogLinearHistogram {
+  
+  static private final int linearBits=5;
+  static private final int linearLimit=1<<LogLinearHistogram.linearBits;
+  static private final int subBuckets=LogLinearHistogram.linearLimit>>1;
+  static private final int numBuckets=
+    LogLinearHistogram.linearLimit+(64-LogLinearHistogram.linearBits)*LogLinearHistogram.subBuckets;
+  
+  protected final long[] counts=new long[LogLinearHistogram.numBuckets];
+  protected long totalCount=0;
+  protected long min=Long.MAX_VALUE;
+  protected long max=0;
+  protected double sum=0;
+  
+  static int indexOf(long value) {
+    if(value<LogLinearHistogram.linearLimit) {
+      return (int)value;
+    }
+    int msb=63-Long.numberOfLeadingZeros(value);
+    int shift=msb-(LogLinearHistogram.linearBits-1);
+    int sub=(int)(value>>>shift)-LogLinearHistogram.subBuckets;
+    return LogLinearHistogram.linearLimit+(shift-1)*LogLinearHistogram.subBuckets+sub;
+  }
+  
+  /** The largest value that falls in the bucket at <code>index</code> */
+  static long highestValueAt(int index) {
+    if(index<LogLinearHistogram.linearLimit) {
+      return index;
+    }
+    int rel=index-LogLinearHistogram.linearLimit;
+    int shift=rel/LogLinearHistogram.subBuckets+1;
+    long lowest=((long)(LogLinearHistogram.subBuckets+rel%LogLinearHistogram.subBuckets))<<shift;
+    return lowest+(1L<<shift)-1;
+  }
+  
+  /**
+   * Records a value (negative values are recorded as <code>0</code>).
+   */
+  public void record(long value) {
+    if(value<0) {
+      value=0;
+    }
+    this.counts[LogLinearHistogram.indexOf(value)]++;
+    this.totalCount++;
+    this.sum+=value;
+    if(value<this.min) {
+      this.min=value;
+    }
+    if(value>this.max) {
+      this.max=value;
+    }
+  }
+  
+  /**
+   * Adds the counts of another histogram to this one.
+   */
+  public void merge(LogLinearHistogram other) {
+    long[] c=this.counts, o=other.counts;
+    for(int i=0; i<c.length; i++) {
+      c[i]+=o[i];
+    }
+    this.totalCount+=other.totalCount;
+    this.sum+=other.sum;
+    if(other.min<this.min) {
+      this.min=other.min;
+    }
+    if(other.max>this.max) {
+      this.max=other.max;
+    }
+  }
+  
+  public void reset() {
+    java.util.Arrays.fill(this.counts, 0L);
+    this.totalCount=0;
+    this.sum=0;
+    this.min=Long.MAX_VALUE;
+    this.max=0;
+  }
+  
+  public long getTotalCount() {
+    return this.totalCount;
+  }
+  
+  /** The smallest recorded value (<code>0</code> if none) */
+  public long getMin() {
+    return 0==this.totalCount ? 0 : this.min;
+  }
+  
+  /** The largest recorded value (exact) */
+  public long getMax() {
+    return this.max;
+  }
+  
+  public double getMean() {
+    return 0==this.totalCount ? 0.0 : this.sum/this.totalCount;
+  }
+  
+  /**
+   * The value below or at which the given percentage of the recorded values
+   * fall (reported as the highest value of its bucket, capped at the 
+   * recorded maximum).
+   * @param percentile between <code>0</code> and <code>100</code>
+   */
+  public long getValueAtPercentile(double percentile) {
+    if(0==this.totalCount) {
+      return 0;
+    }
+    double p=Math.max(0.0, Math.min(100.0, percentile));
+    long rank=(long)Math.ceil(p/100.0*this.totalCount);
+    if(rank<1) {
+      rank=1;
+    }
+    long seen=0;
+    for(int i=0; i<this.counts.length; i++) {
+      seen+=this.counts[i];
+      if(seen>=rank) {
+        return Math.min(LogLinearHistogram.highestValueAt(i), this.max);
+      }
+    }
+    return this.max;
+  }
+  
+  /**
+   * A one-line summary: count, mean, the 50/90/99/99.9 percentiles and max.
+   */
+  public String summary() {
+    return String.format(
+      "n=%d mean=%.2f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+      this.totalCount, this.getMean(),
+      this.getValueAtPercentile(50), this.getValueAtPercentile(90),
+      this.getValueAtPercentile(99), this.getValueAtPercentile(99.9),
+      this.max
+    );
+  }
+  
+  @Override
+  public String toString() {
+    return this.summary();
+  }
+}
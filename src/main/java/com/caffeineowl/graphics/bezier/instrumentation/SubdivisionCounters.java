@@ -0,0 +1,106 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.instrumentation;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * The work counters of the adaptive halving, for one subdivision criterion
+ * type. Striped (<code>LongAdder</code>) counters, so that the many
+ * threads flattening in parallel don't contend on a single memory location.
+ */
+public class SubdivisionCounters
+implements SubdivisionCountersMBean {
+  
+  static private final LongBinaryOperator max=new LongBinaryOperator() {
+    @Override
+    public long applyAsLong(long left, long right) {
+      return Math.max(left, right);
+    }
+  };
+  
+  protected final String criterionType;
+  
+  final LongAdder curves=new LongAdder();
+  final LongAdder shouldSplitCalls=new LongAdder();
+  final LongAdder splits=new LongAdder();
+  final LongAdder segments=new LongAdder();
+  final LongAccumulator maxDepth=new LongAccumulator(SubdivisionCounters.max, 0);
+  
+  public SubdivisionCounters(String criterionType) {
+    this.criterionType=criterionType;
+  }
+  
+  @Override
+  public String getCriterionType() {
+    return this.criterionType;
+  }
+
+  @Override
+  public long getCurves() {
+    return this.curves.sum();
+  }
+
+  @Override
+  public long getShouldSplitCalls() {
+    return this.shouldSplitCalls.sum();
+  }
+
+  @Override
+  public long getSplits() {
+    return this.splits.sum();
+  }
+
+  @Override
+  public long getSegmentsEmitted() {
+    return this.segments.sum();
+  }
+
+  @Override
+  public long getMaxDepth() {
+    return this.maxDepth.get();
+  }
+
+  @Override
+  public void reset() {
+    this.curves.reset();
+    this.shouldSplitCalls.reset();
+    this.splits.reset();
+    this.segments.reset();
+    this.maxDepth.reset();
+  }
+  
+  @Override
+  public String toString() {
+    return this.criterionType+": curves="+this.getCurves()
+      +", shouldSplit="+this.getShouldSplitCalls()+", splits="+this.getSplits()
+      +", segments="+this.getSegmentsEmitted()+", maxDepth="+this.getMaxDepth();
+  }
+}
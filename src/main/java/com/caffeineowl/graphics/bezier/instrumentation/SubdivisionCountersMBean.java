@@ -0,0 +1,49 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.instrumentation;
+
+/**
+ * The JMX view of the {@link SubdivisionCounters} of a subdivision 
+ * criterion type.
+ */
+public interface SubdivisionCountersMBean {
+  /** The name of the criterion class the counters are kept for */
+  public String getCriterionType();
+  /** The number of curves subjected to the adaptive halving */
+  public long getCurves();
+  /** The number of <code>shouldSplit</code> invocations */
+  public long getShouldSplitCalls();
+  /** The number of splits performed */
+  public long getSplits();
+  /** The number of segments emitted to the consumers */
+  public long getSegmentsEmitted();
+  /** The maximum subdivision depth reached (<code>0</code> for an unsplit curve) */
+  public long getMaxDepth();
+  /** Zeroes all the counters */
+  public void reset();
+}
@@ -0,0 +1,177 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.instrumentation;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.QuadCurve2D;
+
+import com.caffeineowl.graphics.bezier.BezierUtils;
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.CubicSubdivisionCriterion;
+import com.caffeineowl.graphics.bezier.QuadSegmentConsumer;
+import com.caffeineowl.graphics.bezier.QuadSubdivisionCriterion;
+
+/**
+ * Collects, for each 
+ * {@linkplain BezierUtils#adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) 
+ * adaptive halving} call, the maximum subdivision depth, the number of emitted
+ * segments and the number of criterion invocations, into 
+ * {@link LogLinearHistogram}s.
+ * <p>Wrap the criterion and the consumer of the halving:
+ * <pre>
+ *   SubdivisionHistograms h=new SubdivisionHistograms();
+ *   CubicSubdivisionCriterion crit=h.wrapCubic(criterion);
+ *   CubicSegmentConsumer cons=h.wrapCubic(consumer);
+ *   for(CubicCurve2D c : curves) {
+ *     BezierUtils.adaptiveHalving(c, crit, cons);
+ *   }
+ *   System.out.println(h.summary());
+ * </pre>
+ * (the <code>wrapCubic</code>/<code>wrapQuad</code> names avoid the ambiguity for
+ * the criteria implementing both interfaces). A call ends with the segment reaching <code>t=1</code>, the statistics of
+ * the call are recorded then. An instance isn't thread safe: use one per
+ * thread and {@linkplain #merge(SubdivisionHistograms) merge} them.
+ */
+public class SubdivisionHistograms {
+  
+  protected final LogLinearHistogram depths=new LogLinearHistogram();
+  protected final LogLinearHistogram segments=new LogLinearHistogram();
+  protected final LogLinearHistogram criterionCalls=new LogLinearHistogram();
+  
+  /** The state of the call in progress */
+  private int  callMaxDepth=0;
+  private long callSegments=0;
+  private long callCriterionCalls=0;
+  
+  /** Per call maximum depth (<code>0</code> for an unsplit curve) */
+  public LogLinearHistogram getDepths() {
+    return this.depths;
+  }
+  
+  /** Per call number of emitted segments */
+  public LogLinearHistogram getSegments() {
+    return this.segments;
+  }
+  
+  /** Per call number of <code>shouldSplit</code> invocations */
+  public LogLinearHistogram getCriterionCalls() {
+    return this.criterionCalls;
+  }
+  
+  public void merge(SubdivisionHistograms other) {
+    this.depths.merge(other.depths);
+    this.segments.merge(other.segments);
+    this.criterionCalls.merge(other.criterionCalls);
+  }
+  
+  public void reset() {
+    this.depths.reset();
+    this.segments.reset();
+    this.criterionCalls.reset();
+    this.callMaxDepth=0;
+    this.callSegments=0;
+    this.callCriterionCalls=0;
+  }
+  
+  public String summary() {
+    return "depth: "+this.depths.summary()
+      +"\nsegments: "+this.segments.summary()
+      +"\nshouldSplit calls: "+this.criterionCalls.summary();
+  }
+  
+  @Override
+  public String toString() {
+    return this.summary();
+  }
+  
+  public CubicSubdivisionCriterion wrapCubic(final CubicSubdivisionCriterion criterion) {
+    return new CubicSubdivisionCriterion() {
+      @Override
+      public boolean shouldSplit(CubicCurve2D c) {
+        SubdivisionHistograms.this.callCriterionCalls++;
+        return criterion.shouldSplit(c);
+      }
+    };
+  }
+  
+  public QuadSubdivisionCriterion wrapQuad(final QuadSubdivisionCriterion criterion) {
+    return new QuadSubdivisionCriterion() {
+      @Override
+      public boolean shouldSplit(QuadCurve2D c) {
+        SubdivisionHistograms.this.callCriterionCalls++;
+        return criterion.shouldSplit(c);
+      }
+    };
+  }
+  
+  /**
+   * @param consumer the wrapped consumer, may be <code>null</code>
+   */
+  public CubicSegmentConsumer wrapCubic(final CubicSegmentConsumer consumer) {
+    return new CubicSegmentConsumer() {
+      @Override
+      public void processSegment(CubicCurve2D segment, double startT, double endT) {
+        if(null!=consumer) {
+          consumer.processSegment(segment, startT, endT);
+        }
+        SubdivisionHistograms.this.segmentDone(startT, endT);
+      }
+    };
+  }
+  
+  /**
+   * @param consumer the wrapped consumer, may be <code>null</code>
+   */
+  public QuadSegmentConsumer wrapQuad(final QuadSegmentConsumer consumer) {
+    return new QuadSegmentConsumer() {
+      @Override
+      public void processSegment(QuadCurve2D segment, double startT, double endT) {
+        if(null!=consumer) {
+          consumer.processSegment(segment, startT, endT);
+        }
+        SubdivisionHistograms.this.segmentDone(startT, endT);
+      }
+    };
+  }
+  
+  private void segmentDone(double startT, double endT) {
+    this.callSegments++;
+    int depth=FlatteningInstrumentation.depthOf(startT, endT);
+    if(depth>this.callMaxDepth) {
+      this.callMaxDepth=depth;
+    }
+    if(1.0==endT) { // the call is complete
+      this.depths.record(this.callMaxDepth);
+      this.segments.record(this.callSegments);
+      this.criterionCalls.record(this.callCriterionCalls);
+      this.callMaxDepth=0;
+      this.callSegments=0;
+      this.callCriterionCalls=0;
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.stroking;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.QuadCurve2D;
+
+import com.caffeineowl.graphics.bezier.BezierUtils;
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.OffsetApproxCriterion;
+
+/**
+ * Approximates the offset curves of cubic and quadratic B&eacute;ziers
+ * by chains of cubic B&eacute;ziers (the offset of a B&eacute;zier is not,
+ * in general, a B&eacute;zier curve).
+ * <p>The algorithm:<ol>
+ * <li>splits the original curve at its 
+ *   {@link BezierUtils#computeInflexion(CubicCurve2D, double[]) inflexion points}
+ *   and {@link BezierUtils#computeCusps(CubicCurve2D, double[]) cusps}, so that
+ *   each piece has a curvature of a constant sign and a well defined normal;</li>
+ * <li>for each piece, builds an approximating cubic with the end points
+ *   offset exactly along the normals, the end tangents parallel with 
+ *   the original ones and the lengths of the control arms scaled by 
+ *   <code>1-offset*k</code> (<code>k</code> being the signed curvature at
+ *   the end) - which makes the approximation match the derivatives
+ *   of the exact offset at the ends;</li>
+ * <li>asks an {@link OffsetApproxCriterion} whether the approximation is good
+ *   enough and, if not, halves the piece and recurses (up to 
+ *   {@link #maxDepth} levels).</li>
+ * </ol>
+ * The resulting cubics are fed into a {@link CubicSegmentConsumer}, together
+ * with the range of the original curve parameter they correspond to.
+ * Note that at a cusp the offset "jumps" from one side to the other, so
+ * the chain of offset segments is not continuous there - joining the ends
+ * is the job of a stroker.
+ * <p>Positive offsets are on the left of the curve, in the direction
+ * of the <code>(-dy, dx)</code> normal (in a <code>y</code>-down coordinate
+ * system, as the screen's, they appear on the right).
+ */
+public final class BezierOffsetter {
+  
+  /**
+   * The maximum number of halvings of a piece of the original curve:
+   * near the centre of curvature the offset develops a cusp that no
+   * amount of subdivision can approximate with smooth cubics.
+   */
+  static public final int maxDepth=12;
+  
+  static private final OffsetApproxCriterion defaultCriterion=
+    new SampledOffsetCriterion();
+  
+  private BezierOffsetter() {
+  }
+  
+  /**
+   * Approximates the offset of a cubic B&eacute;zier by a chain of cubics.
+   * @param curve the curve to offset
+   * @param offset the signed offset distance
+   * @param criterion tells when an approximation is good enough. If 
+   *   <code>null</code>, a {@link SampledOffsetCriterion} with its
+   *   default tolerance is used.
+   * @param segConsumer receives the approximating cubics, together with the
+   *   range of the original curve parameter they correspond to.
+   */
+  static public void offsetCurve(
+    CubicCurve2D curve, double offset,
+    OffsetApproxCriterion criterion,
+    CubicSegmentConsumer segConsumer
+  ) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    if(null==criterion) {
+      criterion=BezierOffsetter.defaultCriterion;
+    }
+    if(null==segConsumer) {
+      return;
+    }
+    if(0.0==offset) {
+      CubicCurve2D copy=new CubicCurve2D.Double();
+      copy.setCurve(curve);
+      segConsumer.processSegment(copy, 0.0, 1.0);
+      return;
+    }
+    double[] params=new double[4];
+    int numParams=BezierUtils.computeInflexion(curve, params);
+    double[] cusps=new double[2];
+    int numCusps=BezierUtils.computeCusps(curve, cusps);
+    for(int i=0; i<numCusps; i++) { // merge, keeping them sorted
+      double t=cusps[i];
+      int j=numParams-1;
+      while(j>=0 && params[j]>t) {
+        params[j+1]=params[j];
+        j--;
+      }
+      params[j+1]=t;
+      numParams++;
+    }
+    double[] pieces=new double[8*(numParams+1)];
+    BezierUtils.splitCurve(curve, params, numParams, pieces, 0);
+    double prevT=0.0;
+    for(int i=0; i<=numParams; i++) {
+      double t=(i<numParams) ? params[i] : 1.0;
+      if(t>prevT) {
+        CubicCurve2D piece=new CubicCurve2D.Double();
+        piece.setCurve(pieces, 8*i);
+        BezierOffsetter.offsetPiece(
+          piece, prevT, t, offset, criterion, segConsumer, 0
+        );
+      }
+      prevT=t;
+    }
+  }
+  
+  /**
+   * Approximates the offset of a quadratic B&eacute;zier by a chain of cubics.
+   * The quad is degree-elevated (exactly) to a cubic, which is then
+   * {@linkplain #offsetCurve(CubicCurve2D, double, OffsetApproxCriterion, CubicSegmentConsumer) offset}.
+   */
+  static public void offsetCurve(
+    QuadCurve2D curve, double offset,
+    OffsetApproxCriterion criterion,
+    CubicSegmentConsumer segConsumer
+  ) {
+    if(null==curve) {
+      throw new NullPointerException();
+    }
+    double x0=curve.getX1(), y0=curve.getY1();
+    double cx=curve.getCtrlX(), cy=curve.getCtrlY();
+    double x1=curve.getX2(), y1=curve.getY2();
+    CubicCurve2D cubic=new CubicCurve2D.Double(
+      x0, y0, 
+      x0+2*(cx-x0)/3, y0+2*(cy-y0)/3,
+      x1+2*(cx-x1)/3, y1+2*(cy-y1)/3,
+      x1, y1
+    );
+    BezierOffsetter.offsetCurve(cubic, offset, criterion, segConsumer);
+  }
+  
+  static private void offsetPiece(
+    CubicCurve2D piece, double tMin, double tMax,
+    double offset, OffsetApproxCriterion criterion,
+    CubicSegmentConsumer segConsumer, int depth
+  ) {
+    CubicCurve2D approx=new CubicCurve2D.Double();
+    int fit=BezierOffsetter.fitOffset(piece, offset, approx);
+    if(fit<0) { // a single point, nothing to offset
+      return;
+    }
+    boolean split=depth<BezierOffsetter.maxDepth && 
+      (0==fit || criterion.shouldSplit(piece, offset, approx));
+    if(split) {
+      CubicCurve2D firstHalf=new CubicCurve2D.Double();
+      CubicCurve2D secondHalf=new CubicCurve2D.Double();
+      double tMid=(tMin+tMax)/2.0;
+      BezierUtils.halfSplitCurve(piece, firstHalf, secondHalf);
+      BezierOffsetter.offsetPiece(
+        firstHalf, tMin, tMid, offset, criterion, segConsumer, depth+1
+      );
+      BezierOffsetter.offsetPiece(
+        secondHalf, tMid, tMax, offset, criterion, segConsumer, depth+1
+      );
+    }
+    else {
+      segConsumer.processSegment(approx, tMin, tMax);
+    }
+  }
+  
+  /**
+   * Builds the cubic approximating the offset of the provided one, with
+   * exact end points, parallel end tangents and control arms scaled by
+   * <code>1-offset*k</code> (<code>k</code> the signed curvature at the ends).
+   * @return <code>1</code> if the approximation was built, <code>0</code> if
+   * it was built, but the offset is beyond the radius of curvature at
+   * one of the ends (the arm would flip direction, clamped to zero length)
+   * and <code>-1</code> if the curve is a single point.
+   */
+  static int fitOffset(CubicCurve2D curve, double offset, CubicCurve2D approxHere) {
+    double x0=curve.getX1(), y0=curve.getY1();
+    double cx0=curve.getCtrlX1(), cy0=curve.getCtrlY1();
+    double cx1=curve.getCtrlX2(), cy1=curve.getCtrlY2();
+    double x1=curve.getX2(), y1=curve.getY2();
+    
+    // tangent at start: first control point not coincident with the anchor
+    double d0x=cx0-x0, d0y=cy0-y0;
+    if(0.0==d0x && 0.0==d0y) {
+      d0x=cx1-x0; d0y=cy1-y0;
+      if(0.0==d0x && 0.0==d0y) {
+        d0x=x1-x0; d0y=y1-y0;
+      }
+    }
+    double d1x=x1-cx1, d1y=y1-cy1;
+    if(0.0==d1x && 0.0==d1y) {
+      d1x=x1-cx0; d1y=y1-cy0;
+      if(0.0==d1x && 0.0==d1y) {
+        d1x=x1-x0; d1y=y1-y0;
+      }
+    }
+    double len0=Math.hypot(d0x, d0y), len1=Math.hypot(d1x, d1y);
+    if(0.0==len0 || 0.0==len1) {
+      return -1;
+    }
+    double n0x=-d0y/len0, n0y=d0x/len0;
+    double n1x=-d1y/len1, n1y=d1x/len1;
+    
+    // signed curvature at the ends: 2/3*cross(P1-P0, P2-P1)/|P1-P0|^3
+    // (and the symmetric one at the end); null arms get no scaling
+    int toRet=1;
+    double scale0=1.0, scale1=1.0;
+    double arm0x=cx0-x0, arm0y=cy0-y0;
+    double arm1x=cx1-x1, arm1y=cy1-y1;
+    double armLen0=Math.hypot(arm0x, arm0y), armLen1=Math.hypot(arm1x, arm1y);
+    if(armLen0>0) {
+      double cross=arm0x*(cy1-cy0)-arm0y*(cx1-cx0);
+      scale0=1.0-offset*(2.0/3.0)*cross/(armLen0*armLen0*armLen0);
+    }
+    if(armLen1>0) {
+      double cross=(cx1-cx0)*(y1-cy1)-(cy1-cy0)*(x1-cx1);
+      scale1=1.0-offset*(2.0/3.0)*cross/(armLen1*armLen1*armLen1);
+    }
+    if(scale0<0) {
+      scale0=0;
+      toRet=0;
+    }
+    if(scale1<0) {
+      scale1=0;
+      toRet=0;
+    }
+    double qx0=x0+offset*n0x, qy0=y0+offset*n0y;
+    double qx1=x1+offset*n1x, qy1=y1+offset*n1y;
+    approxHere.setCurve(
+      qx0, qy0,
+      qx0+scale0*arm0x, qy0+scale0*arm0y,
+      qx1+scale1*arm1x, qy1+scale1*arm1y,
+      qx1, qy1
+    );
+    return toRet;
+  }
+}
@@ -0,0 +1,667 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.stroking;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.QuadCurve2D;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.caffeineowl.graphics.PolygonBuffer;
+import com.caffeineowl.graphics.bezier.BezierUtils;
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.CubicSubdivisionCriterion;
+import com.caffeineowl.graphics.bezier.QuadSegmentConsumer;
+import com.caffeineowl.graphics.bezier.QuadSubdivisionCriterion;
+import com.caffeineowl.graphics.bezier.instrumentation.FlatteningEvents;
+
+/**
+ * A streaming stroker for flattened paths: receives polylines (either
+ * {@linkplain #moveTo(double, double) explicitly}, or as the segments 
+ * {@linkplain BezierUtils#adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) 
+ * the adaptive halving} produces) and writes the outline of the stroke, as 
+ * polygons, into a {@link PolygonBuffer}.
+ * <p>The width, joins (<code>JOIN_MITER</code>, <code>JOIN_ROUND</code>,
+ * <code>JOIN_BEVEL</code>), caps (<code>CAP_BUTT</code>, <code>CAP_ROUND</code>,
+ * <code>CAP_SQUARE</code>) and miter limit have the same meaning as for
+ * <code>java.awt.BasicStroke</code> (dashing is not supported).
+ * <p>The outline is meant to be filled with the <i>non-zero</i> winding rule:
+ * on the inner side of a turn, the two offset edges are connected
+ * through the vertex itself, which is cheaper than computing the intersection
+ * and produces overlaps that the non-zero rule fills correctly. An open
+ * sub-path produces one polygon, a closed one produces two 
+ * (the outer and the inner contours, with opposite orientations).
+ * <p>When the segments come from flattening curves, the caps are oriented
+ * along the exact curve tangents at the curve ends (obtained with
+ * {@link BezierUtils#pointAndTangentOnCurve(double, CubicCurve2D, Point2D, Line2D)})
+ * rather than along the first/last flattened chord.
+ * <p>An instance keeps its scratch storage between sub-paths and is not
+ * thread safe; for stroking many paths in parallel, see 
+ * {@link #strokeAll(Shape[], BasicStroke, CubicSubdivisionCriterion, QuadSubdivisionCriterion, ExecutorService)}.
+ */
+public class PolylineStroker
+implements CubicSegmentConsumer, QuadSegmentConsumer {
+  
+  static protected final double defaultArcTolerance=0.25;
+
+  protected final double halfWidth;
+  protected final int    cap;
+  protected final int    join;
+  protected final double miterLimit;
+  /** The angular step used when approximating round joins and caps */
+  protected final double arcStep;
+  
+  protected PolygonBuffer output;
+  
+  /** The points of the current sub-path, x/y pairs */
+  protected double[] pts=new double[128];
+  protected int      numPts=0;
+  protected boolean  closed=false;
+  /** 
+   * If a segment (even a zero-length one) was added to the current 
+   * sub-path: as with <code>BasicStroke</code>, a lone 
+   * <code>moveTo</code> draws nothing
+   */
+  protected boolean  hasSegment=false;
+  /** 
+   * The start of the last closed sub-path: as in <code>Path2D</code>, a
+   * <code>lineTo</code> following a <code>closePath</code> starts there
+   */
+  protected double   closedX, closedY;
+  protected boolean  hasClosedStart=false;
+  
+  /** Unit tangents at the ends of the sub-path, if known from the curves */
+  protected double startTx, startTy, endTx, endTy;
+  protected boolean hasStartTangent, hasEndTangent;
+
+  /** Scratch objects for the tangent computations */
+  private final Line2D  tangent=new Line2D.Double();
+  private final Point2D point=new Point2D.Double();
+  /** Scratch curves for {@link #strokeShape(Shape, CubicSubdivisionCriterion, QuadSubdivisionCriterion)} */
+  private final CubicCurve2D cubic=new CubicCurve2D.Double();
+  private final QuadCurve2D  quad=new QuadCurve2D.Double();
+  
+  /**
+   * Initialises a stroker with the parameters of the provided 
+   * <code>BasicStroke</code> and the default tolerance (<code>0.25</code>)
+   * for approximating the round joins and caps.
+   */
+  public PolylineStroker(BasicStroke stroke) {
+    this(
+      stroke.getLineWidth(), stroke.getEndCap(), stroke.getLineJoin(), 
+      stroke.getMiterLimit(), PolylineStroker.defaultArcTolerance
+    );
+  }
+  
+  /**
+   * @param width the width of the stroke
+   * @param cap one of <code>BasicStroke.CAP_BUTT</code>, <code>BasicStroke.CAP_ROUND</code>,
+   *   <code>BasicStroke.CAP_SQUARE</code>
+   * @param join one of <code>BasicStroke.JOIN_MITER</code>, <code>BasicStroke.JOIN_ROUND</code>,
+   *   <code>BasicStroke.JOIN_BEVEL</code>
+   * @param miterLimit the limit to trim a miter join (ratio between the miter
+   *   length and the half of the stroke width), at least <code>1</code>
+   * @param arcTolerance the maximum distance between the polygons approximating the
+   *   round joins/caps and the exact arcs
+   */
+  public PolylineStroker(
+    double width, int cap, int join, double miterLimit, double arcTolerance
+  ) {
+    if(width<0) {
+      width=-width;
+    }
+    if(cap!=BasicStroke.CAP_BUTT && cap!=BasicStroke.CAP_ROUND && cap!=BasicStroke.CAP_SQUARE) {
+      throw new IllegalArgumentException("Illegal cap: "+cap);
+    }
+    if(join!=BasicStroke.JOIN_MITER && join!=BasicStroke.JOIN_ROUND && join!=BasicStroke.JOIN_BEVEL) {
+      throw new IllegalArgumentException("Illegal join: "+join);
+    }
+    this.halfWidth=width/2;
+    this.cap=cap;
+    this.join=join;
+    this.miterLimit=miterLimit<1 ? 1 : miterLimit;
+    if(arcTolerance<=0 || arcTolerance>=this.halfWidth) {
+      this.arcStep=Math.PI/2;
+    }
+    else {
+      this.arcStep=Math.min(Math.PI/2, 2*Math.acos(1-arcTolerance/this.halfWidth));
+    }
+  }
+
+  /**
+   * Sets the buffer where the outlines are written. The previous one
+   * is not cleared: the polygons of consecutive paths can be accumulated.
+   */
+  public void setOutput(PolygonBuffer output) {
+    this.output=output;
+  }
+  
+  public PolygonBuffer getOutput() {
+    return this.output;
+  }
+  
+  /**
+   * Starts a new sub-path (the current one, if any, is stroked).
+   */
+  public void moveTo(double x, double y) {
+    this.finish();
+    this.numPts=0;
+    this.closed=false;
+    this.hasSegment=false;
+    this.hasStartTangent=false;
+    this.hasEndTangent=false;
+    this.addPoint(x, y);
+  }
+  
+  /**
+   * Continues the current sub-path with a straight segment. Zero-length
+   * segments are ignored. Right after a {@link #closePath()}, the segment
+   * starts a new sub-path from the start of the closed one.
+   */
+  public void lineTo(double x, double y) {
+    if(0==this.numPts) {
+      if(false==this.hasClosedStart) {
+        this.moveTo(x, y);
+        return;
+      }
+      this.moveTo(this.closedX, this.closedY);
+    }
+    this.hasSegment=true;
+    int last=(this.numPts-1)<<1;
+    if(this.pts[last]!=x || this.pts[last+1]!=y) {
+      this.addPoint(x, y);
+      this.hasEndTangent=false;
+    }
+  }
+  
+  /**
+   * Closes the current sub-path and strokes it.
+   */
+  public void closePath() {
+    if(this.numPts>0) {
+      double x=this.px(0), y=this.py(0);
+      this.closed=true;
+      this.finish();
+      this.closedX=x;
+      this.closedY=y;
+      this.hasClosedStart=true;
+    }
+  }
+  
+  /**
+   * Strokes the current sub-path (as an open one, unless 
+   * {@link #closePath()} was called), writing its outline into the 
+   * {@linkplain #setOutput(PolygonBuffer) output}. Must be called after
+   * the last segment of a path was fed in.
+   */
+  public void finish() {
+    if(this.numPts>0 && null!=this.output) {
+      this.strokeSubpath();
+    }
+    this.numPts=0;
+    this.closed=false;
+    this.hasSegment=false;
+    this.hasClosedStart=false;
+  }
+  
+  /**
+   * Receives a segment of a flattened cubic. A segment starting the curve
+   * (<code>startT==0</code>) starts a new sub-path, unless it starts
+   * exactly where the current one ends.
+   */
+  @Override
+  public void processSegment(CubicCurve2D segment, double startT, double endT) {
+    double x0=segment.getX1(), y0=segment.getY1();
+    double x1=segment.getX2(), y1=segment.getY2();
+    if(0.0==startT) {
+      this.startCurve(x0, y0);
+      if(1==this.numPts) {
+        BezierUtils.pointAndTangentOnCurve(0.0, segment, this.point, this.tangent);
+        // a first control point on the start: the tangent is along the second one
+        double cx=segment.getCtrlX2(), cy=segment.getCtrlY2();
+        if(cx==x0 && cy==y0) {
+          cx=x1; cy=y1;
+        }
+        this.setStartTangent(this.tangent, x0, y0, cx, cy);
+      }
+    }
+    this.lineTo(x1, y1);
+    if(1.0==endT) {
+      BezierUtils.pointAndTangentOnCurve(1.0, segment, this.point, this.tangent);
+      double cx=segment.getCtrlX1(), cy=segment.getCtrlY1();
+      if(cx==x1 && cy==y1) {
+        cx=x0; cy=y0;
+      }
+      this.setEndTangent(this.tangent, cx, cy, x1, y1);
+    }
+  }
+
+  /**
+   * Receives a segment of a flattened quad.
+   * @see #processSegment(CubicCurve2D, double, double)
+   */
+  @Override
+  public void processSegment(QuadCurve2D segment, double startT, double endT) {
+    double x0=segment.getX1(), y0=segment.getY1();
+    if(0.0==startT) {
+      this.startCurve(x0, y0);
+      if(1==this.numPts) {
+        BezierUtils.pointAndTangentOnCurve(0.0, segment, this.point, this.tangent);
+        this.setStartTangent(this.tangent, x0, y0, segment.getX2(), segment.getY2());
+      }
+    }
+    this.lineTo(segment.getX2(), segment.getY2());
+    if(1.0==endT) {
+      BezierUtils.pointAndTangentOnCurve(1.0, segment, this.point, this.tangent);
+      this.setEndTangent(this.tangent, x0, y0, segment.getX2(), segment.getY2());
+    }
+  }
+  
+  /**
+   * Flattens the provided shape (using the adaptive halving with the
+   * provided criteria) and strokes it.
+   * @param shape the shape to stroke
+   * @param cubicCrit the criterion for flattening cubics (<code>null</code> for
+   *   the {@linkplain BezierUtils#adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) default} one)
+   * @param quadCrit the criterion for flattening quads (<code>null</code> for 
+   *   the default one)
+   */
+  public void strokeShape(
+    Shape shape,
+    CubicSubdivisionCriterion cubicCrit,
+    QuadSubdivisionCriterion  quadCrit
+  ) {
+    double[] c=new double[6];
+    double lastX=0, lastY=0, startX=0, startY=0;
+    for(PathIterator it=shape.getPathIterator(null); !it.isDone(); it.next()) {
+      switch(it.currentSegment(c)) {
+        case PathIterator.SEG_MOVETO:
+          this.moveTo(c[0], c[1]);
+          lastX=startX=c[0]; lastY=startY=c[1];
+          break;
+        case PathIterator.SEG_LINETO:
+          this.lineTo(c[0], c[1]);
+          lastX=c[0]; lastY=c[1];
+          break;
+        case PathIterator.SEG_QUADTO:
+          this.quad.setCurve(lastX, lastY, c[0], c[1], c[2], c[3]);
+          BezierUtils.adaptiveHalving(this.quad, quadCrit, this);
+          lastX=c[2]; lastY=c[3];
+          break;
+        case PathIterator.SEG_CUBICTO:
+          this.cubic.setCurve(lastX, lastY, c[0], c[1], c[2], c[3], c[4], c[5]);
+          BezierUtils.adaptiveHalving(this.cubic, cubicCrit, this);
+          lastX=c[4]; lastY=c[5];
+          break;
+        case PathIterator.SEG_CLOSE:
+          this.closePath();
+          lastX=startX; lastY=startY;
+          break;
+      }
+    }
+    this.finish();
+  }
+  
+  /**
+   * Strokes many shapes, in parallel, using the provided executor.
+   * Each worker thread uses its own stroker (and scratch storage); 
+   * the subdivision criteria are shared, so they must be thread-safe 
+   * (all the criteria in this library are immutable, hence they are).
+   * @param shapes the shapes to stroke
+   * @param stroke the stroke parameters
+   * @param cubicCrit the criterion for flattening cubics (<code>null</code> for the default)
+   * @param quadCrit the criterion for flattening quads (<code>null</code> for the default)
+   * @param executor the executor running the stroking tasks. If <code>null</code>,
+   *   the shapes are stroked sequentially, in the calling thread.
+   * @return the outlines, one buffer per shape, in the order of the shapes
+   * @throws InterruptedException if interrupted while waiting for the results
+   * @throws ExecutionException if the stroking of a shape failed
+   */
+  static public PolygonBuffer[] strokeAll(
+    final Shape[] shapes, final BasicStroke stroke,
+    final CubicSubdivisionCriterion cubicCrit,
+    final QuadSubdivisionCriterion  quadCrit,
+    ExecutorService executor
+  ) throws InterruptedException, ExecutionException {
+    final PolygonBuffer[] toRet=new PolygonBuffer[shapes.length];
+    Object event=FlatteningEvents.beginBatch();
+    if(null==executor) {
+      PolylineStroker stroker=new PolylineStroker(stroke);
+      for(int i=0; i<shapes.length; i++) {
+        toRet[i]=new PolygonBuffer();
+        stroker.setOutput(toRet[i]);
+        stroker.strokeShape(shapes[i], cubicCrit, quadCrit);
+      }
+      FlatteningEvents.endBatch(event, "PolylineStroker.strokeAll", shapes.length, false);
+      return toRet;
+    }
+    final ThreadLocal<PolylineStroker> strokers=new ThreadLocal<PolylineStroker>() {
+      @Override
+      protected PolylineStroker initialValue() {
+        return new PolylineStroker(stroke);
+      }
+    };
+    ArrayList<Future<?>> results=new ArrayList<Future<?>>(shapes.length);
+    for(int i=0; i<shapes.length; i++) {
+      final int index=i;
+      results.add(
+        executor.submit(
+          new Callable<Object>() {
+            @Override
+            public Object call() {
+              PolylineStroker stroker=strokers.get();
+              PolygonBuffer out=new PolygonBuffer();
+              stroker.setOutput(out);
+              stroker.strokeShape(shapes[index], cubicCrit, quadCrit);
+              stroker.setOutput(null);
+              toRet[index]=out;
+              return null;
+            }
+          }
+        )
+      );
+    }
+    for(Future<?> f : results) {
+      f.get(); // also makes the writes in toRet visible to this thread
+    }
+    FlatteningEvents.endBatch(event, "PolylineStroker.strokeAll", shapes.length, true);
+    return toRet;
+  }
+  
+  // ------------------------------------------------------------------
+  // internals
+  
+  private void startCurve(double x0, double y0) {
+    if(0==this.numPts) {
+      this.moveTo(x0, y0);
+    }
+    else {
+      int last=(this.numPts-1)<<1;
+      if(this.pts[last]!=x0 || this.pts[last+1]!=y0) {
+        this.moveTo(x0, y0);
+      }
+    }
+  }
+  
+  private void setStartTangent(Line2D t, double x0, double y0, double x1, double y1) {
+    double dx=t.getX2()-t.getX1(), dy=t.getY2()-t.getY1();
+    if(0.0==dx && 0.0==dy) { // null derivative, fall back on the given direction
+      dx=x1-x0; dy=y1-y0;
+    }
+    double len=Math.hypot(dx, dy);
+    if(len>0) {
+      this.startTx=dx/len;
+      this.startTy=dy/len;
+      this.hasStartTangent=true;
+    }
+  }
+  
+  private void setEndTangent(Line2D t, double x0, double y0, double x1, double y1) {
+    double dx=t.getX2()-t.getX1(), dy=t.getY2()-t.getY1();
+    if(0.0==dx && 0.0==dy) {
+      dx=x1-x0; dy=y1-y0;
+    }
+    double len=Math.hypot(dx, dy);
+    if(len>0) {
+      this.endTx=dx/len;
+      this.endTy=dy/len;
+      this.hasEndTangent=true;
+    }
+  }
+  
+  private void addPoint(double x, double y) {
+    int pos=this.numPts<<1;
+    if(pos+2>this.pts.length) {
+      double[] newPts=new double[this.pts.length<<1];
+      System.arraycopy(this.pts, 0, newPts, 0, pos);
+      this.pts=newPts;
+    }
+    this.pts[pos]=x;
+    this.pts[pos+1]=y;
+    this.numPts++;
+  }
+  
+  private double px(int i) {
+    return this.pts[i<<1];
+  }
+
+  private double py(int i) {
+    return this.pts[(i<<1)+1];
+  }
+  
+  private void strokeSubpath() {
+    int n=this.numPts;
+    if(this.closed && n>1 && this.px(0)==this.px(n-1) && this.py(0)==this.py(n-1)) {
+      n--;
+    }
+    PolygonBuffer out=this.output;
+    if(1==n) {
+      if(false==this.hasSegment && false==this.closed) { // a lone moveTo
+        return;
+      }
+      double dx=this.hasStartTangent ? this.startTx : 1.0;
+      double dy=this.hasStartTangent ? this.startTy : 0.0;
+      if(this.cap!=BasicStroke.CAP_BUTT) {
+        double x=this.px(0), y=this.py(0);
+        this.addCap(x, y, dx, dy);
+        this.addCap(x, y, -dx, -dy);
+        out.closePolygon();
+      }
+      return;
+    }
+    if(this.closed) { // joined at every point, including the 2-point sub-paths
+      this.addSide(n, true, true);
+      out.closePolygon();
+      if(n>2) { // with 2 points, the backward side is the same contour
+        this.addSide(n, false, true);
+        out.closePolygon();
+      }
+      return;
+    }
+    // open: forward side, end cap, backward side, start cap
+    this.addSide(n, true, false);
+    double dx, dy;
+    if(this.hasEndTangent) {
+      dx=this.endTx; dy=this.endTy;
+    }
+    else {
+      dx=this.px(n-1)-this.px(n-2); dy=this.py(n-1)-this.py(n-2);
+      double len=Math.hypot(dx, dy);
+      dx/=len; dy/=len;
+    }
+    this.addCapInner(this.px(n-1), this.py(n-1), dx, dy);
+    this.addSide(n, false, false);
+    if(this.hasStartTangent) {
+      dx=-this.startTx; dy=-this.startTy;
+    }
+    else {
+      dx=this.px(0)-this.px(1); dy=this.py(0)-this.py(1);
+      double len=Math.hypot(dx, dy);
+      dx/=len; dy/=len;
+    }
+    this.addCapInner(this.px(0), this.py(0), dx, dy);
+    out.closePolygon();
+  }
+  
+  /**
+   * Adds the offset points of the left side of the sub-path, traversed 
+   * forward or backward. For open sub-paths, the first and last points
+   * are offset along the normal of the end segments (or the curve tangents);
+   * for the closed ones, every point gets a join.
+   */
+  private void addSide(int n, boolean forward, boolean closed) {
+    PolygonBuffer out=this.output;
+    double hw=this.halfWidth;
+    int first=closed ? 0 : 1, last=closed ? n : n-1;
+    if(!closed) {
+      // start point of this side
+      int i0=forward ? 0 : n-1, i1=forward ? 1 : n-2;
+      double dx, dy;
+      if(forward && this.hasStartTangent) {
+        dx=this.startTx; dy=this.startTy;
+      }
+      else if(!forward && this.hasEndTangent) {
+        dx=-this.endTx; dy=-this.endTy;
+      }
+      else {
+        dx=this.px(i1)-this.px(i0); dy=this.py(i1)-this.py(i0);
+        double len=Math.hypot(dx, dy);
+        dx/=len; dy/=len;
+      }
+      out.addPoint(this.px(i0)-dy*hw, this.py(i0)+dx*hw);
+    }
+    for(int k=first; k<last; k++) {
+      int iPrev=(k-1+n)%n, i=k, iNext=(k+1)%n;
+      if(!forward) {
+        iPrev=n-1-iPrev; i=n-1-i; iNext=n-1-iNext;
+      }
+      double dx0=this.px(i)-this.px(iPrev), dy0=this.py(i)-this.py(iPrev);
+      double dx1=this.px(iNext)-this.px(i), dy1=this.py(iNext)-this.py(i);
+      double l0=Math.hypot(dx0, dy0), l1=Math.hypot(dx1, dy1);
+      dx0/=l0; dy0/=l0; dx1/=l1; dy1/=l1;
+      this.addJoin(this.px(i), this.py(i), dx0, dy0, dx1, dy1);
+    }
+    if(!closed) {
+      int i0=forward ? n-1 : 0, i1=forward ? n-2 : 1;
+      double dx, dy;
+      if(forward && this.hasEndTangent) {
+        dx=this.endTx; dy=this.endTy;
+      }
+      else if(!forward && this.hasStartTangent) {
+        dx=-this.startTx; dy=-this.startTy;
+      }
+      else {
+        dx=this.px(i0)-this.px(i1); dy=this.py(i0)-this.py(i1);
+        double len=Math.hypot(dx, dy);
+        dx/=len; dy/=len;
+      }
+      out.addPoint(this.px(i0)-dy*hw, this.py(i0)+dx*hw);
+    }
+  }
+  
+  /**
+   * Adds the points of the left side around the vertex <code>(x, y)</code>,
+   * where the direction changes from <code>(dx0, dy0)</code> to 
+   * <code>(dx1, dy1)</code> (unit vectors).
+   */
+  private void addJoin(double x, double y, double dx0, double dy0, double dx1, double dy1) {
+    PolygonBuffer out=this.output;
+    double hw=this.halfWidth;
+    double n0x=-dy0*hw, n0y=dx0*hw;
+    double n1x=-dy1*hw, n1y=dx1*hw;
+    double cross=dx0*dy1-dy0*dx1;
+    double dot=dx0*dx1+dy0*dy1;
+    if(Math.abs(cross)<=1.0e-12 && dot>0) { // collinear, no join needed
+      out.addPoint(x+n0x, y+n0y);
+      return;
+    }
+    out.addPoint(x+n0x, y+n0y);
+    if(cross>0 && dot>-1+1.0e-12) { // turning left: inner side, pass through the vertex
+      out.addPoint(x, y);
+    }
+    else { // outer side
+      switch(this.join) {
+        case BasicStroke.JOIN_MITER: {
+          double denom=1+dot;
+          if(denom>1.0e-12) {
+            double mx=(n0x+n1x)/denom, my=(n0y+n1y)/denom;
+            if(Math.hypot(mx, my)<=this.miterLimit*hw) {
+              out.addPoint(x+mx, y+my);
+            }
+          }
+          break;
+        }
+        case BasicStroke.JOIN_ROUND: {
+          double sweep=Math.atan2(n0x*n1y-n0y*n1x, n0x*n1x+n0y*n1y);
+          if(sweep>0) {
+            sweep-=2*Math.PI;
+          }
+          this.addArc(x, y, Math.atan2(n0y, n0x), sweep);
+          break;
+        }
+        default: // bevel: just connect the offset points
+          break;
+      }
+    }
+    out.addPoint(x+n1x, y+n1y);
+  }
+
+  /**
+   * Adds the intermediate points (if any) of a cap at <code>(x, y)</code>, 
+   * oriented along the <code>(dx, dy)</code> unit direction: from the
+   * left offset point to the right one, both excluded.
+   */
+  private void addCapInner(double x, double y, double dx, double dy) {
+    double hw=this.halfWidth;
+    switch(this.cap) {
+      case BasicStroke.CAP_SQUARE:
+        this.output.addPoint(x-dy*hw+dx*hw, y+dx*hw+dy*hw);
+        this.output.addPoint(x+dy*hw+dx*hw, y-dx*hw+dy*hw);
+        break;
+      case BasicStroke.CAP_ROUND:
+        this.addArc(x, y, Math.atan2(dx, -dy), -Math.PI);
+        break;
+      default: // butt: nothing
+        break;
+    }
+  }
+
+  /**
+   * Adds a full cap at <code>(x, y)</code> (both offset points included), 
+   * used for the single point sub-paths.
+   */
+  private void addCap(double x, double y, double dx, double dy) {
+    double hw=this.halfWidth;
+    this.output.addPoint(x-dy*hw, y+dx*hw);
+    this.addCapInner(x, y, dx, dy);
+    this.output.addPoint(x+dy*hw, y-dx*hw);
+  }
+  
+  /**
+   * Adds the interior points of an arc of radius {@link #halfWidth}
+   * around <code>(cx, cy)</code>, starting at the <code>startAngle</code>
+   * and sweeping <code>sweep</code> radians (the ends excluded).
+   */
+  private void addArc(double cx, double cy, double startAngle, double sweep) {
+    int steps=(int)Math.ceil(Math.abs(sweep)/this.arcStep);
+    double step=sweep/steps;
+    double hw=this.halfWidth;
+    for(int k=1; k<steps; k++) {
+      double a=startAngle+k*step;
+      this.output.addPoint(cx+hw*Math.cos(a), cy+hw*Math.sin(a));
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.bezier.stroking;
+
+import java.awt.geom.CubicCurve2D;
+
+import com.caffeineowl.graphics.bezier.OffsetApproxCriterion;
+
+/**
+ * An {@link OffsetApproxCriterion} that samples the original segment at a
+ * few (equally spaced) parameter values, computes the exact offset points
+ * (<code>B(t)+offset*N(t)</code>, with <code>N</code> the unit normal) 
+ * and requires a split whenever the distance to the point of the approximating
+ * cubic at the same parameter exceeds the tolerance.<br>
+ * As the offset approximation keeps the end points exact and the end tangents
+ * parallel to the original, the parametrisations are close enough for 
+ * the "same parameter" distance to be a (slightly pessimistic) estimate of the
+ * distance between the curves.
+ */
+public class SampledOffsetCriterion
+implements OffsetApproxCriterion {
+  
+  static protected final double defaultTol=1.0e-2;
+  static protected final int defaultNumSamples=5;
+  
+  /**
+   * The squared tolerance.
+   */
+  protected double sqTol;
+  /**
+   * The number of intervals the <code>[0, 1]</code> range is divided into.
+   * The samples are taken at the interior points.
+   */
+  protected int numIntervals;
+
+  /**
+   * {@linkplain #SampledOffsetCriterion(double, int) Initialises} an instance
+   * with a tolerance of <code>1.0e-2</code> and <code>5</code> samples.
+   */
+  public SampledOffsetCriterion() {
+    this(SampledOffsetCriterion.defaultTol, SampledOffsetCriterion.defaultNumSamples);
+  }
+  
+  /**
+   * {@linkplain #SampledOffsetCriterion(double, int) Initialises} an instance
+   * with the provided tolerance and <code>5</code> samples.
+   */
+  public SampledOffsetCriterion(double tolerance) {
+    this(tolerance, SampledOffsetCriterion.defaultNumSamples);
+  }
+  
+  /**
+   * Initialises an instance with the provided tolerance and number of samples.
+   * @param tolerance maximum accepted distance between the exact offset and
+   * the approximation. 
+   * @param numSamples how many interior points to check (minimum <code>1</code>).
+   */
+  public SampledOffsetCriterion(double tolerance, int numSamples) {
+    if(tolerance<0) {
+      tolerance=-tolerance;
+    }
+    if(0.0==tolerance) {
+      tolerance=2.0*Math.sqrt(Double.MIN_VALUE);
+    }
+    this.sqTol=tolerance*tolerance;
+    this.numIntervals=(numSamples<1 ? 1 : numSamples)+1;
+  }
+
+  @Override
+  public boolean shouldSplit(CubicCurve2D segment, double offset, CubicCurve2D approx) {
+    double x0=segment.getX1(), y0=segment.getY1();
+    double cx0=segment.getCtrlX1(), cy0=segment.getCtrlY1();
+    double cx1=segment.getCtrlX2(), cy1=segment.getCtrlY2();
+    double x1=segment.getX2(), y1=segment.getY2();
+    
+    double ax0=approx.getX1(), ay0=approx.getY1();
+    double acx0=approx.getCtrlX1(), acy0=approx.getCtrlY1();
+    double acx1=approx.getCtrlX2(), acy1=approx.getCtrlY2();
+    double ax1=approx.getX2(), ay1=approx.getY2();
+    
+    for(int i=1; i<this.numIntervals; i++) {
+      double t=(double)i/this.numIntervals;
+      double u=1-t;
+      double b0=u*u*u, b1=3*u*u*t, b2=3*u*t*t, b3=t*t*t;
+      // derivative/3
+      double dx=u*u*(cx0-x0)+2*u*t*(cx1-cx0)+t*t*(x1-cx1);
+      double dy=u*u*(cy0-y0)+2*u*t*(cy1-cy0)+t*t*(y1-cy1);
+      double len=Math.hypot(dx, dy);
+      if(0.0==len) { // a cusp, the normal is not defined
+        continue;
+      }
+      double ex=b0*x0+b1*cx0+b2*cx1+b3*x1-offset*dy/len;
+      double ey=b0*y0+b1*cy0+b2*cy1+b3*y1+offset*dx/len;
+      double px=b0*ax0+b1*acx0+b2*acx1+b3*ax1;
+      double py=b0*ay0+b1*acy0+b2*acy1+b3*ay1;
+      px-=ex; py-=ey;
+      if(px*px+py*py>this.sqTol) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,931 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.raster;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.IllegalPathStateException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.QuadCurve2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.caffeineowl.graphics.PolygonBuffer;
+import com.caffeineowl.graphics.bezier.BezierUtils;
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.CubicSubdivisionCriterion;
+import com.caffeineowl.graphics.bezier.QuadSegmentConsumer;
+import com.caffeineowl.graphics.bezier.QuadSubdivisionCriterion;
+
+/**
+ * An anti-aliasing rasterizer for flattened paths, independent of the
+ * Java2D pipelines (so usable, and fast, on headless servers).
+ * <p>The path is received as line edges, either 
+ * {@linkplain #moveTo(double, double) explicitly} or as the segments 
+ * {@linkplain BezierUtils#adaptiveHalving(CubicCurve2D, CubicSubdivisionCriterion, CubicSegmentConsumer) 
+ * the adaptive halving} produces (the chord of each segment makes an edge),
+ * in pixel coordinates: the pixel <code>(x, y)</code> is the unit square 
+ * <code>[x, x+1) &times; [y, y+1)</code>.
+ * <p>The coverage of a pixel is computed analytically, as the signed area
+ * of the path inside the pixel: each edge accumulates, per scanline, the
+ * area it covers in the pixels it crosses and the height it spans in the
+ * pixel after, so a running sum along the scanline yields the winding
+ * area of each pixel. The sum is then mapped through the
+ * {@linkplain #setWindingRule(int) winding rule} (<code>min(1, |a|)</code>
+ * for <code>WIND_NON_ZERO</code>, the distance to the nearest even
+ * integer for <code>WIND_EVEN_ODD</code>); this is exact where the path 
+ * does not overlap itself inside a pixel.
+ * <p>The target is split into horizontal bands of 
+ * {@linkplain #setBandHeight(int) a few scanlines}, each band being 
+ * rasterized independently, possibly in parallel; the edges are binned
+ * into the bands they span before. 
+ * <p>The curves can also be {@linkplain #curveTo(double, double, double, double, double, double) 
+ * received directly}, bypassing the flattening: each curve is split
+ * into pieces monotonic in <code>y</code>, kept as such, and each band
+ * accumulates the pieces crossing it scanline by scanline, the 
+ * parameters where a piece crosses the scanlines being found by a 
+ * bracketed root-finding. Only inside a scanline is a piece replaced by
+ * chords, as many as its curvature there requires for the 
+ * {@linkplain #setCurveTolerance(double) tolerance} (mostly one, at 
+ * glyph sizes).
+ * <p>Not thread safe while receiving edges; the filling methods only 
+ * read the edges and the curve pieces.
+ */
+public class ScanlineRasterizer
+implements CubicSegmentConsumer, QuadSegmentConsumer {
+  
+  /** Edges, <code>x0, y0, x1, y1</code> each */
+  protected double[] edges=new double[256];
+  protected int      numEdges=0;
+  
+  /** 
+   * Curve pieces monotonic in <code>y</code>, in the power basis 
+   * (<code>v(t)=((a*t+b)*t+c)*t+d</code>): 
+   * <code>ax, bx, cx, dx, ay, by, cy, dy, xEnd, yEnd</code> each
+   */
+  protected double[] curves=new double[16*ScanlineRasterizer.CURVE_SIZE];
+  protected int      numCurves=0;
+  protected double   curveTolerance=0.05;
+  
+  static private final int CURVE_SIZE=10;
+  
+  protected boolean  hasCurrentPoint=false;
+  protected double   startX;
+  protected double   startY;
+  protected double   lastX;
+  protected double   lastY;
+  
+  protected int      windingRule=Path2D.WIND_NON_ZERO;
+  protected int      bandHeight=32;
+  
+  // scratch, for flattening shapes
+  private CubicCurve2D.Double cubic=new CubicCurve2D.Double();
+  private QuadCurve2D.Double  quad=new QuadCurve2D.Double();
+  // scratch, for the decomposition of the curves received directly
+  private double[] pieces=new double[24];
+  
+  public ScanlineRasterizer() {
+  }
+  
+  /**
+   * Removes all the edges, keeping the allocated storage.
+   */
+  public void reset() {
+    this.numEdges=0;
+    this.numCurves=0;
+    this.hasCurrentPoint=false;
+  }
+  
+  public int getNumEdges() {
+    return this.numEdges;
+  }
+  
+  /**
+   * @return the number of the (<code>y</code> monotonic) pieces the curves
+   *   {@linkplain #curveTo(double, double, double, double, double, double) received directly}
+   *   were split into
+   */
+  public int getNumCurves() {
+    return this.numCurves;
+  }
+  
+  public double getCurveTolerance() {
+    return this.curveTolerance;
+  }
+  
+  /**
+   * Sets the maximum distance, in pixels, between a curve received 
+   * directly and the chords replacing it inside a scanline.
+   */
+  public void setCurveTolerance(double curveTolerance) {
+    if(false==(curveTolerance>0.0)) {
+      throw new IllegalArgumentException("Invalid curve tolerance: "+curveTolerance);
+    }
+    this.curveTolerance=curveTolerance;
+  }
+  
+  public int getWindingRule() {
+    return this.windingRule;
+  }
+  
+  /**
+   * @param windingRule either {@link Path2D#WIND_NON_ZERO} or {@link Path2D#WIND_EVEN_ODD}
+   */
+  public void setWindingRule(int windingRule) {
+    if(Path2D.WIND_NON_ZERO!=windingRule && Path2D.WIND_EVEN_ODD!=windingRule) {
+      throw new IllegalArgumentException("Invalid winding rule: "+windingRule);
+    }
+    this.windingRule=windingRule;
+  }
+  
+  public int getBandHeight() {
+    return this.bandHeight;
+  }
+  
+  /**
+   * Sets the height, in scanlines, of the bands rasterized independently.
+   */
+  public void setBandHeight(int bandHeight) {
+    if(bandHeight<1) {
+      throw new IllegalArgumentException("Invalid band height: "+bandHeight);
+    }
+    this.bandHeight=bandHeight;
+  }
+  
+  /**
+   * Starts a new contour; the current one, if any, is closed (filling
+   * always considers the contours closed).
+   */
+  public void moveTo(double x, double y) {
+    this.closePath();
+    this.startX=this.lastX=x;
+    this.startY=this.lastY=y;
+    this.hasCurrentPoint=true;
+  }
+  
+  /**
+   * Adds an edge from the current point.
+   */
+  public void lineTo(double x, double y) {
+    if(false==this.hasCurrentPoint) {
+      this.moveTo(x, y);
+      return;
+    }
+    this.addEdge(this.lastX, this.lastY, x, y);
+    this.lastX=x;
+    this.lastY=y;
+  }
+  
+  /**
+   * Closes the current contour with an edge back to its start.
+   */
+  public void closePath() {
+    if(this.hasCurrentPoint) {
+      this.addEdge(this.lastX, this.lastY, this.startX, this.startY);
+      this.lastX=this.startX;
+      this.lastY=this.startY;
+    }
+  }
+  
+  /**
+   * Receives a segment of a flattened cubic, adding its chord as an edge.
+   * A segment starting the curve (<code>startT==0</code>) starts a new 
+   * contour, unless it starts exactly at the current point.
+   */
+  @Override
+  public void processSegment(CubicCurve2D segment, double startT, double endT) {
+    if(0.0==startT) {
+      this.startCurve(segment.getX1(), segment.getY1());
+    }
+    this.lineTo(segment.getX2(), segment.getY2());
+  }
+  
+  /**
+   * Receives a segment of a flattened quad.
+   * @see #processSegment(CubicCurve2D, double, double)
+   */
+  @Override
+  public void processSegment(QuadCurve2D segment, double startT, double endT) {
+    if(0.0==startT) {
+      this.startCurve(segment.getX1(), segment.getY1());
+    }
+    this.lineTo(segment.getX2(), segment.getY2());
+  }
+  
+  private void startCurve(double x0, double y0) {
+    if(false==this.hasCurrentPoint || this.lastX!=x0 || this.lastY!=y0) {
+      this.moveTo(x0, y0);
+    }
+  }
+  
+  /**
+   * Flattens the provided shape (using the adaptive halving with the 
+   * provided criteria) into edges, also adopting the winding rule of 
+   * the shape.
+   * @param shape the shape to add
+   * @param at the transformation to pixel coordinates (may be <code>null</code>)
+   * @param cubicCrit the criterion for flattening cubics (<code>null</code> 
+   *   for the default); for anti-aliasing, a tolerance of a quarter of
+   *   a pixel or less is appropriate 
+   * @param quadCrit the criterion for flattening quads (<code>null</code> for 
+   *   the default one)
+   */
+  public void addShape(
+    Shape shape, AffineTransform at,
+    CubicSubdivisionCriterion cubicCrit,
+    QuadSubdivisionCriterion  quadCrit
+  ) {
+    double[] c=new double[6];
+    PathIterator it=shape.getPathIterator(at);
+    this.setWindingRule(it.getWindingRule());
+    for(; !it.isDone(); it.next()) {
+      switch(it.currentSegment(c)) {
+        case PathIterator.SEG_MOVETO:
+          this.moveTo(c[0], c[1]);
+          break;
+        case PathIterator.SEG_LINETO:
+          this.lineTo(c[0], c[1]);
+          break;
+        case PathIterator.SEG_QUADTO:
+          this.quad.setCurve(this.lastX, this.lastY, c[0], c[1], c[2], c[3]);
+          BezierUtils.adaptiveHalving(this.quad, quadCrit, this);
+          break;
+        case PathIterator.SEG_CUBICTO:
+          this.cubic.setCurve(this.lastX, this.lastY, c[0], c[1], c[2], c[3], c[4], c[5]);
+          BezierUtils.adaptiveHalving(this.cubic, cubicCrit, this);
+          break;
+        case PathIterator.SEG_CLOSE:
+          this.closePath();
+          break;
+      }
+    }
+    this.closePath();
+  }
+  
+  /**
+   * Adds the provided shape, the curves being 
+   * {@linkplain #curveTo(double, double, double, double, double, double) 
+   * received directly}, without flattening; also adopts the winding rule 
+   * of the shape.
+   * @param shape the shape to add
+   * @param at the transformation to pixel coordinates (may be <code>null</code>)
+   */
+  public void addShapeDirect(Shape shape, AffineTransform at) {
+    double[] c=new double[6];
+    PathIterator it=shape.getPathIterator(at);
+    this.setWindingRule(it.getWindingRule());
+    for(; !it.isDone(); it.next()) {
+      switch(it.currentSegment(c)) {
+        case PathIterator.SEG_MOVETO:
+          this.moveTo(c[0], c[1]);
+          break;
+        case PathIterator.SEG_LINETO:
+          this.lineTo(c[0], c[1]);
+          break;
+        case PathIterator.SEG_QUADTO:
+          this.quadTo(c[0], c[1], c[2], c[3]);
+          break;
+        case PathIterator.SEG_CUBICTO:
+          this.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+          break;
+        case PathIterator.SEG_CLOSE:
+          this.closePath();
+          break;
+      }
+    }
+    this.closePath();
+  }
+  
+  /**
+   * Adds a quadratic from the current point, without flattening it.
+   * @throws IllegalPathStateException if there is no current point
+   * @see #curveTo(double, double, double, double, double, double)
+   */
+  public void quadTo(double cx, double cy, double x1, double y1) {
+    if(false==this.hasCurrentPoint) {
+      throw new IllegalPathStateException("missing initial moveto");
+    }
+    this.quad.setCurve(this.lastX, this.lastY, cx, cy, x1, y1);
+    double[] p=this.pieces;
+    int n=BezierUtils.monotonicDecomposition(this.quad, false, true, p, 0);
+    for(int i=0; i<n; i++) {
+      int pos=6*i;
+      boolean last=(n-1==i);
+      // power basis: v(t)=v0+2*(v1-v0)*t+(v0-2*v1+v2)*t^2
+      this.addCurvePiece(
+        0.0, p[pos]-2*p[pos+2]+p[pos+4], 2*(p[pos+2]-p[pos]), p[pos],
+        0.0, p[pos+1]-2*p[pos+3]+p[pos+5], 2*(p[pos+3]-p[pos+1]), p[pos+1],
+        // the exact end point, whatever the rounding of the pieces
+        last ? x1 : p[pos+4], last ? y1 : p[pos+5]
+      );
+    }
+    this.lastX=x1;
+    this.lastY=y1;
+  }
+  
+  /**
+   * Adds a cubic from the current point, without flattening it: the curve
+   * is split in pieces monotonic in <code>y</code>, which are kept 
+   * until the filling accumulates them scanline by scanline.
+   * @throws IllegalPathStateException if there is no current point
+   */
+  public void curveTo(double cx0, double cy0, double cx1, double cy1, double x1, double y1) {
+    if(false==this.hasCurrentPoint) {
+      throw new IllegalPathStateException("missing initial moveto");
+    }
+    this.cubic.setCurve(this.lastX, this.lastY, cx0, cy0, cx1, cy1, x1, y1);
+    double[] p=this.pieces;
+    int n=BezierUtils.monotonicDecomposition(this.cubic, false, true, p, 0);
+    for(int i=0; i<n; i++) {
+      int pos=8*i;
+      boolean last=(n-1==i);
+      double x0=p[pos], xc0=p[pos+2], xc1=p[pos+4], x3=p[pos+6];
+      double y0=p[pos+1], yc0=p[pos+3], yc1=p[pos+5], y3=p[pos+7];
+      // power basis: v(t)=((a*t+b)*t+c)*t+d
+      this.addCurvePiece(
+        -x0+3*xc0-3*xc1+x3, 3*x0-6*xc0+3*xc1, 3*(xc0-x0), x0,
+        -y0+3*yc0-3*yc1+y3, 3*y0-6*yc0+3*yc1, 3*(yc0-y0), y0,
+        last ? x1 : x3, last ? y1 : y3
+      );
+    }
+    this.lastX=x1;
+    this.lastY=y1;
+  }
+  
+  /**
+   * Stores a curve piece monotonic in <code>y</code>, given in the power
+   * basis (<code>a=0</code> for quads) and ending at 
+   * <code>(xEnd, yEnd)</code>.
+   */
+  private void addCurvePiece(
+    double ax, double bx, double cx, double dx,
+    double ay, double by, double cy, double dy,
+    double xEnd, double yEnd
+  ) {
+    if(dy==yEnd) { // horizontal, no coverage
+      return;
+    }
+    int pos=this.numCurves*ScanlineRasterizer.CURVE_SIZE;
+    if(pos+ScanlineRasterizer.CURVE_SIZE>this.curves.length) {
+      this.curves=Arrays.copyOf(this.curves, this.curves.length<<1);
+    }
+    double[] c=this.curves;
+    c[pos]=ax;   c[pos+1]=bx; c[pos+2]=cx; c[pos+3]=dx;
+    c[pos+4]=ay; c[pos+5]=by; c[pos+6]=cy; c[pos+7]=dy;
+    c[pos+8]=xEnd;
+    c[pos+9]=yEnd;
+    this.numCurves++;
+  }
+  
+  /**
+   * Adds the (implicitly closed) polygons of a buffer, e.g. the outline
+   * of a stroke.
+   */
+  public void addPolygons(PolygonBuffer polygons) {
+    this.closePath();
+    this.hasCurrentPoint=false;
+    int numPolys=polygons.getNumPolygons();
+    for(int p=0; p<numPolys; p++) {
+      int start=polygons.getPolygonStart(p), end=polygons.getPolygonEnd(p);
+      for(int i=start; i<end; i++) {
+        int next=(i+1<end) ? i+1 : start;
+        this.addEdge(
+          polygons.getX(i), polygons.getY(i), polygons.getX(next), polygons.getY(next)
+        );
+      }
+    }
+  }
+  
+  /**
+   * Adds a line edge, in pixel coordinates. The edges must make closed
+   * contours for the fill to be meaningful.
+   */
+  public void addEdge(double x0, double y0, double x1, double y1) {
+    if(y0==y1) { // no coverage
+      return;
+    }
+    int pos=this.numEdges<<2;
+    if(pos+4>this.edges.length) {
+      this.edges=Arrays.copyOf(this.edges, this.edges.length<<1);
+    }
+    this.edges[pos]=x0;
+    this.edges[pos+1]=y0;
+    this.edges[pos+2]=x1;
+    this.edges[pos+3]=y1;
+    this.numEdges++;
+  }
+  
+  // ------------------------------------------------------------------
+  // filling
+  
+  /**
+   * Receives the coverage of the pixels, one scanline of a band at a time.
+   */
+  static private abstract class CoverageWriter {
+    /**
+     * @param y the scanline
+     * @param coverage the coverage of the pixels of the scanline, 
+     *   <code>0..1</code>
+     * @param width the number of pixels in the scanline
+     */
+    abstract void writeScanline(int y, double[] coverage, int width);
+  }
+  
+  /**
+   * Writes the coverage of the path, <code>0..255</code>, into an alpha 
+   * mask (all the pixels are overwritten).
+   * @param mask the mask, row-major, <code>width</code> bytes per row
+   * @param executor the executor running the bands, or <code>null</code>
+   *   for rasterizing sequentially, in the calling thread
+   * @throws InterruptedException if interrupted while waiting for the bands
+   * @throws ExecutionException if the rasterization of a band failed
+   */
+  public void fillMask(
+    final byte[] mask, int width, int height, ExecutorService executor
+  ) throws InterruptedException, ExecutionException {
+    if(mask.length<width*height) {
+      throw new IllegalArgumentException("Mask too small for "+width+"x"+height);
+    }
+    this.fill(
+      width, height, executor,
+      new CoverageWriter() {
+        @Override
+        void writeScanline(int y, double[] coverage, int width) {
+          int offset=y*width;
+          for(int x=0; x<width; x++) {
+            mask[offset+x]=(byte)(int)(coverage[x]*255.0+0.5);
+          }
+        }
+      }
+    );
+  }
+  
+  /**
+   * Paints the path, in the provided colour, over non-premultiplied ARGB 
+   * pixels (as in a <code>BufferedImage.TYPE_INT_ARGB</code>), 
+   * using the <i>source over</i> compositing rule, the colour alpha being 
+   * modulated by the coverage of the path.
+   * @param pixels the pixels, row-major, <code>width</code> per row
+   * @param argb the colour, non-premultiplied
+   * @param executor the executor running the bands, or <code>null</code>
+   *   for rasterizing sequentially, in the calling thread
+   * @throws InterruptedException if interrupted while waiting for the bands
+   * @throws ExecutionException if the rasterization of a band failed
+   */
+  public void fillPixels(
+    final int[] pixels, int width, int height, final int argb, ExecutorService executor
+  ) throws InterruptedException, ExecutionException {
+    if(pixels.length<width*height) {
+      throw new IllegalArgumentException("Pixels too few for "+width+"x"+height);
+    }
+    final double srcA=(argb>>>24)/255.0;
+    final int srcR=(argb>>16) & 0xFF, srcG=(argb>>8) & 0xFF, srcB=argb & 0xFF;
+    this.fill(
+      width, height, executor,
+      new CoverageWriter() {
+        @Override
+        void writeScanline(int y, double[] coverage, int width) {
+          int offset=y*width;
+          for(int x=0; x<width; x++) {
+            double a=srcA*coverage[x];
+            if(a>0.0) {
+              pixels[offset+x]=ScanlineRasterizer.srcOver(srcR, srcG, srcB, a, pixels[offset+x]);
+            }
+          }
+        }
+      }
+    );
+  }
+  
+  static private int srcOver(int srcR, int srcG, int srcB, double srcA, int dst) {
+    double dstA=(dst>>>24)/255.0*(1.0-srcA);
+    double outA=srcA+dstA;
+    int r=(int)((srcR*srcA+((dst>>16) & 0xFF)*dstA)/outA+0.5);
+    int g=(int)((srcG*srcA+((dst>>8) & 0xFF)*dstA)/outA+0.5);
+    int b=(int)((srcB*srcA+(dst & 0xFF)*dstA)/outA+0.5);
+    int a=(int)(outA*255.0+0.5);
+    return (a<<24) | (r<<16) | (g<<8) | b;
+  }
+  
+  private void fill(
+    final int width, final int height, ExecutorService executor, final CoverageWriter writer
+  ) throws InterruptedException, ExecutionException {
+    if(width<=0 || height<=0) {
+      return;
+    }
+    this.closePath();
+    this.hasCurrentPoint=false;
+    final int bandH=this.bandHeight;
+    final int numBands=(height+bandH-1)/bandH;
+    final double[] e=this.edges;
+    final int[] bandStarts=new int[numBands+1];
+    final int[] bandEdges=this.binIntoBands(e, this.numEdges, 4, 1, 3, numBands, bandStarts);
+    final double[] c=this.curves;
+    final int[] curveStarts=new int[numBands+1];
+    final int[] bandCurves=this.binIntoBands(
+      c, this.numCurves, ScanlineRasterizer.CURVE_SIZE, 7, 9, numBands, curveStarts
+    );
+    final int rule=this.windingRule;
+    final double tolerance=this.curveTolerance;
+    if(null==executor) {
+      double[] acc=new double[(width+2)*bandH];
+      double[] coverage=new double[width];
+      for(int b=0; b<numBands; b++) {
+        ScanlineRasterizer.fillBand(
+          e, bandEdges, bandStarts[b], bandStarts[b+1],
+          c, bandCurves, curveStarts[b], curveStarts[b+1], tolerance,
+          b*bandH, Math.min(height, (b+1)*bandH), width, rule, acc, coverage, writer
+        );
+      }
+      return;
+    }
+    ArrayList<Future<?>> results=new ArrayList<Future<?>>(numBands);
+    for(int b=0; b<numBands; b++) {
+      final int band=b;
+      results.add(
+        executor.submit(
+          new Callable<Object>() {
+            @Override
+            public Object call() {
+              ScanlineRasterizer.fillBand(
+                e, bandEdges, bandStarts[band], bandStarts[band+1],
+                c, bandCurves, curveStarts[band], curveStarts[band+1], tolerance,
+                band*bandH, Math.min(height, (band+1)*bandH), width, rule,
+                new double[(width+2)*bandH], new double[width], writer
+              );
+              return null;
+            }
+          }
+        )
+      );
+    }
+    for(Future<?> f : results) {
+      f.get(); // also makes the writes to the target visible to this thread
+    }
+  }
+  
+  /**
+   * Bins the edges or the curve pieces into the bands they span 
+   * (counting sort).
+   * @param data the edges or the curve pieces, <code>size</code> values each
+   * @param y0Index the index, inside an item, of its start <code>y</code>
+   * @param y1Index the index, inside an item, of its end <code>y</code>
+   * @param bandStarts receives, for each band <code>b</code>, the start
+   *   of its items in the result (which end at <code>bandStarts[b+1]</code>) 
+   * @return the indices of the items of each band
+   */
+  private int[] binIntoBands(
+    double[] data, int count, int size, int y0Index, int y1Index,
+    int numBands, int[] bandStarts
+  ) {
+    for(int i=0; i<count; i++) {
+      int pos=i*size;
+      int first=this.bandOf(Math.min(data[pos+y0Index], data[pos+y1Index]), numBands);
+      int last=this.bandOf(Math.max(data[pos+y0Index], data[pos+y1Index]), numBands);
+      for(int b=first; b<=last; b++) {
+        bandStarts[b+1]++;
+      }
+    }
+    for(int b=0; b<numBands; b++) {
+      bandStarts[b+1]+=bandStarts[b];
+    }
+    int[] toRet=new int[bandStarts[numBands]];
+    int[] fillPos=Arrays.copyOf(bandStarts, numBands);
+    for(int i=0; i<count; i++) {
+      int pos=i*size;
+      int first=this.bandOf(Math.min(data[pos+y0Index], data[pos+y1Index]), numBands);
+      int last=this.bandOf(Math.max(data[pos+y0Index], data[pos+y1Index]), numBands);
+      for(int b=first; b<=last; b++) {
+        toRet[fillPos[b]++]=i;
+      }
+    }
+    return toRet;
+  }
+  
+  /** The band a coordinate falls into, clamped to the valid bands */
+  private int bandOf(double y, int numBands) {
+    double b=Math.floor(y/this.bandHeight);
+    return b<0 ? 0 : (b>=numBands ? numBands-1 : (int)b);
+  }
+  
+  /**
+   * Rasterizes a band: accumulates the edges and the curve pieces, then
+   * writes the coverage, scanline by scanline.
+   */
+  static private void fillBand(
+    double[] edges, int[] bandEdges, int from, int to,
+    double[] curves, int[] bandCurves, int curvesFrom, int curvesTo, double tolerance,
+    int bandY0, int bandY1, int width, int windingRule,
+    double[] acc, double[] coverage, CoverageWriter writer
+  ) {
+    int stride=width+2;
+    for(int i=from; i<to; i++) {
+      int pos=bandEdges[i]<<2;
+      ScanlineRasterizer.accumulateEdge(
+        edges[pos], edges[pos+1], edges[pos+2], edges[pos+3],
+        bandY0, bandY1, width, acc
+      );
+    }
+    for(int i=curvesFrom; i<curvesTo; i++) {
+      ScanlineRasterizer.accumulateCurve(
+        curves, bandCurves[i]*ScanlineRasterizer.CURVE_SIZE,
+        bandY0, bandY1, width, tolerance, acc
+      );
+    }
+    boolean evenOdd=Path2D.WIND_EVEN_ODD==windingRule;
+    for(int y=bandY0; y<bandY1; y++) {
+      int row=(y-bandY0)*stride;
+      double sum=0.0;
+      for(int x=0; x<width; x++) {
+        sum+=acc[row+x];
+        double a=Math.abs(sum);
+        if(evenOdd) {
+          a=a%2.0;
+          if(a>1.0) {
+            a=2.0-a;
+          }
+        }
+        else if(a>1.0) {
+          a=1.0;
+        }
+        coverage[x]=a;
+      }
+      writer.writeScanline(y, coverage, width);
+    }
+    Arrays.fill(acc, 0, (bandY1-bandY0)*stride, 0.0);
+  }
+  
+  /**
+   * Accumulates an edge into a band: the edge is clipped to the band 
+   * vertically, while horizontally its parts left of the target are 
+   * projected on <code>x=0</code> (they still cover whole scanlines) and its
+   * parts right of the target on <code>x=width</code> (they only touch the
+   * guard column).
+   */
+  static private void accumulateEdge(
+    double x0, double y0, double x1, double y1,
+    int bandY0, int bandY1, int width, double[] acc
+  ) {
+    double dir=1.0;
+    if(y0>y1) {
+      double tmp=x0; x0=x1; x1=tmp;
+      tmp=y0; y0=y1; y1=tmp;
+      dir=-1.0;
+    }
+    if(y1<=bandY0 || y0>=bandY1) {
+      return;
+    }
+    double dxdy=(x1-x0)/(y1-y0);
+    if(y0<bandY0) {
+      x0+=(bandY0-y0)*dxdy;
+      y0=bandY0;
+    }
+    if(y1>bandY1) {
+      x1-=(y1-bandY1)*dxdy;
+      y1=bandY1;
+    }
+    double xl=Math.min(x0, x1), xr=Math.max(x0, x1);
+    if(xl>=0.0 && xr<=width) { // the usual case, nothing to clamp
+      ScanlineRasterizer.accumulateLine(x0, y0, x1, y1, dir, bandY0, width+2, acc);
+      return;
+    }
+    // split where the edge crosses x=0 and x=width, then clamp
+    double ya=y0, yb=y1;
+    if(xl<0.0 && xr>0.0) {
+      ya=y0+(0.0-x0)/dxdy;
+    }
+    if(xl<width && xr>width) {
+      yb=y0+(width-x0)/dxdy;
+    }
+    if(ya>yb) {
+      double tmp=ya; ya=yb; yb=tmp;
+    }
+    double prevY=y0, prevX=x0;
+    double[] cuts={ya, yb, y1};
+    for(int i=0; i<3; i++) {
+      double cy=Math.min(Math.max(cuts[i], prevY), y1);
+      if(cy>prevY) {
+        double cx=(cy==y1) ? x1 : x0+(cy-y0)*dxdy;
+        ScanlineRasterizer.accumulateLine(
+          ScanlineRasterizer.clamp(prevX, width), prevY,
+          ScanlineRasterizer.clamp(cx, width), cy,
+          dir, bandY0, width+2, acc
+        );
+        prevY=cy;
+        prevX=cx;
+      }
+    }
+  }
+  
+  /**
+   * Accumulates a curve piece monotonic in <code>y</code> into a band.
+   * The piece is walked along its parameter from one scanline crossing 
+   * to the next, each crossing being found by a root-finding bracketed
+   * by the previous one; inside a scanline, the piece is accumulated as
+   * the chords of a uniform subdivision, fine enough for the tolerance 
+   * by the bound on the distance between a curve and its chord 
+   * (<code>max|P''|*dt<sup>2</sup>/8</code>, <code>P''</code> being linear).
+   */
+  static private void accumulateCurve(
+    double[] curves, int pos, int bandY0, int bandY1, int width,
+    double tolerance, double[] acc
+  ) {
+    double ax=curves[pos],   bx=curves[pos+1], cx=curves[pos+2], dx=curves[pos+3];
+    double ay=curves[pos+4], by=curves[pos+5], cy=curves[pos+6], dy=curves[pos+7];
+    double xEnd=curves[pos+8], yEnd=curves[pos+9];
+    boolean down=yEnd>dy;
+    double yLo=Math.max(Math.min(dy, yEnd), bandY0);
+    double yHi=Math.min(Math.max(dy, yEnd), bandY1);
+    if(yLo>=yHi) {
+      return;
+    }
+    int stride=width+2;
+    double y=down ? yLo : yHi, yStop=down ? yHi : yLo;
+    double t=0.0, x=dx;
+    if(y!=dy) {
+      t=ScanlineRasterizer.solveMonotonic(ay, by, cy, dy, y, 0.0, 1.0);
+      x=((ax*t+bx)*t+cx)*t+dx;
+    }
+    while(y!=yStop) {
+      // the next scanline boundary, or the end of the piece in the band
+      double yNext=down ? Math.min(Math.floor(y)+1.0, yStop) : Math.max(Math.ceil(y)-1.0, yStop);
+      double tNext=1.0, xNext=xEnd;
+      if(yNext!=yEnd) {
+        tNext=ScanlineRasterizer.solveMonotonic(ay, by, cy, dy, yNext, t, 1.0);
+        xNext=((ax*tNext+bx)*tNext+cx)*tNext+dx;
+      }
+      double dt=tNext-t;
+      double ddx=Math.max(Math.abs(6*ax*t+2*bx), Math.abs(6*ax*tNext+2*bx));
+      double ddy=Math.max(Math.abs(6*ay*t+2*by), Math.abs(6*ay*tNext+2*by));
+      double dt2=0.125*dt*dt;
+      double distSq=dt2*dt2*(ddx*ddx+ddy*ddy);
+      int n=1;
+      if(distSq>tolerance*tolerance) {
+        n=(int)Math.ceil(Math.sqrt(Math.sqrt(distSq)/tolerance));
+      }
+      // the scanline, whichever the direction
+      int row=((int)(down ? y : yNext)-bandY0)*stride;
+      double xa=x, ya=y;
+      for(int i=1; i<=n; i++) {
+        double xb=xNext, yb=yNext;
+        if(i<n) {
+          double ti=t+dt*i/n;
+          xb=((ax*ti+bx)*ti+cx)*ti+dx;
+          yb=((ay*ti+by)*ti+cy)*ti+dy;
+        }
+        if(Math.min(xa, xb)>=0.0 && Math.max(xa, xb)<=width) {
+          ScanlineRasterizer.accumulateSpan(xa, xb, yb-ya, row, acc);
+        }
+        else {
+          ScanlineRasterizer.accumulateEdge(xa, ya, xb, yb, bandY0, bandY1, width, acc);
+        }
+        xa=xb;
+        ya=yb;
+      }
+      t=tNext;
+      x=xNext;
+      y=yNext;
+    }
+  }
+  
+  /**
+   * Solves <code>((a*t+b)*t+c)*t+d=v</code> for a polynomial monotonic 
+   * over <code>[tLo, tHi]</code>, which brackets the root: Newton 
+   * iterations starting from <code>tLo</code> (the previous root, when
+   * walking a curve), falling back to bisection whenever a step would 
+   * leave the (shrinking) bracket.
+   */
+  static private double solveMonotonic(
+    double a, double b, double c, double d, double v, double tLo, double tHi
+  ) {
+    double fLo=((a*tLo+b)*tLo+c)*tLo+d-v;
+    boolean negLo=fLo<0.0;
+    double t=tLo-fLo/((3*a*tLo+2*b)*tLo+c);
+    if(false==(t>tLo && t<tHi)) {
+      t=0.5*(tLo+tHi);
+    }
+    for(int i=0; i<64; i++) {
+      double f=((a*t+b)*t+c)*t+d-v;
+      if(Math.abs(f)<=1e-7) { // in pixels, way below any coverage change
+        break;
+      }
+      if((f<0.0)==negLo) {
+        tLo=t;
+      }
+      else {
+        tHi=t;
+      }
+      double next=t-f/((3*a*t+2*b)*t+c);
+      if(false==(next>tLo && next<tHi)) { // also catches a zero derivative
+        next=0.5*(tLo+tHi);
+      }
+      t=next;
+    }
+    return t;
+  }
+  
+  static private double clamp(double x, int width) {
+    return x<0.0 ? 0.0 : (x>width ? width : x);
+  }
+  
+  /**
+   * Accumulates the signed area of a line (going down, 
+   * <code>y0&lt;y1</code>, inside the target horizontally) into the
+   * scanlines it crosses: for each scanline, the area between the line
+   * and the right edge of each pixel it crosses goes into that pixel, and
+   * what is left of the scanline height into the pixel after.
+   */
+  static private void accumulateLine(
+    double x0, double y0, double x1, double y1,
+    double dir, int bandY0, int stride, double[] acc
+  ) {
+    double dxdy=(x1-x0)/(y1-y0);
+    double x=x0;
+    // all the coordinates are non-negative: the casts are floors
+    int yStart=(int)y0, yEnd=(int)y1;
+    if(yEnd<y1) {
+      yEnd++;
+    }
+    for(int y=yStart; y<yEnd; y++) {
+      double dy=Math.min(y+1.0, y1)-Math.max(y, y0);
+      double xNext=x+dxdy*dy;
+      ScanlineRasterizer.accumulateSpan(x, xNext, dy*dir, (y-bandY0)*stride, acc);
+      x=xNext;
+    }
+  }
+  
+  /**
+   * Accumulates the part of a line inside a scanline, from 
+   * <code>x0</code> to <code>x1</code> (in any order, inside the target), 
+   * spanning the signed height <code>d</code>.
+   * @param row the start of the scanline in the accumulation buffer
+   */
+  static private void accumulateSpan(double x0, double x1, double d, int row, double[] acc) {
+    double xa=Math.min(x0, x1), xb=Math.max(x0, x1);
+    int xai=(int)xa;
+    double xaFloor=xai;
+    int xbi=(int)xb;
+    if(xbi<xb) {
+      xbi++;
+    }
+    double xbCeil=xbi;
+    if(xbi<=xai+1) {
+      // within a single pixel
+      double xmf=0.5*(x0+x1)-xaFloor;
+      acc[row+xai]+=d-d*xmf;
+      acc[row+xai+1]+=d*xmf;
+    }
+    else {
+      double s=1.0/(xb-xa);
+      double xaf=xa-xaFloor;
+      double a0=0.5*s*(1.0-xaf)*(1.0-xaf);
+      double xbf=xb-xbCeil+1.0;
+      double am=0.5*s*xbf*xbf;
+      acc[row+xai]+=d*a0;
+      if(xbi==xai+2) {
+        acc[row+xai+1]+=d*(1.0-a0-am);
+      }
+      else {
+        double a1=s*(1.5-xaf);
+        acc[row+xai+1]+=d*(a1-a0);
+        for(int xi=xai+2; xi<xbi-1; xi++) {
+          acc[row+xi]+=d*s;
+        }
+        double a2=a1+(xbi-xai-3)*s;
+        acc[row+xbi-1]+=d*(1.0-a2-am);
+      }
+      acc[row+xbi]+=d*am;
+    }
+  }
+}
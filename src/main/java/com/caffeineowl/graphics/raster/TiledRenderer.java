@@ -0,0 +1,575 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.raster;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.IllegalPathStateException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.caffeineowl.graphics.PolyRoots;
+import com.caffeineowl.graphics.bezier.BezierUtils;
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.CubicSubdivisionCriterion;
+import com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullSubdivCriterion;
+
+/**
+ * Renders paths on large targets (e.g. map tiles of thousands of pixels
+ * on a side) by splitting the target into square tiles, each of them 
+ * flattened and {@linkplain ScanlineRasterizer rasterized} on its own, in
+ * parallel on a (work-stealing) <code>ForkJoinPool</code>.
+ * <p>The paths are kept as curves (lines and quads are stored as the
+ * equivalent cubics), in pixel coordinates, with their 
+ * {@linkplain BezierUtils#tightBounds(double[], int, double[], int) tight bounds};
+ * the curves are binned into the tile rows they span. For each tile, a 
+ * curve of its row is:
+ * <ul>
+ * <li>skipped, if it is right of the tile;</li>
+ * <li>reduced to a vertical edge on the left side of the tile, spanning
+ * the same scanlines, if it is left of the tile (the only thing that
+ * matters there is how much it winds the tile pixels);</li>
+ * <li>flattened, if it is inside the tile;</li>
+ * <li>otherwise {@linkplain BezierUtils#splitCurve(CubicCurve2D, double[], int, double[], int) split}
+ * where it crosses the lines of the tile sides, each piece being then 
+ * treated as above (so no flattening is done outside the tile).</li>
+ * </ul>
+ * The flattening tolerance is in pixels (it is applied after the 
+ * transformation to pixel coordinates), the same for all the tiles.
+ * <p>Not thread safe while receiving paths; the rendering methods only 
+ * read them.
+ */
+public class TiledRenderer {
+  
+  /** The curves, <code>8</code> values each, in pixel coordinates */
+  protected double[] curves=new double[8*64];
+  /** The tight bounds of the curves, <code>minX, minY, maxX, maxY</code> each */
+  protected double[] bounds=new double[4*64];
+  protected int      numCurves=0;
+  
+  protected boolean  hasCurrentPoint=false;
+  protected double   startX;
+  protected double   startY;
+  protected double   lastX;
+  protected double   lastY;
+  
+  protected int      tileSize;
+  protected int      windingRule=Path2D.WIND_NON_ZERO;
+  protected CubicSubdivisionCriterion subdivCriterion=new ConvexHullSubdivCriterion(0.1);
+  
+  /**
+   * @param tileSize the side of the tiles, in pixels
+   */
+  public TiledRenderer(int tileSize) {
+    if(tileSize<1) {
+      throw new IllegalArgumentException("Invalid tile size: "+tileSize);
+    }
+    this.tileSize=tileSize;
+  }
+  
+  /** Removes all the curves, keeping the allocated storage */
+  public void reset() {
+    this.numCurves=0;
+    this.hasCurrentPoint=false;
+  }
+  
+  public int getNumCurves() {
+    return this.numCurves;
+  }
+  
+  public int getTileSize() {
+    return this.tileSize;
+  }
+  
+  public int getWindingRule() {
+    return this.windingRule;
+  }
+  
+  /**
+   * @param windingRule either {@link Path2D#WIND_NON_ZERO} or {@link Path2D#WIND_EVEN_ODD}
+   */
+  public void setWindingRule(int windingRule) {
+    if(Path2D.WIND_NON_ZERO!=windingRule && Path2D.WIND_EVEN_ODD!=windingRule) {
+      throw new IllegalArgumentException("Invalid winding rule: "+windingRule);
+    }
+    this.windingRule=windingRule;
+  }
+  
+  public CubicSubdivisionCriterion getSubdivCriterion() {
+    return this.subdivCriterion;
+  }
+  
+  /**
+   * Sets the criterion for flattening the curves inside the tiles; it must
+   * be thread-safe (all the criteria in this library are immutable). The
+   * default is a {@link ConvexHullSubdivCriterion} with a tolerance of 
+   * a tenth of a pixel.
+   */
+  public void setSubdivCriterion(CubicSubdivisionCriterion subdivCriterion) {
+    if(null==subdivCriterion) {
+      throw new NullPointerException();
+    }
+    this.subdivCriterion=subdivCriterion;
+  }
+  
+  // ------------------------------------------------------------------
+  // receiving paths
+  
+  /**
+   * Adds the provided shape, also adopting its winding rule.
+   * @param at the transformation to pixel coordinates (may be <code>null</code>)
+   */
+  public void addShape(Shape shape, AffineTransform at) {
+    double[] c=new double[6];
+    PathIterator it=shape.getPathIterator(at);
+    this.setWindingRule(it.getWindingRule());
+    for(; !it.isDone(); it.next()) {
+      switch(it.currentSegment(c)) {
+        case PathIterator.SEG_MOVETO:
+          this.moveTo(c[0], c[1]);
+          break;
+        case PathIterator.SEG_LINETO:
+          this.lineTo(c[0], c[1]);
+          break;
+        case PathIterator.SEG_QUADTO:
+          this.quadTo(c[0], c[1], c[2], c[3]);
+          break;
+        case PathIterator.SEG_CUBICTO:
+          this.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+          break;
+        case PathIterator.SEG_CLOSE:
+          this.closePath();
+          break;
+      }
+    }
+    this.closePath();
+  }
+  
+  /**
+   * Starts a new contour; the current one, if any, is closed.
+   */
+  public void moveTo(double x, double y) {
+    this.closePath();
+    this.startX=this.lastX=x;
+    this.startY=this.lastY=y;
+    this.hasCurrentPoint=true;
+  }
+  
+  public void lineTo(double x, double y) {
+    if(false==this.hasCurrentPoint) {
+      this.moveTo(x, y);
+      return;
+    }
+    if(y!=this.lastY) { // horizontal lines wind nothing
+      double dx=(x-this.lastX)/3.0, dy=(y-this.lastY)/3.0;
+      this.addCurve(
+        this.lastX, this.lastY, this.lastX+dx, this.lastY+dy,
+        x-dx, y-dy, x, y
+      );
+    }
+    this.lastX=x;
+    this.lastY=y;
+  }
+  
+  /**
+   * @throws IllegalPathStateException if there is no current point
+   */
+  public void quadTo(double cx, double cy, double x1, double y1) {
+    if(false==this.hasCurrentPoint) {
+      throw new IllegalPathStateException("missing initial moveto");
+    }
+    // degree elevation
+    this.addCurve(
+      this.lastX, this.lastY,
+      this.lastX+2.0*(cx-this.lastX)/3.0, this.lastY+2.0*(cy-this.lastY)/3.0,
+      x1+2.0*(cx-x1)/3.0, y1+2.0*(cy-y1)/3.0,
+      x1, y1
+    );
+    this.lastX=x1;
+    this.lastY=y1;
+  }
+  
+  /**
+   * @throws IllegalPathStateException if there is no current point
+   */
+  public void curveTo(double cx0, double cy0, double cx1, double cy1, double x1, double y1) {
+    if(false==this.hasCurrentPoint) {
+      throw new IllegalPathStateException("missing initial moveto");
+    }
+    this.addCurve(this.lastX, this.lastY, cx0, cy0, cx1, cy1, x1, y1);
+    this.lastX=x1;
+    this.lastY=y1;
+  }
+  
+  /**
+   * Closes the current contour with a line back to its start.
+   */
+  public void closePath() {
+    if(this.hasCurrentPoint) {
+      this.lineTo(this.startX, this.startY);
+    }
+  }
+  
+  private void addCurve(
+    double x0, double y0, double cx0, double cy0,
+    double cx1, double cy1, double x1, double y1
+  ) {
+    int pos=this.numCurves<<3;
+    if(pos+8>this.curves.length) {
+      this.curves=Arrays.copyOf(this.curves, this.curves.length<<1);
+      this.bounds=Arrays.copyOf(this.bounds, this.bounds.length<<1);
+    }
+    double[] c=this.curves;
+    c[pos]=x0; c[pos+1]=y0;
+    c[pos+2]=cx0; c[pos+3]=cy0;
+    c[pos+4]=cx1; c[pos+5]=cy1;
+    c[pos+6]=x1; c[pos+7]=y1;
+    BezierUtils.tightBounds(c, pos, this.bounds, this.numCurves<<2);
+    this.numCurves++;
+  }
+  
+  // ------------------------------------------------------------------
+  // rendering
+  
+  /**
+   * Writes the coverage of the paths, <code>0..255</code>, into an alpha 
+   * mask (all the pixels are overwritten).
+   * @param mask the mask, row-major, <code>width</code> bytes per row
+   * @param pool the pool running the tiles, or <code>null</code> for
+   *   rendering sequentially, in the calling thread
+   */
+  public void renderMask(byte[] mask, int width, int height, ForkJoinPool pool) {
+    if(mask.length<width*height) {
+      throw new IllegalArgumentException("Mask too small for "+width+"x"+height);
+    }
+    this.render(new Target(mask, null, 0, width, height), pool);
+  }
+  
+  /**
+   * Paints the paths, in the provided colour, over non-premultiplied ARGB 
+   * pixels, using the <i>source over</i> compositing rule.
+   * @param pixels the pixels, row-major, <code>width</code> per row
+   * @param argb the colour, non-premultiplied
+   * @param pool the pool running the tiles, or <code>null</code> for
+   *   rendering sequentially, in the calling thread
+   * @see ScanlineRasterizer#fillPixels(int[], int, int, int, java.util.concurrent.ExecutorService)
+   */
+  public void renderPixels(int[] pixels, int width, int height, int argb, ForkJoinPool pool) {
+    if(pixels.length<width*height) {
+      throw new IllegalArgumentException("Pixels too few for "+width+"x"+height);
+    }
+    this.render(new Target(null, pixels, argb, width, height), pool);
+  }
+  
+  /** Where the tiles are written */
+  static private final class Target {
+    final byte[] mask;
+    final int[]  pixels;
+    final int    argb;
+    final int    width;
+    final int    height;
+    
+    Target(byte[] mask, int[] pixels, int argb, int width, int height) {
+      this.mask=mask;
+      this.pixels=pixels;
+      this.argb=argb;
+      this.width=width;
+      this.height=height;
+    }
+  }
+  
+  private void render(final Target target, ForkJoinPool pool) {
+    if(target.width<=0 || target.height<=0) {
+      return;
+    }
+    this.closePath();
+    this.hasCurrentPoint=false;
+    final int size=this.tileSize;
+    final int numRows=(target.height+size-1)/size;
+    final int numCols=(target.width+size-1)/size;
+    // bin the curves into tile rows (counting sort)
+    final int[] rowStarts=new int[numRows+1];
+    for(int i=0; i<this.numCurves; i++) {
+      int pos=i<<2;
+      int first=this.rowOf(this.bounds[pos+1], numRows);
+      int last=this.rowOf(this.bounds[pos+3], numRows);
+      for(int r=first; r<=last; r++) {
+        rowStarts[r+1]++;
+      }
+    }
+    for(int r=0; r<numRows; r++) {
+      rowStarts[r+1]+=rowStarts[r];
+    }
+    final int[] rowCurves=new int[rowStarts[numRows]];
+    int[] fillPos=Arrays.copyOf(rowStarts, numRows);
+    for(int i=0; i<this.numCurves; i++) {
+      int pos=i<<2;
+      int first=this.rowOf(this.bounds[pos+1], numRows);
+      int last=this.rowOf(this.bounds[pos+3], numRows);
+      for(int r=first; r<=last; r++) {
+        rowCurves[fillPos[r]++]=i;
+      }
+    }
+    final ThreadLocal<TileWorker> workers=new ThreadLocal<TileWorker>() {
+      @Override
+      protected TileWorker initialValue() {
+        return new TileWorker(size);
+      }
+    };
+    TileRange all=new TileRange(
+      this, target, numCols, rowStarts, rowCurves, workers, 0, numRows*numCols
+    );
+    if(null==pool) {
+      all.compute();
+    }
+    else {
+      pool.invoke(all);
+    }
+  }
+  
+  /** The tile row a coordinate falls into, clamped to the valid rows */
+  private int rowOf(double y, int numRows) {
+    double r=Math.floor(y/this.tileSize);
+    return r<0 ? 0 : (r>=numRows ? numRows-1 : (int)r);
+  }
+  
+  /**
+   * Renders a range of tiles (numbered row by row), splitting it in 
+   * halves for the other workers of the pool to steal.
+   */
+  @SuppressWarnings("serial")
+  static private final class TileRange
+  extends RecursiveAction {
+    final TiledRenderer            renderer;
+    final Target                   target;
+    final int                      numCols;
+    final int[]                    rowStarts;
+    final int[]                    rowCurves;
+    final ThreadLocal<TileWorker>  workers;
+    final int                      from;
+    final int                      to;
+    
+    TileRange(
+      TiledRenderer renderer, Target target, int numCols,
+      int[] rowStarts, int[] rowCurves, ThreadLocal<TileWorker> workers,
+      int from, int to
+    ) {
+      this.renderer=renderer;
+      this.target=target;
+      this.numCols=numCols;
+      this.rowStarts=rowStarts;
+      this.rowCurves=rowCurves;
+      this.workers=workers;
+      this.from=from;
+      this.to=to;
+    }
+    
+    @Override
+    protected void compute() {
+      if(this.to-this.from>1 && null!=RecursiveAction.getPool()) {
+        int mid=(this.from+this.to)>>>1;
+        RecursiveAction.invokeAll(
+          new TileRange(
+            this.renderer, this.target, this.numCols, 
+            this.rowStarts, this.rowCurves, this.workers, this.from, mid
+          ),
+          new TileRange(
+            this.renderer, this.target, this.numCols, 
+            this.rowStarts, this.rowCurves, this.workers, mid, this.to
+          )
+        );
+        return;
+      }
+      TileWorker worker=this.workers.get();
+      for(int tile=this.from; tile<this.to; tile++) {
+        int row=tile/this.numCols, col=tile%this.numCols;
+        worker.renderTile(
+          this.renderer, row, col, 
+          this.rowCurves, this.rowStarts[row], this.rowStarts[row+1], this.target
+        );
+      }
+    }
+  }
+  
+  /**
+   * The per-thread scratch storage for rendering tiles, and the 
+   * rendering itself.
+   */
+  static private final class TileWorker
+  implements CubicSegmentConsumer {
+    final ScanlineRasterizer  rasterizer=new ScanlineRasterizer();
+    final byte[]              tileMask;
+    final int[]               tilePixels;
+    final CubicCurve2D.Double curve=new CubicCurve2D.Double();
+    final double[]            params=new double[12];
+    final double[]            roots=new double[3];
+    final double[]            pieces=new double[8*13];
+    double                    originX;
+    double                    originY;
+    
+    TileWorker(int tileSize) {
+      this.tileMask=new byte[tileSize*tileSize];
+      this.tilePixels=new int[tileSize*tileSize];
+      this.rasterizer.setBandHeight(tileSize);
+    }
+    
+    /** Receives the segments of the flattened curves, as tile edges */
+    @Override
+    public void processSegment(CubicCurve2D segment, double startT, double endT) {
+      this.rasterizer.addEdge(
+        segment.getX1()-this.originX, segment.getY1()-this.originY,
+        segment.getX2()-this.originX, segment.getY2()-this.originY
+      );
+    }
+    
+    void renderTile(
+      TiledRenderer renderer, int row, int col, 
+      int[] rowCurves, int from, int to, Target target
+    ) {
+      int size=renderer.tileSize;
+      int x0=col*size, y0=row*size;
+      int w=Math.min(size, target.width-x0), h=Math.min(size, target.height-y0);
+      double x1=x0+w, y1=y0+h;
+      this.originX=x0;
+      this.originY=y0;
+      ScanlineRasterizer r=this.rasterizer;
+      r.reset();
+      r.setWindingRule(renderer.windingRule);
+      double[] c=renderer.curves, b=renderer.bounds;
+      for(int i=from; i<to; i++) {
+        int curve=rowCurves[i];
+        int cPos=curve<<3, bPos=curve<<2;
+        if(b[bPos]>=x1 || b[bPos+1]>=y1 || b[bPos+3]<=y0) {
+          continue; // right of the tile, or only touching its row
+        }
+        if(b[bPos+2]<=x0) {
+          // left of the tile: only the winding matters
+          r.addEdge(0.0, c[cPos+1]-y0, 0.0, c[cPos+7]-y0);
+        }
+        else if(b[bPos]>=x0 && b[bPos+1]>=y0 && b[bPos+2]<=x1 && b[bPos+3]<=y1) {
+          this.curve.setCurve(c, cPos);
+          BezierUtils.adaptiveHalving(this.curve, renderer.subdivCriterion, this);
+        }
+        else {
+          this.clipCurve(renderer.subdivCriterion, c, cPos, x0, y0, x1, y1);
+        }
+      }
+      if(0==r.getNumEdges()) {
+        if(null!=target.mask) {
+          for(int y=0; y<h; y++) {
+            Arrays.fill(target.mask, (y0+y)*target.width+x0, (y0+y)*target.width+x0+w, (byte)0);
+          }
+        }
+        return;
+      }
+      try {
+        if(null!=target.mask) {
+          r.fillMask(this.tileMask, w, h, null);
+          for(int y=0; y<h; y++) {
+            System.arraycopy(this.tileMask, y*w, target.mask, (y0+y)*target.width+x0, w);
+          }
+        }
+        else {
+          for(int y=0; y<h; y++) {
+            System.arraycopy(target.pixels, (y0+y)*target.width+x0, this.tilePixels, y*w, w);
+          }
+          r.fillPixels(this.tilePixels, w, h, target.argb, null);
+          for(int y=0; y<h; y++) {
+            System.arraycopy(this.tilePixels, y*w, target.pixels, (y0+y)*target.width+x0, w);
+          }
+        }
+      }
+      // not thrown without an executor
+      catch(InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      catch(ExecutionException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    
+    /**
+     * Splits a curve crossing the sides of a tile at the crossings, then
+     * flattens the pieces inside and projects the pieces on the left.
+     */
+    private void clipCurve(
+      CubicSubdivisionCriterion criterion, double[] c, int pos,
+      double x0, double y0, double x1, double y1
+    ) {
+      int n=0;
+      n=this.addCrossings(c, pos, x0, n);
+      n=this.addCrossings(c, pos, x1, n);
+      n=this.addCrossings(c, pos+1, y0, n);
+      n=this.addCrossings(c, pos+1, y1, n);
+      double[] t=this.params;
+      Arrays.sort(t, 0, n);
+      this.curve.setCurve(c, pos);
+      int numPieces=BezierUtils.splitCurve(this.curve, t, n, this.pieces, 0);
+      double[] p=this.pieces;
+      for(int i=0; i<numPieces; i++) {
+        int pp=i<<3;
+        // between two crossings, a piece is on a single side of each line
+        double midX=0.125*(p[pp]+3*p[pp+2]+3*p[pp+4]+p[pp+6]);
+        double midY=0.125*(p[pp+1]+3*p[pp+3]+3*p[pp+5]+p[pp+7]);
+        if(midX>=x1 || midY<=y0 || midY>=y1) {
+          continue;
+        }
+        if(midX<=x0) {
+          this.rasterizer.addEdge(0.0, p[pp+1]-y0, 0.0, p[pp+7]-y0);
+        }
+        else {
+          this.curve.setCurve(p, pp);
+          BezierUtils.adaptiveHalving(this.curve, criterion, this);
+        }
+      }
+    }
+    
+    /**
+     * Adds the parameters where a coordinate of the curve crosses a value.
+     * @param pos the position of the coordinate of the first control point
+     */
+    private int addCrossings(double[] c, int pos, double value, int n) {
+      double p0=c[pos], p1=c[pos+2], p2=c[pos+4], p3=c[pos+6];
+      int nr=PolyRoots.solveCubicInUnit(
+        -p0+3*p1-3*p2+p3, 3*p0-6*p1+3*p2, 3*(p1-p0), p0-value, this.roots, 0
+      );
+      for(int i=0; i<nr; i++) {
+        double t=this.roots[i];
+        if(t>0.0 && t<1.0) {
+          this.params[n++]=t;
+        }
+      }
+      return n;
+    }
+  }
+}
@@ -44,10 +44,13 @@ import java.awt.geom.CubicCurve2D.Double;
 
 import javax.swing.JFrame;
 
+import com.caffeineowl.graphics.Path2DPolylineSink;
 import com.caffeineowl.graphics.bezier.BezierUtils;
 import com.caffeineowl.graphics.bezier.CubicFlatnessAlgorithm;
 import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
 import com.caffeineowl.graphics.bezier.CubicSubdivisionCriterion;
+import com.caffeineowl.graphics.bezier.IncrementalFlattener;
+import com.caffeineowl.graphics.bezier.PolylineSinkConsumer;
 import com.caffeineowl.graphics.bezier.QuadFlatnessAlgorithm;
 import com.caffeineowl.graphics.bezier.QuadSegmentConsumer;
 import com.caffeineowl.graphics.bezier.QuadSubdivisionCriterion;
@@ -65,14 +68,15 @@ extends BezierPanel {
   static class QuadOrCubicSegsFormatter
   implements CubicSegmentConsumer, QuadSegmentConsumer {
     GeneralPath segsChain;
-    int numSegs;
+    PolylineSinkConsumer chainer;
 
     public QuadOrCubicSegsFormatter() {
       this.segsChain=new GeneralPath();
+      this.chainer=new PolylineSinkConsumer(new Path2DPolylineSink(this.segsChain));
     }
 
     public int getNumSegs() {
-      return this.numSegs;
+      return this.chainer.getNumSegs();
     }
 
 
@@ -80,22 +84,18 @@ extends BezierPanel {
     public void processSegment(CubicCurve2D segment, double startT, double endT) {
       if(0.0==startT) {
         this.segsChain.reset();
-        this.segsChain.moveTo(segment.getX1(), segment.getY1());
-        this.numSegs=0;
+        this.chainer.reset();
       }
-      this.segsChain.lineTo(segment.getX2(), segment.getY2());
-      this.numSegs++;
+      this.chainer.processSegment(segment, startT, endT);
     }
 
     @Override
     public void processSegment(QuadCurve2D segment, double startT, double endT) {
       if(0.0==startT) {
         this.segsChain.reset();
-        this.segsChain.moveTo(segment.getX1(), segment.getY1());
-        this.numSegs=0;
+        this.chainer.reset();
       }
-      this.segsChain.lineTo(segment.getX2(), segment.getY2());
-      this.numSegs++;
+      this.chainer.processSegment(segment, startT, endT);
     }
 
     public GeneralPath getSegsChain() {
@@ -108,6 +108,12 @@ extends BezierPanel {
     
     BezierFlatteningPanel served;
     
+    // dragging a handle changes only the curve: keep the subdivision tree
+    IncrementalFlattener cubicFlattener;
+    FlatnessAlgoType     flattenerAlgoType;
+    DistanceType         flattenerDistanceType;
+    double               flattenerTolerance;
+    
     FlattenerByAdaptiveHalving(BezierFlatteningPanel parent) {
       this.served=parent;
     }
@@ -116,9 +122,26 @@ extends BezierPanel {
     public void curveChanged(BezierPanel panel) {
       if(this.served==panel) {
         if(this.served.isRepresentingCubic()) {
-          CubicSubdivisionCriterion crit=this.served.createCubicSubdivCriterion();
+          if(
+            null==this.cubicFlattener
+            || this.flattenerAlgoType!=this.served.flatnessAlgoType
+            || this.flattenerDistanceType!=this.served.distanceType
+            || this.flattenerTolerance!=this.served.tolerance
+          ) {
+            CubicSubdivisionCriterion crit=this.served.createCubicSubdivCriterion();
+            if(null==this.cubicFlattener) {
+              this.cubicFlattener=new IncrementalFlattener(crit);
+            }
+            else {
+              this.cubicFlattener.setSubdivCriterion(crit);
+            }
+            this.flattenerAlgoType=this.served.flatnessAlgoType;
+            this.flattenerDistanceType=this.served.distanceType;
+            this.flattenerTolerance=this.served.tolerance;
+          }
           CubicCurve2D c=this.served.getRepresentedCubic();
-          BezierUtils.adaptiveHalving(c, crit, this.served.getSegsFormatter());
+          this.cubicFlattener.setCurve(c);
+          this.cubicFlattener.emit(this.served.getSegsFormatter());
         }
         else {
           QuadSubdivisionCriterion crit=this.served.createQuadSubdivCriterion();
@@ -0,0 +1,178 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.samples;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.QuadCurve2D;
+import java.util.Random;
+
+import com.caffeineowl.graphics.bezier.BezierUtils;
+import com.caffeineowl.graphics.bezier.QuadSegmentBuffer;
+import com.caffeineowl.graphics.bezier.QuadSegmentConsumer;
+
+/**
+ * Compares the three cubic-to-quad degree reduction paths: the 
+ * {@linkplain BezierUtils#adaptiveHalvingDegreeReduction(CubicCurve2D, double, QuadSegmentConsumer) 
+ * adaptive halving} one, the 
+ * {@linkplain BezierUtils#adaptiveDegreeReduction(double[], int, double, com.caffeineowl.graphics.bezier.QuadSegmentSink) 
+ * adaptive degree reduction} and the 
+ * {@linkplain BezierUtils#minimalDegreeReduction(double[], int, double, com.caffeineowl.graphics.bezier.QuadSegmentSink) 
+ * minimal} one, in output size (number of quads), speed and worst observed
+ * error (the distance to the cubic, sampled at <code>1/4, 1/2, 3/4</code> 
+ * of each quad).
+ * <p>Run it with <code>java -cp bezier-utils.jar com.caffeineowl.graphics.samples.DegreeReductionBenchmark [precision]</code>;
+ * each measurement is preceded by a warm-up pass.
+ */
+public class DegreeReductionBenchmark {
+  
+  static final int numCubics=1<<14;
+  static final int numPasses=20;
+  
+  /** The cubics, 8 coordinates each, in a 1000x1000 square */
+  final double[] cubics=new double[8*DegreeReductionBenchmark.numCubics];
+  final double precision;
+  
+  final QuadSegmentBuffer quads=new QuadSegmentBuffer();
+  final CubicCurve2D.Double cubic=new CubicCurve2D.Double();
+  
+  DegreeReductionBenchmark(long seed, double precision) {
+    Random rnd=new Random(seed);
+    for(int i=0; i<this.cubics.length; i++) {
+      this.cubics[i]=1000*rnd.nextDouble();
+    }
+    this.precision=precision;
+  }
+  
+  static abstract class Reducer {
+    final String name;
+    Reducer(String name) {
+      this.name=name;
+    }
+    /** Reduces the cubic at <code>offset</code>, leaving the quads in the buffer */
+    abstract void reduce(DegreeReductionBenchmark bench, int offset);
+  }
+  
+  /**
+   * Adapts the consumer-based path to the buffer, so that all the reducers
+   * leave their results in the same place.
+   */
+  static final class BufferingConsumer
+  implements QuadSegmentConsumer {
+    QuadSegmentBuffer buffer;
+    @Override
+    public void processSegment(QuadCurve2D segment, double startT, double endT) {
+      this.buffer.processSegment(
+        segment.getX1(), segment.getY1(), segment.getCtrlX(), segment.getCtrlY(),
+        segment.getX2(), segment.getY2(), startT, endT
+      );
+    }
+  }
+  
+  long runPass(Reducer reducer) {
+    long toRet=0;
+    for(int i=0; i<DegreeReductionBenchmark.numCubics; i++) {
+      this.quads.clear();
+      reducer.reduce(this, 8*i);
+      toRet+=this.quads.size();
+    }
+    return toRet;
+  }
+  
+  double maxError(int offset) {
+    double[] cb=this.cubics, qc=this.quads.getCoords(), params=this.quads.getParams();
+    double toRet=0.0;
+    for(int i=0; i<this.quads.size(); i++) {
+      int pos=6*i;
+      double t0=params[2*i], dt=params[2*i+1]-t0;
+      for(int k=1; k<4; k++) {
+        double u=0.25*k, mu=1-u;
+        double qx=mu*mu*qc[pos]+2*mu*u*qc[pos+2]+u*u*qc[pos+4];
+        double qy=mu*mu*qc[pos+1]+2*mu*u*qc[pos+3]+u*u*qc[pos+5];
+        double t=t0+u*dt, mt=1-t;
+        double b0=mt*mt*mt, b1=3*mt*mt*t, b2=3*mt*t*t, b3=t*t*t;
+        double cx=b0*cb[offset]+b1*cb[offset+2]+b2*cb[offset+4]+b3*cb[offset+6];
+        double cy=b0*cb[offset+1]+b1*cb[offset+3]+b2*cb[offset+5]+b3*cb[offset+7];
+        toRet=Math.max(toRet, Math.hypot(qx-cx, qy-cy));
+      }
+    }
+    return toRet;
+  }
+  
+  void run(Reducer reducer) {
+    for(int pass=0; pass<DegreeReductionBenchmark.numPasses/4; pass++) {
+      this.runPass(reducer);
+    }
+    long start=System.nanoTime();
+    long numQuads=0;
+    for(int pass=0; pass<DegreeReductionBenchmark.numPasses; pass++) {
+      numQuads=this.runPass(reducer);
+    }
+    long elapsed=System.nanoTime()-start;
+    double nsPerCubic=(double)elapsed/((double)DegreeReductionBenchmark.numPasses*DegreeReductionBenchmark.numCubics);
+    double maxErr=0.0;
+    for(int i=0; i<DegreeReductionBenchmark.numCubics; i++) {
+      this.quads.clear();
+      reducer.reduce(this, 8*i);
+      maxErr=Math.max(maxErr, this.maxError(8*i));
+    }
+    System.out.printf(
+      "%-28s %9d quads (%6.2f/cubic) %9.1f ns/cubic   max err %8.4f%n",
+      reducer.name, numQuads, (double)numQuads/DegreeReductionBenchmark.numCubics, 
+      nsPerCubic, maxErr
+    );
+  }
+  
+  public static void main(String[] args) {
+    double precision=args.length>0 ? Double.parseDouble(args[0]) : 0.5;
+    DegreeReductionBenchmark bench=new DegreeReductionBenchmark(20061215L, precision);
+    System.out.println("precision: "+precision);
+    Reducer[] reducers={
+      new Reducer("adaptiveHalving") {
+        final BufferingConsumer consumer=new BufferingConsumer();
+        void reduce(DegreeReductionBenchmark bench, int offset) {
+          bench.cubic.setCurve(bench.cubics, offset);
+          this.consumer.buffer=bench.quads;
+          BezierUtils.adaptiveHalvingDegreeReduction(bench.cubic, bench.precision, this.consumer);
+        }
+      },
+      new Reducer("adaptiveDegreeReduction") {
+        void reduce(DegreeReductionBenchmark bench, int offset) {
+          BezierUtils.adaptiveDegreeReduction(bench.cubics, offset, bench.precision, bench.quads);
+        }
+      },
+      new Reducer("minimalDegreeReduction") {
+        void reduce(DegreeReductionBenchmark bench, int offset) {
+          BezierUtils.minimalDegreeReduction(bench.cubics, offset, bench.precision, bench.quads);
+        }
+      },
+    };
+    for(int i=0; i<reducers.length; i++) {
+      bench.run(reducers[i]);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.samples;
+
+import java.awt.geom.CubicCurve2D;
+import java.util.Random;
+
+import com.caffeineowl.graphics.DoublePolyline;
+import com.caffeineowl.graphics.bezier.BezierUtils;
+import com.caffeineowl.graphics.bezier.CubicSegmentConsumer;
+import com.caffeineowl.graphics.bezier.FixedPointBezierUtils;
+import com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullSubdivCriterion;
+
+/**
+ * Compares the double precision 
+ * {@linkplain BezierUtils#adaptiveHalving(CubicCurve2D, com.caffeineowl.graphics.bezier.CubicSubdivisionCriterion, CubicSegmentConsumer) adaptive halving}
+ * (with a {@link ConvexHullSubdivCriterion}) with the 
+ * {@linkplain FixedPointBezierUtils#adaptiveHalvingCubic(long[], int, long, com.caffeineowl.graphics.PolylineSink) fixed point}
+ * one, in number of chords and speed. Both leave the chord ends in a
+ * {@link DoublePolyline}. The checksum of the fixed point output is
+ * printed as well: it is the same on every run, JVM and CPU.
+ * <p>Run it with <code>java -cp bezier-utils.jar com.caffeineowl.graphics.samples.FixedPointBenchmark [tolerance]</code>;
+ * each measurement is preceded by a warm-up pass.
+ */
+public class FixedPointBenchmark {
+  
+  static final int numCubics=1<<14;
+  static final int numPasses=20;
+  
+  /** The cubics, 8 coordinates each, in a 1000x1000 square */
+  final double[] cubics=new double[8*FixedPointBenchmark.numCubics];
+  /** The same cubics, in fixed point */
+  final long[] fixedCubics=new long[8*FixedPointBenchmark.numCubics];
+  final double tolerance;
+  
+  final DoublePolyline points=new DoublePolyline();
+  
+  FixedPointBenchmark(long seed, double tolerance) {
+    Random rnd=new Random(seed);
+    for(int i=0; i<this.cubics.length; i++) {
+      this.cubics[i]=1000*rnd.nextDouble();
+    }
+    FixedPointBezierUtils.toFixed(this.cubics, 0, this.fixedCubics, 0, this.cubics.length);
+    this.tolerance=tolerance;
+  }
+  
+  static abstract class Flattener {
+    final String name;
+    Flattener(String name) {
+      this.name=name;
+    }
+    /** Flattens the cubic at <code>offset</code>, leaving the chord ends in the buffer */
+    abstract int flatten(FixedPointBenchmark bench, int offset);
+  }
+  
+  long runPass(Flattener flattener) {
+    long toRet=0;
+    for(int i=0; i<FixedPointBenchmark.numCubics; i++) {
+      this.points.clear();
+      toRet+=flattener.flatten(this, 8*i);
+    }
+    return toRet;
+  }
+  
+  long checksum(Flattener flattener) {
+    long toRet=17;
+    for(int i=0; i<FixedPointBenchmark.numCubics; i++) {
+      this.points.clear();
+      flattener.flatten(this, 8*i);
+      double[] c=this.points.getCoords();
+      for(int k=0; k<2*this.points.getNumPoints(); k++) {
+        toRet=31*toRet+Double.doubleToLongBits(c[k]);
+      }
+    }
+    return toRet;
+  }
+  
+  void run(Flattener flattener) {
+    for(int pass=0; pass<FixedPointBenchmark.numPasses/4; pass++) {
+      this.runPass(flattener);
+    }
+    long start=System.nanoTime();
+    long numChords=0;
+    for(int pass=0; pass<FixedPointBenchmark.numPasses; pass++) {
+      numChords=this.runPass(flattener);
+    }
+    long elapsed=System.nanoTime()-start;
+    double nsPerCubic=(double)elapsed/((double)FixedPointBenchmark.numPasses*FixedPointBenchmark.numCubics);
+    System.out.printf(
+      "%-16s %9d chords (%6.2f/cubic) %9.1f ns/cubic   checksum %016x%n",
+      flattener.name, numChords, (double)numChords/FixedPointBenchmark.numCubics, 
+      nsPerCubic, this.checksum(flattener)
+    );
+  }
+  
+  public static void main(String[] args) {
+    double tolerance=args.length>0 ? Double.parseDouble(args[0]) : 0.1;
+    FixedPointBenchmark bench=new FixedPointBenchmark(20061215L, tolerance);
+    System.out.println("tolerance: "+tolerance);
+    Flattener[] flatteners={
+      new Flattener("double") {
+        final CubicCurve2D.Double cubic=new CubicCurve2D.Double();
+        final ConvexHullSubdivCriterion criterion=new ConvexHullSubdivCriterion(bench.tolerance);
+        final int[] count=new int[1];
+        final CubicSegmentConsumer consumer=new CubicSegmentConsumer() {
+          public void processSegment(CubicCurve2D segment, double startT, double endT) {
+            bench.points.lineTo(segment.getX2(), segment.getY2());
+            count[0]++;
+          }
+        };
+        int flatten(FixedPointBenchmark bench, int offset) {
+          this.cubic.setCurve(bench.cubics, offset);
+          this.count[0]=0;
+          BezierUtils.adaptiveHalving(this.cubic, this.criterion, this.consumer);
+          return this.count[0];
+        }
+      },
+      new Flattener("fixed point") {
+        final long tol=FixedPointBezierUtils.toFixed(bench.tolerance);
+        int flatten(FixedPointBenchmark bench, int offset) {
+          return FixedPointBezierUtils.adaptiveHalvingCubic(
+            bench.fixedCubics, offset, this.tol, bench.points
+          );
+        }
+      },
+    };
+    for(int i=0; i<flatteners.length; i++) {
+      bench.run(flatteners[i]);
+    }
+  }
+}
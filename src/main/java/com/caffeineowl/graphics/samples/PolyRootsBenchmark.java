@@ -0,0 +1,212 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.samples;
+
+import java.util.Random;
+
+import com.caffeineowl.graphics.PolyRoots;
+
+/**
+ * Micro-benchmark comparing the {@link PolyRoots} solvers with the
+ * textbook (naive) formulae, both in speed and in accuracy (the worst 
+ * relative error on roots known in advance).
+ * <p>Run it with <code>java -cp bezier-utils.jar com.caffeineowl.graphics.samples.PolyRootsBenchmark</code>;
+ * each measurement is preceded by a warm-up pass, so that the JIT has 
+ * a chance to compile the code being measured.
+ */
+public class PolyRootsBenchmark {
+  
+  static final int numPolys=1<<16;
+  static final int numPasses=50;
+  
+  /** Coefficients of the polynomials, 4 per polynomial (a..d) */
+  final double[] coeffs=new double[4*PolyRootsBenchmark.numPolys];
+  /** The known roots, 3 per polynomial, sorted */
+  final double[] expected=new double[3*PolyRootsBenchmark.numPolys];
+  final double[] roots=new double[8];
+  
+  /** Keeps the JIT from optimising away the computation */
+  double sink;
+  
+  PolyRootsBenchmark(long seed) {
+    Random rnd=new Random(seed);
+    for(int i=0; i<PolyRootsBenchmark.numPolys; i++) {
+      double r0=rnd.nextDouble(), r1=rnd.nextDouble(), r2=rnd.nextDouble();
+      if(0==(i&3)) { // a quarter of them with close roots
+        r1=r0+1.0e-5*rnd.nextDouble();
+      }
+      double k=0.5+rnd.nextDouble();
+      double lo=Math.min(r0, Math.min(r1, r2)), hi=Math.max(r0, Math.max(r1, r2));
+      this.expected[3*i]=lo;
+      this.expected[3*i+1]=r0+r1+r2-lo-hi;
+      this.expected[3*i+2]=hi;
+      this.coeffs[4*i]=k;
+      this.coeffs[4*i+1]=-k*(r0+r1+r2);
+      this.coeffs[4*i+2]=k*(r0*r1+r0*r2+r1*r2);
+      this.coeffs[4*i+3]=-k*r0*r1*r2;
+    }
+  }
+  
+  static abstract class Solver {
+    final String name;
+    /** Only the cubic solvers can be checked against the known roots */
+    final boolean checkAccuracy;
+    Solver(String name, boolean checkAccuracy) {
+      this.name=name;
+      this.checkAccuracy=checkAccuracy;
+    }
+    abstract int solve(double a, double b, double c, double d, double[] roots);
+  }
+  
+  /** The textbook quadratic formula, on the quadratic <code>b*t^2+c*t+d</code> */
+  static int naiveQuadratic(double a, double b, double c, double[] roots) {
+    double discr=b*b-4*a*c;
+    if(discr<0) {
+      return 0;
+    }
+    discr=Math.sqrt(discr);
+    roots[0]=(-b-discr)/(2*a);
+    roots[1]=(-b+discr)/(2*a);
+    return 2;
+  }
+  
+  /** Cardano/Viete closed formulae, no care for cancellation, no polishing */
+  static int naiveCubic(double a, double b, double c, double d, double[] roots) {
+    double A=b/a, B=c/a, C=d/a;
+    double p=B-A*A/3, q=2*A*A*A/27-A*B/3+C;
+    double disc=q*q/4+p*p*p/27;
+    if(disc>0) {
+      double sq=Math.sqrt(disc);
+      roots[0]=Math.cbrt(-q/2+sq)+Math.cbrt(-q/2-sq)-A/3;
+      return 1;
+    }
+    double m=2*Math.sqrt(-p/3);
+    double theta=Math.acos(3*q/(p*m))/3;
+    roots[0]=m*Math.cos(theta)-A/3;
+    roots[1]=m*Math.cos(theta-2*Math.PI/3)-A/3;
+    roots[2]=m*Math.cos(theta-4*Math.PI/3)-A/3;
+    return 3;
+  }
+  
+  void run(Solver solver) {
+    double[] r=this.roots;
+    // warm-up
+    for(int pass=0; pass<PolyRootsBenchmark.numPasses/5; pass++) {
+      for(int i=0; i<PolyRootsBenchmark.numPolys; i++) {
+        int n=solver.solve(
+          this.coeffs[4*i], this.coeffs[4*i+1], this.coeffs[4*i+2], this.coeffs[4*i+3], r
+        );
+        this.sink+=n>0 ? r[0] : 0;
+      }
+    }
+    long start=System.nanoTime();
+    for(int pass=0; pass<PolyRootsBenchmark.numPasses; pass++) {
+      for(int i=0; i<PolyRootsBenchmark.numPolys; i++) {
+        int n=solver.solve(
+          this.coeffs[4*i], this.coeffs[4*i+1], this.coeffs[4*i+2], this.coeffs[4*i+3], r
+        );
+        this.sink+=n>0 ? r[0] : 0;
+      }
+    }
+    long elapsed=System.nanoTime()-start;
+    double nsPerOp=(double)elapsed/((double)PolyRootsBenchmark.numPasses*PolyRootsBenchmark.numPolys);
+    if(false==solver.checkAccuracy) {
+      System.out.printf("%-32s %8.2f ns/op%n", solver.name, nsPerOp);
+      return;
+    }
+    // accuracy, on a separate pass
+    double maxErr=0;
+    int missed=0;
+    for(int i=0; i<PolyRootsBenchmark.numPolys; i++) {
+      int n=solver.solve(
+        this.coeffs[4*i], this.coeffs[4*i+1], this.coeffs[4*i+2], this.coeffs[4*i+3], r
+      );
+      for(int j=0; j<3; j++) {
+        double exp=this.expected[3*i+j];
+        double best=Double.POSITIVE_INFINITY;
+        for(int k=0; k<n; k++) {
+          best=Math.min(best, Math.abs(r[k]-exp));
+        }
+        if(Double.isInfinite(best) || Double.isNaN(best)) {
+          missed++;
+        }
+        else if(best>maxErr) {
+          maxErr=best;
+        }
+      }
+    }
+    System.out.printf(
+      "%-32s %8.2f ns/op   max err %9.3e   missed roots %d%n",
+      solver.name, nsPerOp, maxErr, missed
+    );
+  }
+  
+  public static void main(String[] args) {
+    PolyRootsBenchmark bench=new PolyRootsBenchmark(20061215L);
+    Solver[] solvers={
+      new Solver("naive cubic (Cardano/Viete)", true) {
+        int solve(double a, double b, double c, double d, double[] roots) {
+          return PolyRootsBenchmark.naiveCubic(a, b, c, d, roots);
+        }
+      },
+      new Solver("PolyRoots.solveCubic", true) {
+        int solve(double a, double b, double c, double d, double[] roots) {
+          return PolyRoots.solveCubic(a, b, c, d, roots, 0);
+        }
+      },
+      new Solver("PolyRoots.solveCubicInUnit", true) {
+        int solve(double a, double b, double c, double d, double[] roots) {
+          return PolyRoots.solveCubicInUnit(a, b, c, d, roots, 0);
+        }
+      },
+      new Solver("PolyRoots.solveInUnit (Sturm)", true) {
+        final double[] co=new double[4];
+        final double[] scratch=new double[PolyRoots.scratchLength(3)];
+        int solve(double a, double b, double c, double d, double[] roots) {
+          this.co[0]=d; this.co[1]=c; this.co[2]=b; this.co[3]=a;
+          return PolyRoots.solveInUnit(this.co, 3, roots, 0, this.scratch);
+        }
+      },
+      // quadratics: the derivatives of the cubics above
+      new Solver("naive quadratic (derivative)", false) {
+        int solve(double a, double b, double c, double d, double[] roots) {
+          return PolyRootsBenchmark.naiveQuadratic(3*a, 2*b, c, roots);
+        }
+      },
+      new Solver("PolyRoots.solveQuadratic", false) {
+        int solve(double a, double b, double c, double d, double[] roots) {
+          return PolyRoots.solveQuadratic(3*a, 2*b, c, roots, 0);
+        }
+      },
+    };
+    for(int i=0; i<solvers.length; i++) {
+      bench.run(solvers[i]);
+    }
+    System.out.println("sink: "+bench.sink);
+  }
+}
@@ -0,0 +1,178 @@
+/*
+  Copyright (c) 2006 Adrian Colomitchi
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without 
+  restriction, including without limitation the rights to use, 
+  copy, modify, merge, publish, distribute, sublicense, and/or 
+  sell copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following 
+  conditions:
+
+  The above copyright notice and this permission notice 
+  shall be included in all copies or substantial portions
+  of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF
+  ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED
+  TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+  PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT
+  SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+  ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+  OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+
+package com.caffeineowl.graphics.samples;
+
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.util.concurrent.ExecutionException;
+
+import com.caffeineowl.graphics.bezier.flatnessalgos.ConvexHullSubdivCriterion;
+import com.caffeineowl.graphics.raster.ScanlineRasterizer;
+
+/**
+ * Compares, on glyph outlines at small sizes, the two ways the 
+ * {@link ScanlineRasterizer} can receive curves: flattened by the adaptive
+ * halving (at a quarter and a tenth of a pixel tolerance) and 
+ * {@linkplain ScanlineRasterizer#addShapeDirect(Shape, AffineTransform) directly}
+ * (kept as <code>y</code> monotonic pieces, accumulated scanline by 
+ * scanline). For each glyph size, the time to rasterize a glyph into its
+ * alpha mask, the number of edges and curve pieces and the coverage error
+ * (against a flattening at a thousandth of a pixel) are reported.
+ * <p>Run it with <code>java -Djava.awt.headless=true -cp bezier-utils.jar com.caffeineowl.graphics.samples.RasterizerBenchmark [font name]</code>;
+ * each measurement is preceded by a warm-up pass.
+ */
+public class RasterizerBenchmark {
+  
+  static final String text=
+    "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789&@?%$";
+  static final int[] sizes={8, 12, 16, 24, 48};
+  static final int numPasses=200;
+  
+  final Shape[]   glyphs;
+  final int[]     widths;
+  final int[]     heights;
+  final byte[]    mask;
+  final ScanlineRasterizer rasterizer=new ScanlineRasterizer();
+  
+  RasterizerBenchmark(Font font) {
+    FontRenderContext frc=new FontRenderContext(null, true, true);
+    int n=RasterizerBenchmark.text.length();
+    this.glyphs=new Shape[n];
+    this.widths=new int[n];
+    this.heights=new int[n];
+    int maxArea=1;
+    for(int i=0; i<n; i++) {
+      Shape outline=font.createGlyphVector(frc, RasterizerBenchmark.text.substring(i, i+1)).getOutline();
+      Rectangle bounds=outline.getBounds();
+      // pixel coordinates, with the glyph inside the mask
+      AffineTransform toMask=AffineTransform.getTranslateInstance(1-bounds.x, 1-bounds.y);
+      this.glyphs[i]=toMask.createTransformedShape(outline);
+      this.widths[i]=bounds.width+2;
+      this.heights[i]=bounds.height+2;
+      maxArea=Math.max(maxArea, this.widths[i]*this.heights[i]);
+    }
+    this.mask=new byte[maxArea];
+  }
+  
+  static abstract class Method {
+    final String name;
+    Method(String name) {
+      this.name=name;
+    }
+    /** Adds the edges of a glyph to the rasterizer */
+    abstract void addGlyph(ScanlineRasterizer rasterizer, Shape glyph);
+  }
+  
+  static final class Flattening
+  extends Method {
+    final ConvexHullSubdivCriterion criterion;
+    Flattening(double tolerance) {
+      super("flattened, tol "+tolerance);
+      this.criterion=new ConvexHullSubdivCriterion(tolerance);
+    }
+    @Override
+    void addGlyph(ScanlineRasterizer rasterizer, Shape glyph) {
+      rasterizer.addShape(glyph, null, this.criterion, this.criterion);
+    }
+  }
+  
+  /** 
+   * Rasterizes a glyph into the mask; returns the number of edges and
+   * curve pieces
+   */
+  int rasterize(Method method, int glyph) throws InterruptedException, ExecutionException {
+    this.rasterizer.reset();
+    method.addGlyph(this.rasterizer, this.glyphs[glyph]);
+    this.rasterizer.fillMask(this.mask, this.widths[glyph], this.heights[glyph], null);
+    return this.rasterizer.getNumEdges()+this.rasterizer.getNumCurves();
+  }
+  
+  void run(Method method, Method reference) throws InterruptedException, ExecutionException {
+    int n=this.glyphs.length;
+    for(int pass=0; pass<RasterizerBenchmark.numPasses/4; pass++) {
+      for(int i=0; i<n; i++) {
+        this.rasterize(method, i);
+      }
+    }
+    long start=System.nanoTime();
+    long numEdges=0;
+    for(int pass=0; pass<RasterizerBenchmark.numPasses; pass++) {
+      numEdges=0;
+      for(int i=0; i<n; i++) {
+        numEdges+=this.rasterize(method, i);
+      }
+    }
+    long elapsed=System.nanoTime()-start;
+    double nsPerGlyph=(double)elapsed/((double)RasterizerBenchmark.numPasses*n);
+    // coverage error, against the reference
+    int maxErr=0;
+    long sumErr=0, numPixels=0;
+    byte[] refMask=new byte[this.mask.length];
+    for(int i=0; i<n; i++) {
+      int area=this.widths[i]*this.heights[i];
+      this.rasterize(reference, i);
+      System.arraycopy(this.mask, 0, refMask, 0, area);
+      this.rasterize(method, i);
+      for(int p=0; p<area; p++) {
+        int err=Math.abs((this.mask[p] & 0xFF)-(refMask[p] & 0xFF));
+        maxErr=Math.max(maxErr, err);
+        sumErr+=err;
+      }
+      numPixels+=area;
+    }
+    System.out.printf(
+      "  %-22s %9.1f ns/glyph %7.1f edges+pieces/glyph   err max %3d/255, mean %6.3f/255%n",
+      method.name, nsPerGlyph, (double)numEdges/n, maxErr, (double)sumErr/numPixels
+    );
+  }
+  
+  public static void main(String[] args) throws InterruptedException, ExecutionException {
+    String fontName=args.length>0 ? args[0] : Font.SERIF;
+    Method reference=new Flattening(0.001);
+    Method[] methods={
+      new Flattening(0.25),
+      new Flattening(0.1),
+      new Method("direct") {
+        @Override
+        void addGlyph(ScanlineRasterizer rasterizer, Shape glyph) {
+          rasterizer.addShapeDirect(glyph, null);
+        }
+      },
+    };
+    for(int size : RasterizerBenchmark.sizes) {
+      RasterizerBenchmark bench=new RasterizerBenchmark(new Font(fontName, Font.PLAIN, size));
+      System.out.println("size "+size+"px:");
+      for(int i=0; i<methods.length; i++) {
+        bench.run(methods[i], reference);
+      }
+    }
+  }
+}